@@ -53,6 +53,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import javax.websocket.ClientEndpoint;
@@ -107,6 +108,7 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
     private final ClientContainer container;
     private final ComponentProviderService componentProvider;
     private final Map<String, Object> properties = new HashMap<String, Object>();
+    private final AtomicLong incomingBufferedBytes = new AtomicLong(0);
 
     private volatile long defaultAsyncSendTimeout;
     private volatile long defaultMaxSessionIdleTimeout;
@@ -454,7 +456,7 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
                                     }
                                 }, null);
 
-                                TyrusClientEngine clientEngine = new TyrusClientEngine(clientEndpoint, listener, copiedProperties);
+                                TyrusClientEngine clientEngine = new TyrusClientEngine(clientEndpoint, listener, copiedProperties, incomingBufferedBytes);
 
                                 container.openClientSocket(url, config, copiedProperties, clientEngine);
 
@@ -619,6 +621,16 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
         return properties;
     }
 
+    /**
+     * Get number of bytes currently held by buffers for incomplete incoming frames of all connections created by this
+     * client manager.
+     *
+     * @return total capacity of allocated incoming buffers.
+     */
+    public long getIncomingBufferedBytes() {
+        return incomingBufferedBytes.get();
+    }
+
     /**
      * Executor service which just executes provided {@link Runnable} in the very same thread.
      */
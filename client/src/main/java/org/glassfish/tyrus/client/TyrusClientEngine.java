@@ -46,6 +46,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -57,6 +59,8 @@ import javax.websocket.WebSocketContainer;
 import javax.websocket.server.HandshakeRequest;
 
 import org.glassfish.tyrus.core.Handshake;
+import org.glassfish.tyrus.core.IncomingBuffer;
+import org.glassfish.tyrus.core.OutboundOverflowPolicy;
 import org.glassfish.tyrus.core.ProtocolHandler;
 import org.glassfish.tyrus.core.RequestContext;
 import org.glassfish.tyrus.core.TyrusEndpointWrapper;
@@ -68,6 +72,7 @@ import org.glassfish.tyrus.core.WebSocketException;
 import org.glassfish.tyrus.core.extension.ExtendedExtension;
 import org.glassfish.tyrus.core.frame.CloseFrame;
 import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.spi.BufferAllocator;
 import org.glassfish.tyrus.spi.ClientContainer;
 import org.glassfish.tyrus.spi.ClientEngine;
 import org.glassfish.tyrus.spi.Connection;
@@ -87,12 +92,12 @@ public class TyrusClientEngine implements ClientEngine {
     private static final int DEFAULT_INCOMING_BUFFER_SIZE = 4194315; // 4M (payload) + 11 (frame overhead)
 
     private static final Version DEFAULT_VERSION = Version.DRAFT17;
-    private static final int BUFFER_STEP_SIZE = 256;
 
     private final ProtocolHandler protocolHandler = DEFAULT_VERSION.createHandler(true);
     private final TyrusEndpointWrapper endpointWrapper;
     private final ClientHandshakeListener listener;
     private final Map<String, Object> properties;
+    private final AtomicLong incomingBufferedBytes;
 
     private Handshake clientHandShake = null;
     private volatile TimeoutHandler timeoutHandler = null;
@@ -108,11 +113,15 @@ public class TyrusClientEngine implements ClientEngine {
      *                        returned from {@link WebSocketContainer#connectToServer(Class, javax.websocket.ClientEndpointConfig, java.net.URI)}
      *                        (and alternatives) call.
      * @param properties      passed container properties, see {@link org.glassfish.tyrus.client.ClientManager#getProperties()}.
+     * @param incomingBufferedBytes counter of bytes held by incoming buffers, see
+     *                        {@link org.glassfish.tyrus.client.ClientManager#getIncomingBufferedBytes()}.
      */
-    /* package */ TyrusClientEngine(TyrusEndpointWrapper endpointWrapper, ClientHandshakeListener listener, Map<String, Object> properties) {
+    /* package */ TyrusClientEngine(TyrusEndpointWrapper endpointWrapper, ClientHandshakeListener listener, Map<String, Object> properties,
+                                    AtomicLong incomingBufferedBytes) {
         this.endpointWrapper = endpointWrapper;
         this.listener = listener;
         this.properties = properties;
+        this.incomingBufferedBytes = incomingBufferedBytes;
     }
 
     @Override
@@ -189,9 +198,51 @@ public class TyrusClientEngine implements ClientEngine {
                 incomingBufferSize = DEFAULT_INCOMING_BUFFER_SIZE;
             }
 
+            final Integer streamingChunkSize = Utils.getProperty(properties, ClientContainer.STREAMING_CHUNK_SIZE, Integer.class);
+            if (streamingChunkSize != null) {
+                protocolHandler.setStreamingChunkSize(streamingChunkSize);
+            }
+
+            final BufferAllocator bufferAllocator = Utils.getProperty(properties, ClientContainer.BUFFER_ALLOCATOR, BufferAllocator.class);
+            if (bufferAllocator != null) {
+                protocolHandler.setBufferAllocator(bufferAllocator);
+            }
+
+            final Integer batchSize = Utils.getProperty(properties, ClientContainer.BATCH_SIZE, Integer.class);
+            if (batchSize != null) {
+                protocolHandler.setBatchSize(batchSize);
+            }
+
+            final Integer batchLinger = Utils.getProperty(properties, ClientContainer.BATCH_LINGER, Integer.class);
+            if (batchLinger != null) {
+                protocolHandler.setBatchLinger(batchLinger);
+            }
+
+            final Boolean closeOnSendTimeout = Utils.getProperty(properties, ClientContainer.CLOSE_ON_SEND_TIMEOUT, Boolean.class);
+            if (closeOnSendTimeout != null) {
+                protocolHandler.setCloseOnSendTimeout(closeOnSendTimeout);
+            }
+
+            final Integer lowWatermark = Utils.getProperty(properties, ClientContainer.OUTBOUND_LOW_WATERMARK, Integer.class);
+            final Integer highWatermark = Utils.getProperty(properties, ClientContainer.OUTBOUND_HIGH_WATERMARK, Integer.class);
+            protocolHandler.setOutboundWatermarks(
+                    lowWatermark != null ? lowWatermark : ProtocolHandler.DEFAULT_LOW_WATERMARK,
+                    highWatermark != null ? highWatermark : ProtocolHandler.DEFAULT_HIGH_WATERMARK);
+
+            final Integer outboundBufferLimit = Utils.getProperty(properties, ClientContainer.OUTBOUND_BUFFER_LIMIT, Integer.class);
+            if (outboundBufferLimit != null) {
+                protocolHandler.setOutboundBufferLimit(outboundBufferLimit,
+                        OutboundOverflowPolicy.fromProperty(properties.get(ClientContainer.OUTBOUND_OVERFLOW_POLICY)));
+            }
+
+            final Integer growthFactor = Utils.getProperty(properties, ClientContainer.INCOMING_BUFFER_GROWTH_FACTOR, Integer.class);
+            final IncomingBuffer incomingBuffer = new IncomingBuffer(incomingBufferSize,
+                    growthFactor != null ? growthFactor : IncomingBuffer.DEFAULT_GROWTH_FACTOR,
+                    protocolHandler.getBufferAllocator(), incomingBufferedBytes);
+
             return new Connection() {
 
-                private final ReadHandler readHandler = new TyrusReadHandler(protocolHandler, socket, incomingBufferSize, sessionForRemoteEndpoint.getNegotiatedExtensions(), extensionContext);
+                private final TyrusReadHandler readHandler = new TyrusReadHandler(protocolHandler, socket, incomingBuffer, sessionForRemoteEndpoint.getNegotiatedExtensions(), extensionContext);
 
                 @Override
                 public ReadHandler getReadHandler() {
@@ -210,6 +261,8 @@ public class TyrusClientEngine implements ClientEngine {
 
                 @Override
                 public void close(CloseReason reason) {
+                    readHandler.close();
+
                     try {
                         writer.close();
                     } catch (IOException e) {
@@ -264,20 +317,21 @@ public class TyrusClientEngine implements ClientEngine {
         public void onError(Throwable exception);
     }
 
-    private static class TyrusReadHandler implements ReadHandler {
+    static class TyrusReadHandler implements ReadHandler {
 
-        private final int incomingBufferSize;
+        private final IncomingBuffer incomingBuffer;
         private final ProtocolHandler handler;
         private final TyrusWebSocket socket;
         private final List<Extension> negotiatedExtensions;
         private final ExtendedExtension.ExtensionContext extensionContext;
+        private final ReentrantLock lock = new ReentrantLock();
 
-        private ByteBuffer buffer = null;
+        private volatile boolean closed = false;
 
-        TyrusReadHandler(final ProtocolHandler protocolHandler, final TyrusWebSocket socket, int incomingBufferSize, List<Extension> negotiatedExtensions, ExtendedExtension.ExtensionContext extensionContext) {
+        TyrusReadHandler(final ProtocolHandler protocolHandler, final TyrusWebSocket socket, IncomingBuffer incomingBuffer, List<Extension> negotiatedExtensions, ExtendedExtension.ExtensionContext extensionContext) {
             this.handler = protocolHandler;
             this.socket = socket;
-            this.incomingBufferSize = incomingBufferSize;
+            this.incomingBuffer = incomingBuffer;
             this.negotiatedExtensions = negotiatedExtensions;
             this.extensionContext = extensionContext;
 
@@ -286,27 +340,27 @@ public class TyrusClientEngine implements ClientEngine {
 
         @Override
         public void handle(ByteBuffer data) {
+            lock.lock();
             try {
+                if (closed) {
+                    // connection is closed, data are dropped and no buffer is allocated.
+                    return;
+                }
+
                 if (data != null && data.hasRemaining()) {
 
-                    if (buffer != null) {
-                        data = Utils.appendBuffers(buffer, data, incomingBufferSize, BUFFER_STEP_SIZE);
-                    } else {
-                        int newSize = data.remaining();
-                        if (newSize > incomingBufferSize) {
-                            throw new IllegalArgumentException("Buffer overflow.");
-                        } else {
-                            final int roundedSize = (newSize % BUFFER_STEP_SIZE) > 0 ? ((newSize / BUFFER_STEP_SIZE) + 1) * BUFFER_STEP_SIZE : newSize;
-                            final ByteBuffer result = ByteBuffer.allocate(roundedSize > incomingBufferSize ? newSize : roundedSize);
-                            result.flip();
-                            data = Utils.appendBuffers(result, data, incomingBufferSize, BUFFER_STEP_SIZE);
-                        }
+                    if (incomingBuffer.hasRemaining() || data.isReadOnly()) {
+                        // incomplete frame from previous read - new data have to be appended. Read only data are
+                        // copied too, masked payload would be unmasked in place.
+                        data = incomingBuffer.append(data);
                     }
 
+                    // otherwise frames are parsed directly from passed buffer.
                     do {
                         Frame frame = handler.unframe(data);
                         if (frame == null) {
-                            buffer = data;
+                            // only the trailing incomplete frame is kept.
+                            incomingBuffer.retain(data);
                             break;
                         } else {
                             for (Extension extension : negotiatedExtensions) {
@@ -329,6 +383,29 @@ public class TyrusClientEngine implements ClientEngine {
             } catch (Exception e) {
                 LOGGER.log(Level.FINE, e.getMessage(), e);
                 socket.onClose(new CloseFrame(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, e.getMessage())));
+            } finally {
+                lock.unlock();
+                if (closed) {
+                    close();
+                }
+            }
+        }
+
+        /**
+         * Release buffered data when the connection is closed.
+         * <p/>
+         * Does not block - when data are being processed (possibly by current thread, during close frame
+         * processing), buffer is released by {@link #handle(ByteBuffer)} after the processing is finished. Data passed
+         * to {@link #handle(ByteBuffer)} after this call are dropped.
+         */
+        void close() {
+            closed = true;
+            if (!lock.isHeldByCurrentThread() && lock.tryLock()) {
+                try {
+                    incomingBuffer.release();
+                } finally {
+                    lock.unlock();
+                }
             }
         }
     }
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2012-2013 Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2012-2014 Oracle and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -54,6 +54,8 @@ import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.EmptyCompletionHandler;
 import org.glassfish.grizzly.WriteHandler;
 import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.CompositeBuffer;
+import org.glassfish.grizzly.memory.MemoryManager;
 
 /**
  * @author Pavel Bucek (pavel.bucek at oracle.com)
@@ -77,7 +79,28 @@ public class GrizzlyWriter extends Writer {
         }
 
         final Buffer message = Buffers.wrap(connection.getTransport().getMemoryManager(), buffer);
+        write(message, buffer, completionHandler);
+    }
+
+    @Override
+    public void write(final ByteBuffer[] buffers, final CompletionHandler<ByteBuffer[]> completionHandler) {
+        if (!connection.isOpen()) {
+            completionHandler.failed(new IllegalStateException("Connection is not open."));
+            return;
+        }
+
+        final MemoryManager memoryManager = connection.getTransport().getMemoryManager();
+        final Buffer[] wrapped = new Buffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            wrapped[i] = Buffers.wrap(memoryManager, buffers[i]);
+        }
+
+        // composite buffer does not copy the data.
+        final Buffer message = CompositeBuffer.newBuffer(memoryManager, wrapped);
+        write(message, buffers, completionHandler);
+    }
 
+    private <T> void write(final Buffer message, final T data, final CompletionHandler<T> completionHandler) {
         final EmptyCompletionHandler emptyCompletionHandler = new EmptyCompletionHandler() {
             @Override
             public void cancelled() {
@@ -89,7 +112,7 @@ public class GrizzlyWriter extends Writer {
             @Override
             public void completed(Object result) {
                 if (completionHandler != null) {
-                    completionHandler.completed(buffer);
+                    completionHandler.completed(data);
                 }
             }
 
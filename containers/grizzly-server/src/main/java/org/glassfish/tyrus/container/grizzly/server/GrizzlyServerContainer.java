@@ -48,11 +48,14 @@ import java.util.Set;
 import javax.websocket.DeploymentException;
 import javax.websocket.server.ServerEndpointConfig;
 
+import org.glassfish.tyrus.core.OutboundOverflowPolicy;
+import org.glassfish.tyrus.core.ProtocolHandler;
 import org.glassfish.tyrus.core.TyrusWebSocketEngine;
 import org.glassfish.tyrus.core.Utils;
 import org.glassfish.tyrus.core.cluster.ClusterContext;
 import org.glassfish.tyrus.server.Server;
 import org.glassfish.tyrus.server.TyrusServerContainer;
+import org.glassfish.tyrus.spi.BufferAllocator;
 import org.glassfish.tyrus.spi.ServerContainer;
 import org.glassfish.tyrus.spi.ServerContainerFactory;
 import org.glassfish.tyrus.spi.WebSocketEngine;
@@ -104,6 +107,18 @@ public class GrizzlyServerContainer extends ServerContainerFactory {
             incomingBufferSize = null;
         }
 
+        final Integer streamingChunkSize = Utils.getProperty(localProperties, TyrusWebSocketEngine.STREAMING_CHUNK_SIZE, Integer.class);
+        final BufferAllocator bufferAllocator = Utils.getProperty(localProperties, TyrusWebSocketEngine.BUFFER_ALLOCATOR, BufferAllocator.class);
+        final Integer incomingBufferGrowthFactor = Utils.getProperty(localProperties, TyrusWebSocketEngine.INCOMING_BUFFER_GROWTH_FACTOR, Integer.class);
+        final Integer batchSize = Utils.getProperty(localProperties, TyrusWebSocketEngine.BATCH_SIZE, Integer.class);
+        final Integer batchLinger = Utils.getProperty(localProperties, TyrusWebSocketEngine.BATCH_LINGER, Integer.class);
+        final Boolean closeOnSendTimeout = Utils.getProperty(localProperties, TyrusWebSocketEngine.CLOSE_ON_SEND_TIMEOUT, Boolean.class);
+        final Integer outboundLowWatermark = Utils.getProperty(localProperties, TyrusWebSocketEngine.OUTBOUND_LOW_WATERMARK, Integer.class);
+        final Integer outboundHighWatermark = Utils.getProperty(localProperties, TyrusWebSocketEngine.OUTBOUND_HIGH_WATERMARK, Integer.class);
+        final Integer outboundBufferLimit = Utils.getProperty(localProperties, TyrusWebSocketEngine.OUTBOUND_BUFFER_LIMIT, Integer.class);
+        final OutboundOverflowPolicy outboundOverflowPolicy =
+                OutboundOverflowPolicy.fromProperty(localProperties.get(TyrusWebSocketEngine.OUTBOUND_OVERFLOW_POLICY));
+
         o = localProperties.get(ClusterContext.CLUSTER_CONTEXT);
         final ClusterContext clusterContext;
         if (o != null && o instanceof ClusterContext) {
@@ -114,7 +129,34 @@ public class GrizzlyServerContainer extends ServerContainerFactory {
 
         return new TyrusServerContainer((Set<Class<?>>) null) {
 
-            private final WebSocketEngine engine = new TyrusWebSocketEngine(this, incomingBufferSize, clusterContext);
+            private final TyrusWebSocketEngine engine = new TyrusWebSocketEngine(this, incomingBufferSize, clusterContext);
+
+            {
+                if (streamingChunkSize != null) {
+                    engine.setStreamingChunkSize(streamingChunkSize);
+                }
+                if (bufferAllocator != null) {
+                    engine.setBufferAllocator(bufferAllocator);
+                }
+                if (incomingBufferGrowthFactor != null) {
+                    engine.setIncomingBufferGrowthFactor(incomingBufferGrowthFactor);
+                }
+                if (batchSize != null) {
+                    engine.setBatchSize(batchSize);
+                }
+                if (batchLinger != null) {
+                    engine.setBatchLinger(batchLinger);
+                }
+                if (closeOnSendTimeout != null) {
+                    engine.setCloseOnSendTimeout(closeOnSendTimeout);
+                }
+                engine.setOutboundWatermarks(
+                        outboundLowWatermark != null ? outboundLowWatermark : ProtocolHandler.DEFAULT_LOW_WATERMARK,
+                        outboundHighWatermark != null ? outboundHighWatermark : ProtocolHandler.DEFAULT_HIGH_WATERMARK);
+                if (outboundBufferLimit != null) {
+                    engine.setOutboundBufferLimit(outboundBufferLimit, outboundOverflowPolicy);
+                }
+            }
 
             private HttpServer server;
             private String contextPath;
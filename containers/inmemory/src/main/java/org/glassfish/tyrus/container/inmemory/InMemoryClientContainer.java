@@ -152,7 +152,7 @@ public class InMemoryClientContainer implements ClientContainer {
     }
 
 
-    private static class InMemoryWriter extends Writer {
+    static class InMemoryWriter extends Writer {
 
         private final List<ByteBuffer> cache = new ArrayList<ByteBuffer>();
         private volatile ReadHandler readHandler = null;
@@ -161,7 +161,7 @@ public class InMemoryClientContainer implements ClientContainer {
         public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
             synchronized (cache) {
                 if (readHandler == null) {
-                    cache.add(buffer);
+                    cache.add(copy(buffer));
                 } else {
                     readHandler.handle(buffer);
                 }
@@ -170,12 +170,38 @@ public class InMemoryClientContainer implements ClientContainer {
             }
         }
 
+        @Override
+        public void write(ByteBuffer[] buffers, CompletionHandler<ByteBuffer[]> completionHandler) {
+            synchronized (cache) {
+                for (ByteBuffer buffer : buffers) {
+                    if (readHandler == null) {
+                        cache.add(copy(buffer));
+                    } else {
+                        readHandler.handle(buffer);
+                    }
+                }
+
+                completionHandler.completed(buffers);
+            }
+        }
+
         @Override
         public void close() throws IOException {
             // do nothing.
         }
 
-        private void setReadHandler(ReadHandler readHandler) {
+        /**
+         * Buffer is released (and possibly reused) by tyrus runtime when the write is completed, so the content
+         * needs to be copied before it is cached.
+         */
+        private static ByteBuffer copy(ByteBuffer buffer) {
+            final ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+            copy.put(buffer);
+            copy.flip();
+            return copy;
+        }
+
+        void setReadHandler(ReadHandler readHandler) {
             synchronized (cache) {
                 for (ByteBuffer buffer : cache) {
                     readHandler.handle(buffer);
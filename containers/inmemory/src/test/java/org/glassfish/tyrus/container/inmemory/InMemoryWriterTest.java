@@ -0,0 +1,101 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.container.inmemory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.ReadHandler;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests delivery of gathered writes by {@link InMemoryClientContainer.InMemoryWriter}.
+ */
+public class InMemoryWriterTest {
+
+    @Test
+    public void testPerBufferDelivery() throws Exception {
+        final InMemoryClientContainer.InMemoryWriter writer = new InMemoryClientContainer.InMemoryWriter();
+        final List<ByteBuffer> received = new ArrayList<ByteBuffer>();
+        final List<ByteBuffer[]> completed = new ArrayList<ByteBuffer[]>();
+        final CompletionHandler<ByteBuffer[]> completionHandler = new CompletionHandler<ByteBuffer[]>() {
+            @Override
+            public void completed(ByteBuffer[] result) {
+                completed.add(result);
+            }
+        };
+
+        // written before the read handler is set - copies are cached.
+        final ByteBuffer[] cached = {ByteBuffer.wrap(new byte[]{1, 2}), ByteBuffer.wrap(new byte[]{3, 4, 5})};
+        writer.write(cached, completionHandler);
+        assertSame(cached, completed.get(0));
+        cached[0].clear();
+        cached[0].put(new byte[]{9, 9}).flip();
+
+        writer.setReadHandler(new ReadHandler() {
+            @Override
+            public void handle(ByteBuffer data) {
+                final ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+                copy.put(data).flip();
+                received.add(copy);
+            }
+        });
+
+        assertEquals(2, received.size());
+        assertEquals(ByteBuffer.wrap(new byte[]{1, 2}), received.get(0));
+        assertEquals(ByteBuffer.wrap(new byte[]{3, 4, 5}), received.get(1));
+
+        // each buffer is passed to the read handler directly.
+        final ByteBuffer[] direct = {ByteBuffer.wrap(new byte[]{6}), ByteBuffer.wrap(new byte[]{7, 8})};
+        writer.write(direct, completionHandler);
+        assertEquals(4, received.size());
+        assertEquals(ByteBuffer.wrap(new byte[]{6}), received.get(2));
+        assertEquals(ByteBuffer.wrap(new byte[]{7, 8}), received.get(3));
+        assertFalse(direct[1].hasRemaining());
+        assertSame(direct, completed.get(1));
+    }
+}
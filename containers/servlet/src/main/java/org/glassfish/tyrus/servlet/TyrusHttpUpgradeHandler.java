@@ -178,46 +178,36 @@ public class TyrusHttpUpgradeHandler implements HttpUpgradeHandler, ReadListener
      * @throws IOException if some other I/O error occurs.
      */
     private int fillBuf(int length) throws IOException {
-        byte[] data = new byte[length];
-        int len = is.read(data);
-        if (len == 0) {
-            return 0;
-        }
         if (buf == null) {
             LOGGER.finest("No Buffer. Allocating new one");
-            buf = ByteBuffer.wrap(data);
-            buf.limit(len);
-        } else {
-            int limit = buf.limit();
-            int capacity = buf.capacity();
-            int remaining = buf.remaining();
-
-            if (capacity - limit >= len) {
-                // Remaining data need not be changed. New data is just appended
-                LOGGER.finest("Remaining data need not be moved. New data is just appended");
-                buf.mark();
-                buf.position(limit);
-                buf.limit(capacity);
-                buf.put(data, 0, len);
-                buf.limit(limit + len);
-                buf.reset();
-            } else if (remaining + len < capacity) {
+            buf = ByteBuffer.allocate(length);
+            buf.limit(0);
+        } else if (buf.capacity() - buf.limit() < length) {
+            final int remaining = buf.remaining();
+
+            if (remaining + length <= buf.capacity()) {
                 // Remaining data is moved to left. Then new data is appended
                 LOGGER.finest("Remaining data is moved to left. Then new data is appended");
                 buf.compact();
-                buf.put(data, 0, len);
                 buf.flip();
             } else {
                 // Remaining data + new > capacity. So allocate new one
                 LOGGER.finest("Remaining data + new > capacity. So allocate new one");
-                byte[] array = new byte[remaining + len];
-                buf.get(array, 0, remaining);
-                System.arraycopy(data, 0, array, remaining, len);
-                buf = ByteBuffer.wrap(array);
-                buf.limit(remaining + len);
+                final ByteBuffer newBuf = ByteBuffer.allocate(remaining + length);
+                newBuf.put(buf);
+                newBuf.flip();
+                buf = newBuf;
             }
         }
 
+        // data are read directly to the buffer, after the remaining data.
+        final int limit = buf.limit();
+        final int len = is.read(buf.array(), buf.arrayOffset() + limit, length);
+        if (len <= 0) {
+            return 0;
+        }
+
+        buf.limit(limit + len);
         return len;
     }
 
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2012-2013 Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2012-2014 Oracle and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -63,23 +63,59 @@ class TyrusServletWriter extends Writer implements WriteListener {
     private final ArrayBlockingQueue<QueuedFrame> queue = new ArrayBlockingQueue<QueuedFrame>(32);
 
     private static final Logger LOGGER = Logger.getLogger(TyrusServletWriter.class.getName());
+    private static final int COPY_BUFFER_SIZE = 8192;
 
     // servlet output stream is not thread safe, we need to ensure it is not accessed from multiple threads at once.
     private final Object outputStreamLock = new Object();
     private ServletOutputStream servletOutputStream = null;
+    // used for buffers without accessible array (direct buffers), guarded by outputStreamLock.
+    private byte[] copyBuffer = null;
 
     private volatile boolean isReady = false;
 
     private static class QueuedFrame {
-        public final CompletionHandler<ByteBuffer> completionHandler;
-        public final ByteBuffer dataFrame;
+        public final CompletionHandler<ByteBuffer[]> completionHandler;
+        public final ByteBuffer[] dataFrame;
 
-        QueuedFrame(CompletionHandler<ByteBuffer> completionHandler, ByteBuffer dataFrame) {
+        QueuedFrame(CompletionHandler<ByteBuffer[]> completionHandler, ByteBuffer[] dataFrame) {
             this.completionHandler = completionHandler;
             this.dataFrame = dataFrame;
         }
     }
 
+    /**
+     * Adapts completion handler of single buffer write to the one used for {@link QueuedFrame}.
+     */
+    private static class SingleBufferCompletionHandler extends CompletionHandler<ByteBuffer[]> {
+        private final CompletionHandler<ByteBuffer> completionHandler;
+        private final ByteBuffer buffer;
+
+        SingleBufferCompletionHandler(CompletionHandler<ByteBuffer> completionHandler, ByteBuffer buffer) {
+            this.completionHandler = completionHandler;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void cancelled() {
+            completionHandler.cancelled();
+        }
+
+        @Override
+        public void failed(Throwable throwable) {
+            completionHandler.failed(throwable);
+        }
+
+        @Override
+        public void completed(ByteBuffer[] result) {
+            completionHandler.completed(buffer);
+        }
+
+        @Override
+        public void updated(ByteBuffer[] result) {
+            completionHandler.updated(buffer);
+        }
+    }
+
     /**
      * Constructor.
      *
@@ -122,6 +158,11 @@ class TyrusServletWriter extends Writer implements WriteListener {
 
     @Override
     public void write(final ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+        write(new ByteBuffer[]{buffer}, completionHandler == null ? null : new SingleBufferCompletionHandler(completionHandler, buffer));
+    }
+
+    @Override
+    public void write(final ByteBuffer[] buffers, CompletionHandler<ByteBuffer[]> completionHandler) {
 
         synchronized (outputStreamLock) {
             // first write
@@ -141,9 +182,9 @@ class TyrusServletWriter extends Writer implements WriteListener {
         }
 
         if (isReady) {
-            _write(buffer, completionHandler);
+            _write(buffers, completionHandler);
         } else {
-            final QueuedFrame queuedFrame = new QueuedFrame(completionHandler, buffer);
+            final QueuedFrame queuedFrame = new QueuedFrame(completionHandler, buffers);
             try {
                 queue.put(queuedFrame);
             } catch (InterruptedException e) {
@@ -153,20 +194,31 @@ class TyrusServletWriter extends Writer implements WriteListener {
         }
     }
 
-    public void _write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+    public void _write(ByteBuffer[] buffers, CompletionHandler<ByteBuffer[]> completionHandler) {
 
         try {
-            final int remaining = buffer.remaining();
-            final byte[] array = new byte[remaining];
-            buffer.get(array);
-
             synchronized (outputStreamLock) {
-                servletOutputStream.write(array);
+                for (ByteBuffer buffer : buffers) {
+                    final int remaining = buffer.remaining();
+                    if (buffer.hasArray()) {
+                        servletOutputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), remaining);
+                        buffer.position(buffer.limit());
+                    } else {
+                        if (copyBuffer == null) {
+                            copyBuffer = new byte[COPY_BUFFER_SIZE];
+                        }
+                        while (buffer.hasRemaining()) {
+                            final int length = Math.min(buffer.remaining(), copyBuffer.length);
+                            buffer.get(copyBuffer, 0, length);
+                            servletOutputStream.write(copyBuffer, 0, length);
+                        }
+                    }
+                }
                 servletOutputStream.flush();
             }
 
             if (completionHandler != null) {
-                completionHandler.completed(buffer);
+                completionHandler.completed(buffers);
             }
         } catch (Exception e) {
             if (completionHandler != null) {
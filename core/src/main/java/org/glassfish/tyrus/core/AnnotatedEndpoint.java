@@ -88,9 +88,11 @@ public class AnnotatedEndpoint extends Endpoint {
 
     private final Object annotatedInstance;
     private final Class<?> annotatedClass;
-    private final Method onOpenMethod;
-    private final Method onCloseMethod;
-    private final Method onErrorMethod;
+    // slot of annotatedClass instances, see ComponentProviderService#getSlot(Class).
+    private final int annotatedSlot;
+    private final MethodInvoker onOpenMethod;
+    private final MethodInvoker onCloseMethod;
+    private final MethodInvoker onErrorMethod;
     private final ParameterExtractor[] onOpenParameters;
     private final ParameterExtractor[] onCloseParameters;
     private final ParameterExtractor[] onErrorParameters;
@@ -135,6 +137,7 @@ public class AnnotatedEndpoint extends Endpoint {
                 return ((ServerEndpointConfig) configuration).getConfigurator().getEndpointInstance(endpointClass);
             }
         } : componentProvider;
+        this.annotatedSlot = instance == null ? this.componentProvider.getSlot(annotatedClass) : -1;
 
         Method onOpen = null;
         Method onClose = null;
@@ -205,7 +208,7 @@ public class AnnotatedEndpoint extends Endpoint {
                     if (unknownParams.size() == 1) {
                         Map.Entry<Integer, Class<?>> entry = unknownParams.entrySet().iterator().next();
                         extractors[entry.getKey()] = new ParamValue(0);
-                        handlerFactory = new WholeHandler(componentProvider.getInvocableMethod(m), extractors, entry.getValue(), maxMessageSize);
+                        handlerFactory = new WholeHandler(getInvoker(m), extractors, entry.getValue(), maxMessageSize);
                         messageHandlerFactories.add(handlerFactory);
                         validityChecker.checkOnMessageParams(m, handlerFactory.create(null));
                     } else if (unknownParams.size() == 2) {
@@ -221,7 +224,7 @@ public class AnnotatedEndpoint extends Endpoint {
                         extractors[message.getKey()] = new ParamValue(0);
                         extractors[last.getKey()] = new ParamValue(1);
                         if (last.getValue() == boolean.class || last.getValue() == Boolean.class) {
-                            handlerFactory = new PartialHandler(componentProvider.getInvocableMethod(m), extractors, message.getValue(), maxMessageSize);
+                            handlerFactory = new PartialHandler(getInvoker(m), extractors, message.getValue(), maxMessageSize);
                             messageHandlerFactories.add(handlerFactory);
                             validityChecker.checkOnMessageParams(m, handlerFactory.create(null));
                         } else {
@@ -234,9 +237,9 @@ public class AnnotatedEndpoint extends Endpoint {
             }
         }
 
-        this.onOpenMethod = onOpen == null ? null : componentProvider.getInvocableMethod(onOpen);
-        this.onErrorMethod = onError == null ? null : componentProvider.getInvocableMethod(onError);
-        this.onCloseMethod = onClose == null ? null : componentProvider.getInvocableMethod(onClose);
+        this.onOpenMethod = onOpen == null ? null : getInvoker(onOpen);
+        this.onErrorMethod = onError == null ? null : getInvoker(onError);
+        this.onCloseMethod = onClose == null ? null : getInvoker(onClose);
         this.onOpenParameters = onOpenParameters;
         this.onErrorParameters = onErrorParameters;
         this.onCloseParameters = onCloseParameters;
@@ -419,28 +422,36 @@ public class AnnotatedEndpoint extends Endpoint {
         return null;
     }
 
-    private Object callMethod(Method method, ParameterExtractor[] extractors, Session session, boolean callOnError, Object... params) {
-        ErrorCollector collector = new ErrorCollector();
+    private MethodInvoker getInvoker(Method method) {
+        return componentProvider.getMethodInvoker(componentProvider.getInvocableMethod(method));
+    }
+
+    private Object callMethod(MethodInvoker invoker, ParameterExtractor[] extractors, Session session, boolean callOnError, Object... params) {
         Object[] paramValues = new Object[extractors.length];
 
         try {
-            final Object endpoint = annotatedInstance != null ? annotatedInstance :
-                    componentProvider.getInstance(annotatedClass, session, collector);
+            final Object endpoint;
+            if (annotatedInstance != null) {
+                endpoint = annotatedInstance;
+            } else {
+                ErrorCollector collector = new ErrorCollector();
+                endpoint = componentProvider.getInstance(annotatedSlot, annotatedClass, session, collector);
 
-            if (!collector.isEmpty()) {
-                throw collector.composeComprehensiveException();
+                if (!collector.isEmpty()) {
+                    throw collector.composeComprehensiveException();
+                }
             }
 
             for (int i = 0; i < paramValues.length; i++) {
                 paramValues[i] = extractors[i].value(session, params);
             }
 
-            return method.invoke(endpoint, paramValues);
+            return invoker.invoke(endpoint, paramValues);
         } catch (Exception e) {
             if (callOnError) {
                 onError(session, (e instanceof InvocationTargetException ? e.getCause() : e));
             } else {
-                LOGGER.log(Level.INFO, LocalizationMessages.ENDPOINT_EXCEPTION_FROM_ON_ERROR(method), e);
+                LOGGER.log(Level.INFO, LocalizationMessages.ENDPOINT_EXCEPTION_FROM_ON_ERROR(invoker.getMethod()), e);
             }
         }
 
@@ -505,12 +516,12 @@ public class AnnotatedEndpoint extends Endpoint {
     }
 
     abstract class MessageHandlerFactory {
-        final Method method;
+        final MethodInvoker method;
         final ParameterExtractor[] extractors;
         final Class<?> type;
         final long maxMessageSize;
 
-        MessageHandlerFactory(Method method, ParameterExtractor[] extractors, Class<?> type, long maxMessageSize) {
+        MessageHandlerFactory(MethodInvoker method, ParameterExtractor[] extractors, Class<?> type, long maxMessageSize) {
             this.method = method;
             this.extractors = extractors;
             this.type = (PrimitivesToWrappers.getPrimitiveWrapper(type) == null) ? type : PrimitivesToWrappers.getPrimitiveWrapper(type);
@@ -521,7 +532,7 @@ public class AnnotatedEndpoint extends Endpoint {
     }
 
     class WholeHandler extends MessageHandlerFactory {
-        WholeHandler(Method method, ParameterExtractor[] extractors, Class<?> type, long maxMessageSize) {
+        WholeHandler(MethodInvoker method, ParameterExtractor[] extractors, Class<?> type, long maxMessageSize) {
             super(method, extractors, type, maxMessageSize);
         }
 
@@ -554,7 +565,7 @@ public class AnnotatedEndpoint extends Endpoint {
     }
 
     class PartialHandler extends MessageHandlerFactory {
-        PartialHandler(Method method, ParameterExtractor[] extractors, Class<?> type, long maxMessageSize) {
+        PartialHandler(MethodInvoker method, ParameterExtractor[] extractors, Class<?> type, long maxMessageSize) {
             super(method, extractors, type, maxMessageSize);
         }
 
@@ -69,6 +69,9 @@ public abstract class BaseContainer extends ExecutorServiceProvider implements W
 
     private ThreadFactory threadFactory = null;
 
+    private final Object timerLock = new Object();
+    private volatile HashedWheelTimer timer = null;
+
     public BaseContainer() {
         this.executorService = newExecutorService();
         this.scheduledExecutorService = newScheduledExecutorService();
@@ -84,11 +87,37 @@ public abstract class BaseContainer extends ExecutorServiceProvider implements W
         return scheduledExecutorService;
     }
 
+    /**
+     * Get timer shared by all sessions of this container (used for send timeouts).
+     * <p/>
+     * Timer is created when this method is called for the first time; it uses {@link #getScheduledExecutorService()}.
+     *
+     * @return container timer.
+     */
+    public HashedWheelTimer getTimer() {
+        HashedWheelTimer localTimer = timer;
+        if (localTimer == null) {
+            synchronized (timerLock) {
+                localTimer = timer;
+                if (localTimer == null) {
+                    localTimer = new HashedWheelTimer(getScheduledExecutorService());
+                    timer = localTimer;
+                }
+            }
+        }
+        return localTimer;
+    }
+
     /**
      * Release executor services managed by this instance. Executor services obtained via JNDI lookup won't be
      * shut down.
      */
     public void shutdown() {
+        final HashedWheelTimer localTimer = timer;
+        if (localTimer != null) {
+            localTimer.stop();
+        }
+
         if (shutdownExecutorService) {
             executorService.shutdown();
         }
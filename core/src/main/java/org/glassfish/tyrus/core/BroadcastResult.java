@@ -0,0 +1,166 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Aggregate status of a broadcast started by {@link TyrusSession#broadcastAsync(String)} or
+ * {@link TyrusSession#broadcastAsync(java.nio.ByteBuffer)}.
+ * <p/>
+ * Counters are updated as the message is being written to the sessions, so they can be read at any time; the values
+ * are final once {@link #isDone()} returns {@code true}. Messages sent from other cluster nodes are not included.
+ * <p/>
+ * Instances are thread safe.
+ */
+public class BroadcastResult {
+
+    private final CountDownLatch doneLatch = new CountDownLatch(1);
+    private final AtomicInteger sent = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger remaining = new AtomicInteger();
+
+    private volatile int sessions = -1;
+
+    BroadcastResult() {
+    }
+
+    /**
+     * Get number of sessions the message was broadcasted to.
+     *
+     * @return number of sessions or {@code -1} when the set of sessions was not determined yet.
+     */
+    public int getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Get number of sessions to which the message was successfully written.
+     *
+     * @return number of sent messages.
+     */
+    public int getSent() {
+        return sent.get();
+    }
+
+    /**
+     * Get number of sessions to which the message could not be sent.
+     *
+     * @return number of failed messages.
+     */
+    public int getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Get number of sessions which were not open when the broadcast reached them.
+     *
+     * @return number of skipped sessions.
+     */
+    public int getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Get completion status of the broadcast.
+     *
+     * @return {@code true} when all sessions were processed (the message was sent, failed or skipped for each of them),
+     * {@code false} otherwise.
+     */
+    public boolean isDone() {
+        return doneLatch.getCount() == 0;
+    }
+
+    /**
+     * Wait for the broadcast to complete.
+     *
+     * @param timeout maximum time to wait.
+     * @param unit    time unit of the timeout argument.
+     * @return {@code true} when the broadcast completed, {@code false} if the waiting time elapsed.
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return doneLatch.await(timeout, unit);
+    }
+
+    /**
+     * Set number of sessions to be processed; completes the result when there is none.
+     *
+     * @param sessions number of sessions.
+     */
+    void start(int sessions) {
+        remaining.set(sessions);
+        this.sessions = sessions;
+        if (sessions == 0) {
+            doneLatch.countDown();
+        }
+    }
+
+    void sent() {
+        sent.incrementAndGet();
+        processed(1);
+    }
+
+    void failed() {
+        failed.incrementAndGet();
+        processed(1);
+    }
+
+    void skipped(int count) {
+        skipped.addAndGet(count);
+        processed(count);
+    }
+
+    @Override
+    public String toString() {
+        return "BroadcastResult{sessions=" + sessions + ", sent=" + sent + ", failed=" + failed + ", skipped=" + skipped
+                + ", done=" + isDone() + "}";
+    }
+
+    private void processed(int count) {
+        if (count > 0 && remaining.addAndGet(-count) == 0) {
+            doneLatch.countDown();
+        }
+    }
+}
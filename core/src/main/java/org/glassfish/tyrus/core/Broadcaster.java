@@ -0,0 +1,306 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.spi.CompletionHandler;
+
+/**
+ * Sends a message to a set of sessions.
+ * <p/>
+ * Sessions are split into shards which are dispatched in parallel; all shards but one are submitted to the executor
+ * service, the remaining one is processed by the dispatching thread. Sets smaller than {@link #MIN_SHARD_SIZE} and all
+ * sets when there is no executor service are processed by the dispatching thread only. Once the executor service
+ * rejects a shard, the remaining shards are processed by the dispatching thread as well.
+ */
+class Broadcaster {
+
+    /**
+     * Minimal number of sessions processed by one task. Submitting a task costs more than sending few messages.
+     */
+    static final int MIN_SHARD_SIZE = 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(Broadcaster.class.getName());
+
+    private final ExecutorService executorService;
+    private final int parallelism;
+
+    /**
+     * Create new broadcaster.
+     *
+     * @param executorService executor service used for dispatching shards, can be {@code null}.
+     * @param parallelism     maximal number of shards.
+     */
+    Broadcaster(ExecutorService executorService, int parallelism) {
+        this.executorService = executorService;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Send message to all open sessions and wait until it is passed to all of them.
+     *
+     * @param sessions sessions to send the message to.
+     * @param message  message to be sent.
+     * @return map of sessions and futures for user to get the information about status of the message.
+     */
+    Map<Session, Future<?>> broadcast(Collection<TyrusSession> sessions, final PreparedMessage message) {
+        final TyrusSession[] snapshot = sessions.toArray(new TyrusSession[0]);
+        final int shards = getShardCount(snapshot.length);
+
+        final List<Shard> tasks = new ArrayList<Shard>(shards);
+        final Map<Session, Future<?>> result = new HashMap<Session, Future<?>>(snapshot.length * 4 / 3 + 1);
+
+        for (int i = 1; i < shards; i++) {
+            tasks.add(new Shard(snapshot, getShardStart(snapshot.length, shards, i),
+                    getShardStart(snapshot.length, shards, i + 1), message));
+        }
+
+        for (Shard task : tasks) {
+            try {
+                executorService.execute(task);
+            } catch (RejectedExecutionException e) {
+                // executor is saturated, remaining shards are processed by the calling thread below.
+                break;
+            }
+        }
+
+        broadcast(snapshot, 0, getShardStart(snapshot.length, shards, 1), message, result);
+
+        boolean interrupted = false;
+        for (Shard task : tasks) {
+            // shards not started by the executor yet (or not submitted at all) are processed by the calling thread,
+            // so it waits only for the shards which are being processed.
+            task.run();
+            while (true) {
+                try {
+                    result.putAll(task.get());
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // not expected, per session failures are reported by the futures.
+                    LOGGER.log(Level.WARNING, e.getMessage(), e.getCause());
+                    for (int i = task.from; i < task.to; i++) {
+                        final TyrusFuture<Frame> failed = new TyrusFuture<Frame>();
+                        failed.setFailure(e.getCause());
+                        result.put(snapshot[i], failed);
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        return result;
+    }
+
+    /**
+     * Send message to all open sessions without waiting.
+     * <p/>
+     * Set of sessions is determined and dispatched by the executor service when there is one; sets smaller than
+     * {@link #MIN_SHARD_SIZE} (typically subscribers of a topic) are dispatched by the calling thread, which is cheaper
+     * than passing them to another thread.
+     *
+     * @param sessions sessions to send the message to.
+     * @param message  message to be sent.
+     * @return aggregate status of the broadcast.
+     */
+    BroadcastResult broadcastAsync(final Collection<TyrusSession> sessions, final PreparedMessage message) {
+        final BroadcastResult result = new BroadcastResult();
+        final Runnable dispatcher = new Runnable() {
+            @Override
+            public void run() {
+                dispatch(sessions.toArray(new TyrusSession[0]), message, result);
+            }
+        };
+
+        if (executorService == null || sessions.size() < MIN_SHARD_SIZE) {
+            dispatcher.run();
+        } else {
+            try {
+                executorService.execute(dispatcher);
+            } catch (RejectedExecutionException e) {
+                dispatcher.run();
+            }
+        }
+
+        return result;
+    }
+
+    private void dispatch(final TyrusSession[] sessions, final PreparedMessage message, final BroadcastResult result) {
+        result.start(sessions.length);
+        final int shards = getShardCount(sessions.length);
+        boolean rejected = false;
+
+        for (int i = 1; i < shards; i++) {
+            final int from = getShardStart(sessions.length, shards, i);
+            final int to = getShardStart(sessions.length, shards, i + 1);
+            final Runnable shard = new Runnable() {
+                @Override
+                public void run() {
+                    broadcast(sessions, from, to, message, result);
+                }
+            };
+            if (rejected) {
+                shard.run();
+                continue;
+            }
+            try {
+                executorService.execute(shard);
+            } catch (RejectedExecutionException e) {
+                // executor is saturated, do not try to submit the remaining shards.
+                rejected = true;
+                shard.run();
+            }
+        }
+
+        broadcast(sessions, 0, getShardStart(sessions.length, shards, 1), message, result);
+    }
+
+    private static void broadcast(TyrusSession[] sessions, int from, int to, PreparedMessage message,
+                                  Map<Session, Future<?>> futures) {
+        for (int i = from; i < to; i++) {
+            final TyrusSession session = sessions[i];
+            if (session.isOpen()) {
+                Future<?> future;
+                try {
+                    future = session.getWebSocket().sendPrepared(message);
+                } catch (RuntimeException e) {
+                    final TyrusFuture<Frame> failed = new TyrusFuture<Frame>();
+                    failed.setFailure(e);
+                    future = failed;
+                }
+                futures.put(session, future);
+            }
+        }
+    }
+
+    private static void broadcast(TyrusSession[] sessions, int from, int to, PreparedMessage message,
+                                  final BroadcastResult result) {
+        final CompletionHandler<Frame> completionHandler = new CompletionHandler<Frame>() {
+            @Override
+            public void cancelled() {
+                result.failed();
+            }
+
+            @Override
+            public void failed(Throwable throwable) {
+                result.failed();
+            }
+
+            @Override
+            public void completed(Frame frame) {
+                result.sent();
+            }
+        };
+
+        int skipped = 0;
+        for (int i = from; i < to; i++) {
+            final TyrusSession session = sessions[i];
+            final TyrusWebSocket webSocket = session.getWebSocket();
+            if (!session.isOpen() || !webSocket.isConnected()) {
+                skipped++;
+                continue;
+            }
+
+            try {
+                webSocket.getProtocolHandler().send(message, completionHandler);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, e.getMessage(), e);
+                result.failed();
+            }
+        }
+
+        // skipped sessions are counted at the end, so the result cannot complete before the whole shard is processed.
+        result.skipped(skipped);
+    }
+
+    /**
+     * Shard of a synchronous broadcast.
+     */
+    private static class Shard extends FutureTask<Map<Session, Future<?>>> {
+
+        private final int from;
+        private final int to;
+
+        Shard(final TyrusSession[] sessions, final int from, final int to, final PreparedMessage message) {
+            super(new Callable<Map<Session, Future<?>>>() {
+                @Override
+                public Map<Session, Future<?>> call() {
+                    final Map<Session, Future<?>> futures = new HashMap<Session, Future<?>>((to - from) * 4 / 3 + 1);
+                    broadcast(sessions, from, to, message, futures);
+                    return futures;
+                }
+            });
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private int getShardCount(int sessions) {
+        if (executorService == null) {
+            return 1;
+        }
+        return Math.max(1, Math.min(parallelism, sessions / MIN_SHARD_SIZE));
+    }
+
+    private static int getShardStart(int sessions, int shards, int shard) {
+        return (int) ((long) sessions * shard / shards);
+    }
+}
@@ -43,10 +43,10 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.websocket.Decoder;
 import javax.websocket.DeploymentException;
@@ -65,15 +65,20 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
  */
 public class ComponentProviderService {
 
-    private final Map<Session, Map<Class<?>, Object>> sessionToObject;
+    // instances for sessions other than TyrusSession; TyrusSession holds its instances itself.
+    private final ConcurrentMap<Session, InstanceSlots> sessionToObject;
+    private final ConcurrentMap<Class<?>, Integer> slots;
+    private final AtomicInteger slotCount;
     private final List<ComponentProvider> providers;
+    private final List<MethodInvokerFactory> invokerFactories;
 
     /**
      * Create new instance of {@link ComponentProviderService}.
      * </p>
      * Searches for registered {@link ComponentProvider}s and registers them with this service.
      * </p>
-     * {@link DefaultComponentProvider} is always added to found providers.
+     * {@link DefaultComponentProvider} is always added to found providers. Registered {@link MethodInvokerFactory}s
+     * are searched for as well.
      *
      * @return initialized {@link ComponentProviderService}.
      */
@@ -86,7 +91,7 @@ public class ComponentProviderService {
         }
 
         foundProviders.add(new DefaultComponentProvider());
-        return new ComponentProviderService(Collections.unmodifiableList(foundProviders));
+        return new ComponentProviderService(Collections.unmodifiableList(foundProviders), findInvokerFactories());
     }
 
     /**
@@ -100,12 +105,26 @@ public class ComponentProviderService {
      * @return initialized {@link ComponentProviderService}.
      */
     public static ComponentProviderService createClient() {
-        return new ComponentProviderService(Collections.unmodifiableList(Arrays.<ComponentProvider>asList(new DefaultComponentProvider())));
+        return new ComponentProviderService(Collections.unmodifiableList(Arrays.<ComponentProvider>asList(new DefaultComponentProvider())),
+                findInvokerFactories());
     }
 
-    private ComponentProviderService(List<ComponentProvider> providers) {
+    private static List<MethodInvokerFactory> findInvokerFactories() {
+        final List<MethodInvokerFactory> foundFactories = new ArrayList<MethodInvokerFactory>();
+        for (MethodInvokerFactory factory : ServiceFinder.find(MethodInvokerFactory.class)) {
+            foundFactories.add(factory);
+        }
+
+        foundFactories.add(new GeneratedMethodInvokerFactory());
+        return Collections.unmodifiableList(foundFactories);
+    }
+
+    private ComponentProviderService(List<ComponentProvider> providers, List<MethodInvokerFactory> invokerFactories) {
         this.providers = providers;
-        this.sessionToObject = new ConcurrentHashMap<Session, Map<Class<?>, Object>>();
+        this.invokerFactories = invokerFactories;
+        this.sessionToObject = new ConcurrentHashMap<Session, InstanceSlots>();
+        this.slots = new ConcurrentHashMap<Class<?>, Integer>();
+        this.slotCount = new AtomicInteger();
     }
 
     /**
@@ -115,7 +134,10 @@ public class ComponentProviderService {
      */
     public ComponentProviderService(ComponentProviderService componentProviderService) {
         this.providers = componentProviderService.providers;
+        this.invokerFactories = componentProviderService.invokerFactories;
         this.sessionToObject = componentProviderService.sessionToObject;
+        this.slots = componentProviderService.slots;
+        this.slotCount = componentProviderService.slotCount;
     }
 
     /**
@@ -130,29 +152,38 @@ public class ComponentProviderService {
      * @return instance
      */
     public <T> Object getInstance(Class<T> c, Session session, ErrorCollector collector) {
-        Object loaded = null;
+        return getInstance(getSlot(c), c, session, collector);
+    }
 
-        final Map<Class<?>, Object> classObjectMap = sessionToObject.get(session);
+    /**
+     * Provide an instance of class which is coupled to {@link Session}.
+     * </p>
+     * Same as {@link #getInstance(Class, Session, ErrorCollector)}, but the cached instance is found using slot
+     * obtained by {@link #getSlot(Class)}; no lookup by class is needed.
+     *
+     * @param slot      slot assigned to the class.
+     * @param c         {@link Class} whose instance will be provided.
+     * @param collector error collector.
+     * @param <T>       type of the provided instance.
+     * @return instance
+     */
+    <T> Object getInstance(int slot, Class<T> c, Session session, ErrorCollector collector) {
+        final InstanceSlots instances = getInstanceSlots(session);
 
-        try {
-            if (classObjectMap != null) {
-                synchronized (classObjectMap) {
-                    if (classObjectMap.containsKey(c)) {
-                        loaded = classObjectMap.get(c);
-                    } else {
+        Object loaded = instances.get(slot);
+        if (loaded == null) {
+            synchronized (instances) {
+                loaded = instances.get(slot);
+                if (loaded == null) {
+                    try {
                         // returns not-null value
                         loaded = getEndpointInstance(c);
-                        sessionToObject.get(session).put(c, loaded);
+                        instances.set(slot, loaded);
+                    } catch (Exception e) {
+                        collector.addException(new DeploymentException(LocalizationMessages.COMPONENT_PROVIDER_THREW_EXCEPTION(c.getName()), e));
                     }
                 }
-            } else {
-                loaded = getEndpointInstance(c);
-                final HashMap<Class<?>, Object> hashMap = new HashMap<Class<?>, Object>();
-                hashMap.put(c, loaded);
-                sessionToObject.put(session, hashMap);
             }
-        } catch (Exception e) {
-            collector.addException(new DeploymentException(LocalizationMessages.COMPONENT_PROVIDER_THREW_EXCEPTION(c.getName()), e));
         }
 
         return loaded;
@@ -174,16 +205,31 @@ public class ComponentProviderService {
      * @return instance
      */
     public <T> Object getCoderInstance(Class<T> c, Session session, EndpointConfig endpointConfig, ErrorCollector collector) {
-        Object loaded = null;
+        return getCoderInstance(getSlot(c), c, session, endpointConfig, collector);
+    }
 
-        final Map<Class<?>, Object> classObjectMap = sessionToObject.get(session);
+    /**
+     * Provide an instance of {@link javax.websocket.Encoder} or {@link javax.websocket.Decoder} descendant which is coupled to {@link Session}.
+     * </p>
+     * Same as {@link #getCoderInstance(Class, Session, EndpointConfig, ErrorCollector)}, but the cached instance is
+     * found using slot obtained by {@link #getSlot(Class)}; no lookup by class is needed.
+     *
+     * @param slot           slot assigned to the class.
+     * @param c              {@link Class} whose instance will be provided.
+     * @param collector      error collector.
+     * @param endpointConfig configuration corresponding to current context.
+     * @param <T>            type of the provided instance.
+     * @return instance
+     */
+    <T> Object getCoderInstance(int slot, Class<T> c, Session session, EndpointConfig endpointConfig, ErrorCollector collector) {
+        final InstanceSlots instances = getInstanceSlots(session);
 
-        try {
-            if (classObjectMap != null) {
-                synchronized (classObjectMap) {
-                    if (classObjectMap.containsKey(c)) {
-                        loaded = classObjectMap.get(c);
-                    } else {
+        Object loaded = instances.get(slot);
+        if (loaded == null) {
+            synchronized (instances) {
+                loaded = instances.get(slot);
+                if (loaded == null) {
+                    try {
                         loaded = getInstance(c);
                         if (loaded != null) {
                             if (loaded instanceof Encoder) {
@@ -191,31 +237,56 @@ public class ComponentProviderService {
                             } else if (loaded instanceof Decoder) {
                                 ((Decoder) loaded).init(endpointConfig);
                             }
-                            sessionToObject.get(session).put(c, loaded);
+                            instances.set(slot, loaded);
                         }
+                    } catch (InstantiationException e) {
+                        collector.addException(new DeploymentException(LocalizationMessages.COMPONENT_PROVIDER_THREW_EXCEPTION(c.getName()), e));
                     }
                 }
-            } else {
-                loaded = getInstance(c);
-                if (loaded != null) {
-                    if (loaded instanceof Encoder) {
-                        ((Encoder) loaded).init(endpointConfig);
-                    } else if (loaded instanceof Decoder) {
-                        ((Decoder) loaded).init(endpointConfig);
-                    }
-                    final HashMap<Class<?>, Object> hashMap = new HashMap<Class<?>, Object>();
-                    hashMap.put(c, loaded);
-
-                    sessionToObject.put(session, hashMap);
-                }
             }
-        } catch (InstantiationException e) {
-            collector.addException(new DeploymentException(LocalizationMessages.COMPONENT_PROVIDER_THREW_EXCEPTION(c.getName()), e));
         }
 
         return loaded;
     }
 
+    /**
+     * Get slot assigned to given class.
+     * <p/>
+     * Instances provided for a {@link Session} are stored in an array held by the session, at the index assigned to
+     * their class. Slots should be obtained when an endpoint is deployed, so that processing of a message does not
+     * need to look up anything by class.
+     *
+     * @param c class of provided instances.
+     * @return slot assigned to the class.
+     */
+    int getSlot(Class<?> c) {
+        Integer slot = slots.get(c);
+        if (slot == null) {
+            final Integer newSlot = slotCount.getAndIncrement();
+            slot = slots.putIfAbsent(c, newSlot);
+            if (slot == null) {
+                slot = newSlot;
+            }
+        }
+        return slot;
+    }
+
+    private InstanceSlots getInstanceSlots(Session session) {
+        if (session instanceof TyrusSession) {
+            return ((TyrusSession) session).getInstanceSlots();
+        }
+
+        InstanceSlots instances = sessionToObject.get(session);
+        if (instances == null) {
+            final InstanceSlots newInstances = new InstanceSlots();
+            instances = sessionToObject.putIfAbsent(session, newInstances);
+            if (instances == null) {
+                instances = newInstances;
+            }
+        }
+        return instances;
+    }
+
     public Method getInvocableMethod(Method method) {
         for (ComponentProvider componentProvider : providers) {
             if (componentProvider.isApplicable(method.getDeclaringClass())) {
@@ -226,6 +297,26 @@ public class ComponentProviderService {
         return method;
     }
 
+    /**
+     * Get invoker of annotated endpoint method.
+     * <p/>
+     * Registered {@link MethodInvokerFactory}s are asked first; when none of them can invoke the method, invoker using
+     * {@link Method#invoke(Object, Object...)} is returned.
+     *
+     * @param method method to be invoked, already processed by {@link #getInvocableMethod(Method)}.
+     * @return invoker of given method.
+     */
+    public MethodInvoker getMethodInvoker(Method method) {
+        for (MethodInvokerFactory factory : invokerFactories) {
+            final MethodInvoker invoker = factory.create(method);
+            if (invoker != null) {
+                return invoker;
+            }
+        }
+
+        return MethodInvoker.reflective(method);
+    }
+
     private <T> Object getInstance(Class<T> clazz) throws InstantiationException {
         for (ComponentProvider componentProvider : providers) {
             if (componentProvider.isApplicable(clazz)) {
@@ -245,10 +336,15 @@ public class ComponentProviderService {
      * @param session to be removed.
      */
     public void removeSession(Session session) {
-        final Map<Class<?>, Object> classObjectMap = sessionToObject.get(session);
-        if (classObjectMap != null) {
-            synchronized (classObjectMap) {
-                for (Object o : classObjectMap.values()) {
+        final InstanceSlots instances = session instanceof TyrusSession ?
+                ((TyrusSession) session).getInstanceSlots() : sessionToObject.remove(session);
+        if (instances != null) {
+            synchronized (instances) {
+                for (Object o : instances.clear()) {
+                    if (o == null) {
+                        continue;
+                    }
+
                     if (o instanceof Encoder) {
                         ((Encoder) o).destroy();
                     } else if (o instanceof Decoder) {
@@ -263,8 +359,6 @@ public class ComponentProviderService {
                 }
             }
         }
-
-        sessionToObject.remove(session);
     }
 
     /**
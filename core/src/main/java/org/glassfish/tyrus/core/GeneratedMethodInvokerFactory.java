@@ -0,0 +1,386 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates invokers which call the method directly.
+ * <p/>
+ * For each method, a small subclass of {@link MethodInvoker} is generated; its {@code invoke} method casts the
+ * instance and parameters (unboxing primitives), calls the method and boxes the returned value. This avoids
+ * reflective access checks, argument copying and boxing done by {@link Method#invoke(Object, Object...)}. Only
+ * exceptions thrown by the method itself are wrapped in {@link java.lang.reflect.InvocationTargetException}; parameters
+ * of wrong types cause {@link ClassCastException} (or {@link NullPointerException} for {@code null} primitives).
+ * <p/>
+ * Generated class is defined by its own class loader whose parent is the class loader of the class declaring the
+ * method, so it can be garbage collected together with the endpoint. Only public methods of public classes with public
+ * parameter types can be invoked this way; {@link #create(Method)} returns {@code null} for other methods or when
+ * the class cannot be defined (for example because of security manager).
+ */
+class GeneratedMethodInvokerFactory extends MethodInvokerFactory {
+
+    private static final Logger LOGGER = Logger.getLogger(GeneratedMethodInvokerFactory.class.getName());
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private static final String INVOKER = MethodInvoker.class.getName().replace('.', '/');
+    private static final String INVOKE_DESCRIPTOR = "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;";
+    private static final String INVOCATION_TARGET_EXCEPTION = "java/lang/reflect/InvocationTargetException";
+
+    @Override
+    public MethodInvoker create(Method method) {
+        if (!isAccessible(method)) {
+            return null;
+        }
+
+        final String className = MethodInvoker.class.getName() + "$Generated" + COUNTER.incrementAndGet();
+        try {
+            final byte[] classFile = generate(className.replace('.', '/'), method);
+            final Class<?> invokerClass = new InvokerClassLoader(method.getDeclaringClass().getClassLoader())
+                    .define(className, classFile);
+            return (MethodInvoker) invokerClass.getConstructor(Method.class).newInstance(method);
+        } catch (Throwable t) {
+            LOGGER.log(Level.FINE, "Cannot generate invoker for " + method, t);
+            return null;
+        }
+    }
+
+    private static boolean isAccessible(Method method) {
+        if (!Modifier.isPublic(method.getModifiers()) || !isPublic(method.getDeclaringClass())) {
+            return false;
+        }
+        for (Class<?> type : method.getParameterTypes()) {
+            if (!isPublic(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPublic(Class<?> c) {
+        while (c.isArray()) {
+            c = c.getComponentType();
+        }
+        return c.isPrimitive() || Modifier.isPublic(c.getModifiers());
+    }
+
+    /**
+     * Generate class file (version 49, so that no stack map frames are needed) of the invoker.
+     */
+    private static byte[] generate(String className, Method method) throws IOException {
+        final ConstantPool pool = new ConstantPool();
+        final Class<?> declaringClass = method.getDeclaringClass();
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+        final boolean isStatic = Modifier.isStatic(method.getModifiers());
+        final boolean isInterface = declaringClass.isInterface();
+
+        // constructor: super(method)
+        final ByteArrayOutputStream constructor = new ByteArrayOutputStream();
+        final DataOutputStream init = new DataOutputStream(constructor);
+        init.writeByte(0x2a); // aload_0
+        init.writeByte(0x2b); // aload_1
+        init.writeByte(0xb7); // invokespecial
+        init.writeShort(pool.methodRef(INVOKER, "<init>", "(Ljava/lang/reflect/Method;)V", false));
+        init.writeByte(0xb1); // return
+
+        // invoke: return box(((Declaring) instance).method((T0) unbox(params[0]), ...))
+        final ByteArrayOutputStream invoke = new ByteArrayOutputStream();
+        final DataOutputStream code = new DataOutputStream(invoke);
+        int slots = 0;
+        if (!isStatic) {
+            code.writeByte(0x2b); // aload_1
+            code.writeByte(0xc0); // checkcast
+            code.writeShort(pool.classRef(internalName(declaringClass)));
+            slots++;
+        }
+        for (int i = 0; i < parameterTypes.length; i++) {
+            final Class<?> type = parameterTypes[i];
+            code.writeByte(0x2c); // aload_2
+            pushInt(code, i);
+            code.writeByte(0x32); // aaload
+            if (type.isPrimitive()) {
+                final String wrapper = internalName(PrimitivesToWrappers.getPrimitiveWrapper(type));
+                code.writeByte(0xc0); // checkcast
+                code.writeShort(pool.classRef(wrapper));
+                code.writeByte(0xb6); // invokevirtual
+                code.writeShort(pool.methodRef(wrapper, type.getName() + "Value", "()" + descriptor(type), false));
+                slots += (type == long.class || type == double.class) ? 2 : 1;
+            } else {
+                if (type != Object.class) {
+                    code.writeByte(0xc0); // checkcast
+                    code.writeShort(pool.classRef(internalName(type)));
+                }
+                slots++;
+            }
+        }
+
+        final int methodRef = pool.methodRef(internalName(declaringClass), method.getName(), descriptor(method), isInterface);
+        // only exceptions thrown by the invoked method are wrapped, see exception table in writeMethod(...).
+        final int tryStart = invoke.size();
+        if (isStatic) {
+            code.writeByte(0xb8); // invokestatic
+            code.writeShort(methodRef);
+        } else if (isInterface) {
+            code.writeByte(0xb9); // invokeinterface
+            code.writeShort(methodRef);
+            code.writeByte(slots);
+            code.writeByte(0);
+        } else {
+            code.writeByte(0xb6); // invokevirtual
+            code.writeShort(methodRef);
+        }
+        final int tryEnd = invoke.size();
+
+        final Class<?> returnType = method.getReturnType();
+        if (returnType == void.class) {
+            code.writeByte(0x01); // aconst_null
+        } else if (returnType.isPrimitive()) {
+            final String wrapper = internalName(PrimitivesToWrappers.getPrimitiveWrapper(returnType));
+            code.writeByte(0xb8); // invokestatic
+            code.writeShort(pool.methodRef(wrapper, "valueOf", "(" + descriptor(returnType) + ")L" + wrapper + ";", false));
+        }
+        code.writeByte(0xb0); // areturn
+
+        // catch (Throwable t) { throw new InvocationTargetException(t); }
+        final int handler = invoke.size();
+        code.writeByte(0x4e); // astore_3
+        code.writeByte(0xbb); // new
+        code.writeShort(pool.classRef(INVOCATION_TARGET_EXCEPTION));
+        code.writeByte(0x59); // dup
+        code.writeByte(0x2d); // aload_3
+        code.writeByte(0xb7); // invokespecial
+        code.writeShort(pool.methodRef(INVOCATION_TARGET_EXCEPTION, "<init>", "(Ljava/lang/Throwable;)V", false));
+        code.writeByte(0xbf); // athrow
+
+        final int thisClass = pool.classRef(className);
+        final int superClass = pool.classRef(INVOKER);
+        final int initName = pool.utf8("<init>");
+        final int initDescriptor = pool.utf8("(Ljava/lang/reflect/Method;)V");
+        final int invokeName = pool.utf8("invoke");
+        final int invokeDescriptor = pool.utf8(INVOKE_DESCRIPTOR);
+        final int codeName = pool.utf8("Code");
+
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(result);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);  // minor version
+        out.writeShort(49); // major version
+        pool.write(out);
+        out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(0); // interfaces
+        out.writeShort(0); // fields
+        out.writeShort(2); // methods
+        writeMethod(out, initName, initDescriptor, codeName, 2, 2, constructor.toByteArray(), -1, -1, -1);
+        // stack: instance + parameters + array and index of the loaded parameter; handler needs 3.
+        writeMethod(out, invokeName, invokeDescriptor, codeName, Math.max(slots + 2, 3), 4, invoke.toByteArray(),
+                tryStart, tryEnd, handler);
+        out.writeShort(0); // attributes
+        out.flush();
+
+        return result.toByteArray();
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeName, int maxStack,
+                                    int maxLocals, byte[] code, int tryStart, int tryEnd, int handler)
+            throws IOException {
+        out.writeShort(0x0001); // public
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1); // attributes
+        out.writeShort(codeName);
+        out.writeInt(2 + 2 + 4 + code.length + 2 + (handler < 0 ? 0 : 8) + 2);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        if (handler < 0) {
+            out.writeShort(0);
+        } else {
+            out.writeShort(1);
+            out.writeShort(tryStart); // start
+            out.writeShort(tryEnd);   // end (exclusive)
+            out.writeShort(handler);  // handler
+            out.writeShort(0);        // any exception
+        }
+        out.writeShort(0); // attributes
+    }
+
+    private static void pushInt(DataOutputStream code, int value) throws IOException {
+        if (value <= 5) {
+            code.writeByte(0x03 + value); // iconst_<n>
+        } else if (value <= Byte.MAX_VALUE) {
+            code.writeByte(0x10); // bipush
+            code.writeByte(value);
+        } else {
+            code.writeByte(0x11); // sipush
+            code.writeShort(value);
+        }
+    }
+
+    private static String internalName(Class<?> c) {
+        return c.isArray() ? descriptor(c) : c.getName().replace('.', '/');
+    }
+
+    private static String descriptor(Method method) {
+        final StringBuilder sb = new StringBuilder("(");
+        for (Class<?> type : method.getParameterTypes()) {
+            sb.append(descriptor(type));
+        }
+        return sb.append(')').append(descriptor(method.getReturnType())).toString();
+    }
+
+    private static String descriptor(Class<?> c) {
+        if (c == void.class) {
+            return "V";
+        } else if (c == boolean.class) {
+            return "Z";
+        } else if (c == byte.class) {
+            return "B";
+        } else if (c == char.class) {
+            return "C";
+        } else if (c == short.class) {
+            return "S";
+        } else if (c == int.class) {
+            return "I";
+        } else if (c == long.class) {
+            return "J";
+        } else if (c == float.class) {
+            return "F";
+        } else if (c == double.class) {
+            return "D";
+        } else if (c.isArray()) {
+            return c.getName().replace('.', '/');
+        } else {
+            return "L" + c.getName().replace('.', '/') + ";";
+        }
+    }
+
+    private static class ConstantPool {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<String, Integer>();
+        private int count = 1;
+
+        int utf8(String value) throws IOException {
+            Integer index = entries.get("U" + value);
+            if (index == null) {
+                out.writeByte(1);
+                out.writeUTF(value);
+                index = add("U" + value);
+            }
+            return index;
+        }
+
+        int classRef(String internalName) throws IOException {
+            Integer index = entries.get("C" + internalName);
+            if (index == null) {
+                final int name = utf8(internalName);
+                out.writeByte(7);
+                out.writeShort(name);
+                index = add("C" + internalName);
+            }
+            return index;
+        }
+
+        int methodRef(String owner, String name, String descriptor, boolean isInterface) throws IOException {
+            final String key = "M" + owner + '.' + name + descriptor;
+            Integer index = entries.get(key);
+            if (index == null) {
+                final int ownerIndex = classRef(owner);
+                final int nameIndex = utf8(name);
+                final int descriptorIndex = utf8(descriptor);
+                out.writeByte(12); // name and type
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+                final int nameAndType = count++;
+                out.writeByte(isInterface ? 11 : 10);
+                out.writeShort(ownerIndex);
+                out.writeShort(nameAndType);
+                index = add(key);
+            }
+            return index;
+        }
+
+        void write(DataOutputStream target) throws IOException {
+            out.flush();
+            target.writeShort(count);
+            bytes.writeTo(target);
+        }
+
+        private int add(String key) {
+            final int index = count++;
+            entries.put(key, index);
+            return index;
+        }
+    }
+
+    private static class InvokerClassLoader extends ClassLoader {
+
+        InvokerClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            // endpoint class loader does not need to see Tyrus classes.
+            if (name.equals(MethodInvoker.class.getName())) {
+                return MethodInvoker.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+import org.glassfish.tyrus.spi.BufferAllocator;
+
+/**
+ * Per-connection buffer for incoming data which do not contain whole frame.
+ * <p/>
+ * Buffer is allocated only when some data need to be kept until the next read and it is released as soon as all
+ * buffered data are processed. When it needs to grow, its capacity is multiplied by configured growth factor (but
+ * not above the maximal incoming buffer size); growth factor {@code 1} means that the buffer grows only to the
+ * required size. Big buffer holding only small amount of unprocessed data is shrunk.
+ * <p/>
+ * Not thread safe - instance is expected to be used from one read handler.
+ */
+public class IncomingBuffer {
+
+    /**
+     * Default growth factor.
+     */
+    public static final int DEFAULT_GROWTH_FACTOR = 2;
+
+    private static final int BUFFER_STEP_SIZE = 256;
+    private static final int SHRINK_MIN_CAPACITY = 16 * 1024;
+    private static final int SHRINK_RATIO = 4;
+
+    private final int incomingBufferSize;
+    private final int growthFactor;
+    private final BufferAllocator bufferAllocator;
+    private final AtomicLong bufferedBytes;
+
+    private ByteBuffer buffer = null;
+
+    /**
+     * Create new incoming buffer.
+     *
+     * @param incomingBufferSize maximal size of buffered data.
+     * @param growthFactor       factor by which the buffer capacity is multiplied when it needs to grow.
+     * @param bufferAllocator    allocator used for buffer creation.
+     * @param bufferedBytes      counter of bytes held by incoming buffers, updated when buffer is allocated or
+     *                           released. Can be {@code null}.
+     */
+    public IncomingBuffer(int incomingBufferSize, int growthFactor, BufferAllocator bufferAllocator, AtomicLong bufferedBytes) {
+        this.incomingBufferSize = incomingBufferSize;
+        this.growthFactor = Math.max(1, growthFactor);
+        this.bufferAllocator = bufferAllocator;
+        this.bufferedBytes = bufferedBytes;
+    }
+
+    /**
+     * Get information whether there are some buffered data.
+     *
+     * @return {@code true} when data from previous read(s) are buffered, {@code false} otherwise.
+     */
+    public boolean hasRemaining() {
+        return buffer != null && buffer.hasRemaining();
+    }
+
+    /**
+     * Append data to the buffered ones.
+     * <p/>
+     * All remaining data of passed buffer are consumed.
+     *
+     * @param data data to be appended.
+     * @return buffer containing all buffered data. Data processed from returned buffer (its position) must be passed
+     * to {@link #retain(ByteBuffer)} afterwards.
+     * @throws IllegalArgumentException when the buffered data would exceed maximal incoming buffer size.
+     */
+    public ByteBuffer append(ByteBuffer data) {
+        final int remaining = buffer == null ? 0 : buffer.remaining();
+        final int length = data.remaining();
+        final int required = remaining + length;
+
+        if (buffer != null && buffer.capacity() - buffer.limit() >= length) {
+            // data fit after the buffered ones
+            final int limit = buffer.limit();
+            buffer.mark();
+            buffer.position(limit);
+            buffer.limit(limit + length);
+            buffer.put(data);
+            buffer.reset();
+        } else if (buffer != null && buffer.capacity() >= required) {
+            buffer.compact();
+            buffer.put(data);
+            buffer.flip();
+        } else {
+            if (required > incomingBufferSize) {
+                throw new IllegalArgumentException(LocalizationMessages.BUFFER_OVERFLOW());
+            }
+
+            long capacity = roundedSize(required);
+            if (buffer != null) {
+                capacity = Math.max(capacity, (long) buffer.capacity() * growthFactor);
+            }
+            final ByteBuffer newBuffer = allocate((int) Math.max(required, Math.min(incomingBufferSize, capacity)));
+            if (buffer != null) {
+                newBuffer.put(buffer);
+                release();
+            }
+            newBuffer.put(data);
+            newBuffer.flip();
+            buffer = newBuffer;
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Keep remaining data of processed buffer for the next read.
+     * <p/>
+     * Passed buffer is either the one returned from {@link #append(ByteBuffer)} or the buffer with incoming data
+     * which were processed directly (in that case, remaining data are copied). Buffer is released when there are no
+     * remaining data and shrunk when its capacity is much bigger than necessary.
+     *
+     * @param data processed data.
+     */
+    public void retain(ByteBuffer data) {
+        if (data != buffer) {
+            if (data.hasRemaining()) {
+                append(data);
+            }
+        } else if (!buffer.hasRemaining()) {
+            release();
+        } else {
+            final int capacity = buffer.capacity();
+            final int roundedSize = roundedSize(buffer.remaining());
+            if (capacity > SHRINK_MIN_CAPACITY && capacity > roundedSize * SHRINK_RATIO) {
+                final ByteBuffer newBuffer = allocate(roundedSize);
+                newBuffer.put(buffer);
+                newBuffer.flip();
+                release();
+                buffer = newBuffer;
+            }
+        }
+    }
+
+    /**
+     * Release the buffer, buffered data are discarded.
+     */
+    public void release() {
+        if (buffer != null) {
+            if (bufferedBytes != null) {
+                bufferedBytes.addAndGet(-buffer.capacity());
+            }
+            bufferAllocator.release(buffer);
+            buffer = null;
+        }
+    }
+
+    private ByteBuffer allocate(int size) {
+        final ByteBuffer newBuffer = bufferAllocator.allocate(size);
+        if (bufferedBytes != null) {
+            bufferedBytes.addAndGet(newBuffer.capacity());
+        }
+        return newBuffer;
+    }
+
+    private static int roundedSize(int size) {
+        return (size % BUFFER_STEP_SIZE) > 0 ? ((size / BUFFER_STEP_SIZE) + 1) * BUFFER_STEP_SIZE : size;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+/**
+ * Instances of endpoint and coder classes which belong to one {@link javax.websocket.Session}.
+ * <p/>
+ * Each instance is stored in a slot assigned to its class by {@link ComponentProviderService#getSlot(Class)} when the
+ * endpoint is deployed. Slot array is copied on every update (which happens once per class and session), so the
+ * instances are read without locking. Updates are serialized by the caller, which synchronizes on this object.
+ */
+class InstanceSlots {
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private volatile Object[] instances = EMPTY;
+
+    /**
+     * Get instance stored in given slot.
+     *
+     * @param slot slot index.
+     * @return stored instance or {@code null} when the slot is empty.
+     */
+    Object get(int slot) {
+        final Object[] current = instances;
+        return slot < current.length ? current[slot] : null;
+    }
+
+    /**
+     * Store instance to given slot. Must be called when holding the lock of this object.
+     *
+     * @param slot     slot index.
+     * @param instance instance to be stored.
+     */
+    void set(int slot, Object instance) {
+        final Object[] current = instances;
+        final Object[] updated = new Object[Math.max(current.length, slot + 1)];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[slot] = instance;
+        instances = updated;
+    }
+
+    /**
+     * Remove all stored instances. Must be called when holding the lock of this object.
+     *
+     * @return array with removed instances; contains {@code null}s for empty slots.
+     */
+    Object[] clear() {
+        final Object[] removed = instances;
+        instances = EMPTY;
+        return removed;
+    }
+}
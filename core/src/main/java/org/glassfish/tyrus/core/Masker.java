@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2012-2013 Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2012-2014 Oracle and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -41,8 +41,20 @@
 package org.glassfish.tyrus.core;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
+/**
+ * Applies (and removes) RFC 6455 masking.
+ * <p/>
+ * Payload is processed eight bytes at a time using {@link ByteBuffer#getLong(int)} and
+ * {@link ByteBuffer#putLong(int, long)} with 64-bit key rotated according to the current mask index; remaining bytes
+ * are processed one by one. Mask index is kept between invocations, so data of one frame can be (un)masked in more
+ * than one call.
+ */
 class Masker {
+
+    private static final int WORD_SIZE = 8;
+
     private volatile ByteBuffer buffer;
     private byte[] mask;
     private int index = 0;
@@ -69,24 +81,50 @@ class Masker {
         return bytes;
     }
 
+    /**
+     * Unmask next {@code count} bytes of the current buffer and return them.
+     * <p/>
+     * Data are unmasked in place (in the current buffer) and then copied to returned array.
+     *
+     * @param count number of bytes to be unmasked.
+     * @return unmasked data.
+     */
     public byte[] unmask(int count) {
-        byte[] bytes = get(count);
         if (mask != null) {
-            for (int i = 0; i < bytes.length; i++) {
-                bytes[i] ^= mask[index++ % ProtocolHandler.MASK_SIZE];
-            }
+            unmask(buffer, buffer.position(), count);
         }
 
-        return bytes;
+        return get(count);
     }
 
-    public void mask(byte[] target, int location, byte[] bytes, int length) {
-        if (bytes != null && target != null) {
-            for (int i = 0; i < length; i++) {
-                target[location + i] = mask == null
-                        ? bytes[i]
-                        : (byte) (bytes[i] ^ mask[index++ % ProtocolHandler.MASK_SIZE]);
+    /**
+     * Unmask (or mask, the operation is symmetric) {@code length} bytes of given buffer, starting at {@code position}.
+     * <p/>
+     * Buffer position and limit are not changed.
+     *
+     * @param buffer   buffer to be updated in place.
+     * @param position absolute position of the first byte to be unmasked.
+     * @param length   number of bytes to be unmasked.
+     */
+    public void unmask(ByteBuffer buffer, int position, int length) {
+        if (mask == null || length <= 0) {
+            return;
+        }
+
+        int i = position;
+        final int end = position + length;
+
+        if (length >= WORD_SIZE) {
+            final long key = wordKey(buffer.order());
+            final int wordEnd = end - WORD_SIZE;
+            for (; i <= wordEnd; i += WORD_SIZE) {
+                buffer.putLong(i, buffer.getLong(i) ^ key);
             }
+            // index is not changed - WORD_SIZE is a multiple of MASK_SIZE.
+        }
+
+        for (; i < end; i++) {
+            buffer.put(i, (byte) (buffer.get(i) ^ mask[index++ & 0x03]));
         }
     }
 
@@ -101,4 +139,19 @@ class Masker {
     public void readMask() {
         mask = get(ProtocolHandler.MASK_SIZE);
     }
+
+    /**
+     * Create 64-bit key from current mask, rotated to start at current mask index.
+     *
+     * @param order byte order of the buffer the key will be applied to.
+     * @return 64-bit masking key.
+     */
+    private long wordKey(ByteOrder order) {
+        long key = 0;
+        for (int i = 0; i < WORD_SIZE; i++) {
+            final int shift = order == ByteOrder.BIG_ENDIAN ? (WORD_SIZE - 1 - i) * 8 : i * 8;
+            key |= ((long) mask[(index + i) & 0x03] & 0xFF) << shift;
+        }
+        return key;
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.security.SecureRandom;
+
+/**
+ * Per-connection masking key generator.
+ * <p/>
+ * Keys are taken from a block of bytes filled by a per-connection {@link SecureRandom} instance, so the
+ * {@link SecureRandom} is accessed once per {@value #BLOCK_SIZE} bytes instead of once per frame and the keys stay
+ * unpredictable to an observer of previous keys (RFC 6455, section 10.3). Subclasses can override {@link #nextKey()}
+ * to provide keys from different source, see {@link ProtocolHandler#setMaskingKeyGenerator(MaskingKeyGenerator)}.
+ */
+class MaskingKeyGenerator {
+
+    /**
+     * Size of the block of random bytes the keys are taken from.
+     */
+    static final int BLOCK_SIZE = 128;
+
+    private final SecureRandom random;
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private int position = BLOCK_SIZE;
+
+    MaskingKeyGenerator() {
+        this(new SecureRandom());
+    }
+
+    MaskingKeyGenerator(SecureRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * Get next masking key.
+     *
+     * @return non-zero masking key.
+     */
+    synchronized int nextKey() {
+        int key;
+        do {
+            if (position == BLOCK_SIZE) {
+                random.nextBytes(block);
+                position = 0;
+            }
+            key = ((block[position] & 0xFF) << 24) | ((block[position + 1] & 0xFF) << 16)
+                    | ((block[position + 2] & 0xFF) << 8) | (block[position + 3] & 0xFF);
+            position += 4;
+        } while (key == 0);
+        return key;
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.websocket.DecodeException;
+import javax.websocket.Decoder;
+import javax.websocket.MessageHandler;
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.core.coder.CoderWrapper;
+
+/**
+ * Dispatch table of whole messages for one session.
+ * <p/>
+ * Maps text and binary messages to ordered arrays of (decoder, message handler) pairs, where the handler type is
+ * assignable from the type produced by the decoder. Pairs are ordered by decoder (in order of registration) and then
+ * by handler (more specific types first), so message is passed to the first handler which gets non-null result from
+ * a decoder which accepts the message.
+ * <p/>
+ * Table also keeps all registered message handlers in the same order, together with their resolved types.
+ * <p/>
+ * Table is created when the set of registered message handlers changes; dispatching a message does not use
+ * reflection and decoder instances are obtained only once.
+ */
+class MessageDispatchTable {
+
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private static final int TEXT = 0;
+    private static final int BINARY = 1;
+    private static final int TEXT_STREAM = 2;
+    private static final int BINARY_STREAM = 3;
+
+    private final Entry[] textEntries;
+    private final Entry[] binaryEntries;
+    private final MessageHandler[] handlers;
+    private final Class<?>[] handlerTypes;
+
+    /**
+     * Create dispatch table.
+     *
+     * @param endpointWrapper endpoint wrapper used for getting decoder instances.
+     * @param session         session the decoder instances are created for.
+     * @param decoders        registered decoders.
+     * @param handlers        registered message handlers, ordered by priority.
+     * @param handlerTypes    types of the message handlers (see {@link MessageHandlerManager#getHandlerType}).
+     */
+    MessageDispatchTable(TyrusEndpointWrapper endpointWrapper, Session session, List<CoderWrapper<Decoder>> decoders,
+                         MessageHandler[] handlers, Class<?>[] handlerTypes) {
+        this.handlers = handlers;
+        this.handlerTypes = handlerTypes;
+
+        final List<Entry> text = new ArrayList<Entry>();
+        final List<Entry> binary = new ArrayList<Entry>();
+
+        for (CoderWrapper<Decoder> decoder : decoders) {
+            final int kind = getKind(decoder.getCoderClass());
+            if (kind == -1) {
+                continue;
+            }
+
+            final DecoderInstance decoderInstance = new DecoderInstance(endpointWrapper, session, decoder, kind);
+            for (int i = 0; i < handlers.length; i++) {
+                final MessageHandler handler = handlers[i];
+                if (handler instanceof MessageHandler.Whole && handlerTypes[i].isAssignableFrom(decoder.getType())) {
+                    final Entry entry = new Entry(decoderInstance, (MessageHandler.Whole<?>) handler);
+                    if (kind == TEXT || kind == TEXT_STREAM) {
+                        text.add(entry);
+                    } else {
+                        binary.add(entry);
+                    }
+                }
+            }
+        }
+
+        this.textEntries = text.isEmpty() ? NO_ENTRIES : text.toArray(new Entry[text.size()]);
+        this.binaryEntries = binary.isEmpty() ? NO_ENTRIES : binary.toArray(new Entry[binary.size()]);
+    }
+
+    /**
+     * Get entries for whole text messages.
+     *
+     * @return ordered entries.
+     */
+    Entry[] getTextEntries() {
+        return textEntries;
+    }
+
+    /**
+     * Get entries for whole binary messages.
+     *
+     * @return ordered entries.
+     */
+    Entry[] getBinaryEntries() {
+        return binaryEntries;
+    }
+
+    /**
+     * Get registered message handlers.
+     *
+     * @return message handlers ordered by priority. Returned array must not be modified.
+     */
+    MessageHandler[] getHandlers() {
+        return handlers;
+    }
+
+    /**
+     * Get types of registered message handlers.
+     *
+     * @return types of handlers returned by {@link #getHandlers()}, at the same indexes. Returned array must not be
+     * modified.
+     */
+    Class<?>[] getHandlerTypes() {
+        return handlerTypes;
+    }
+
+    private static int getKind(Class<?> decoderClass) {
+        if (Decoder.Text.class.isAssignableFrom(decoderClass)) {
+            return TEXT;
+        } else if (Decoder.Binary.class.isAssignableFrom(decoderClass)) {
+            return BINARY;
+        } else if (Decoder.TextStream.class.isAssignableFrom(decoderClass)) {
+            return TEXT_STREAM;
+        } else if (Decoder.BinaryStream.class.isAssignableFrom(decoderClass)) {
+            return BINARY_STREAM;
+        }
+        return -1;
+    }
+
+    /**
+     * Decoder and message handler which accepts the decoded type.
+     */
+    static class Entry {
+
+        private final DecoderInstance decoder;
+        private final MessageHandler.Whole<?> handler;
+        private final long maxMessageSize;
+
+        private Entry(DecoderInstance decoder, MessageHandler.Whole<?> handler) {
+            this.decoder = decoder;
+            this.handler = handler;
+            this.maxMessageSize = handler instanceof BasicMessageHandler
+                    ? ((BasicMessageHandler) handler).getMaxMessageSize() : -1;
+        }
+
+        /**
+         * Check whether this entry uses the same decoder as another one.
+         *
+         * @param entry entry to be compared, can be {@code null}.
+         * @return {@code true} when both entries use the same decoder.
+         */
+        boolean hasSameDecoder(Entry entry) {
+            return entry != null && entry.decoder == decoder;
+        }
+
+        /**
+         * Check whether the decoder accepts the message; stream decoders accept all messages.
+         *
+         * @param message text or binary message.
+         * @return {@code true} when the message can be decoded.
+         */
+        boolean willDecode(Object message) {
+            return decoder.willDecode(message);
+        }
+
+        /**
+         * Decode message.
+         *
+         * @param message text or binary message.
+         * @return decoded message, {@code null} when the decoder did not decode the message.
+         * @throws DecodeException when the decoder fails.
+         * @throws IOException     when the stream decoder fails.
+         */
+        Object decode(Object message) throws DecodeException, IOException {
+            return decoder.decode(message);
+        }
+
+        MessageHandler.Whole<?> getHandler() {
+            return handler;
+        }
+
+        long getMaxMessageSize() {
+            return maxMessageSize;
+        }
+    }
+
+    /**
+     * Decoder with lazily obtained instance.
+     */
+    private static class DecoderInstance {
+
+        private final TyrusEndpointWrapper endpointWrapper;
+        private final Session session;
+        private final CoderWrapper<Decoder> wrapper;
+        private final int kind;
+
+        private volatile Object instance = null;
+
+        private DecoderInstance(TyrusEndpointWrapper endpointWrapper, Session session, CoderWrapper<Decoder> wrapper,
+                                int kind) {
+            this.endpointWrapper = endpointWrapper;
+            this.session = session;
+            this.wrapper = wrapper;
+            this.kind = kind;
+        }
+
+        private Object getInstance() {
+            Object decoder = instance;
+            if (decoder == null) {
+                decoder = endpointWrapper.getCoderInstance(session, wrapper);
+                instance = decoder;
+            }
+            return decoder;
+        }
+
+        private boolean willDecode(Object message) {
+            switch (kind) {
+                case TEXT:
+                    return ((Decoder.Text) getInstance()).willDecode((String) message);
+                case BINARY:
+                    return ((Decoder.Binary) getInstance()).willDecode((ByteBuffer) message);
+                default:
+                    return true;
+            }
+        }
+
+        private Object decode(Object message) throws DecodeException, IOException {
+            switch (kind) {
+                case TEXT:
+                    // TYRUS-210: willDecode was already called
+                    return ((Decoder.Text) getInstance()).decode((String) message);
+                case BINARY:
+                    // TYRUS-210: willDecode was already called
+                    return ((Decoder.Binary) getInstance()).decode((ByteBuffer) message);
+                case TEXT_STREAM:
+                    return ((Decoder.TextStream) getInstance()).decode(new StringReader((String) message));
+                default:
+                    final byte[] array = ((ByteBuffer) message).array();
+                    return ((Decoder.BinaryStream) getInstance()).decode(new ByteArrayInputStream(array));
+            }
+        }
+    }
+}
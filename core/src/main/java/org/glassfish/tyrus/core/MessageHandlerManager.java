@@ -297,6 +297,15 @@ class MessageHandlerManager {
         return messageHandlerCache;
     }
 
+    /**
+     * Get registered message handlers by their types.
+     *
+     * @return unmodifiable map of handler types to message handlers.
+     */
+    Map<Class<?>, MessageHandler> getRegisteredHandlers() {
+        return Collections.unmodifiableMap(registeredHandlers);
+    }
+
     static Class<?> getHandlerType(MessageHandler handler) {
         Class<?> root;
         if (handler instanceof AsyncMessageHandler) {
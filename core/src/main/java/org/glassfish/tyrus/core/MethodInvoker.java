@@ -0,0 +1,100 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Invokes a method of annotated endpoint.
+ * <p/>
+ * Invokers are created by {@link MethodInvokerFactory} once per method when the endpoint is deployed, so the
+ * invocation itself does not need to resolve or check anything. Exceptions thrown by the invoked method are always
+ * wrapped in {@link InvocationTargetException}, same as in {@link Method#invoke(Object, Object...)}.
+ */
+public abstract class MethodInvoker {
+
+    private final Method method;
+
+    /**
+     * Create new invoker.
+     *
+     * @param method invoked method.
+     */
+    protected MethodInvoker(Method method) {
+        this.method = method;
+    }
+
+    /**
+     * Get invoked method.
+     *
+     * @return invoked method.
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Invoke the method.
+     *
+     * @param instance instance on which the method is invoked; ignored for static methods.
+     * @param params   method parameters.
+     * @return value returned by the method, boxed if it is primitive; {@code null} for {@code void} methods.
+     * @throws InvocationTargetException wraps an exception thrown by the invoked method.
+     * @throws IllegalAccessException    when the method cannot be accessed.
+     */
+    public abstract Object invoke(Object instance, Object[] params) throws InvocationTargetException, IllegalAccessException;
+
+    /**
+     * Create invoker which uses {@link Method#invoke(Object, Object...)}.
+     *
+     * @param method invoked method.
+     * @return reflective invoker.
+     */
+    static MethodInvoker reflective(Method method) {
+        return new MethodInvoker(method) {
+            @Override
+            public Object invoke(Object instance, Object[] params) throws InvocationTargetException, IllegalAccessException {
+                return getMethod().invoke(instance, params);
+            }
+        };
+    }
+}
@@ -69,6 +69,10 @@ class OutputStreamToAsyncBinaryAdapter extends OutputStream {
         }
 
         final Future<?> future = socket.sendBinary(b, off, len, false);
+        if (socket.getProtocolHandler().isBatchingAllowed()) {
+            return;
+        }
+
         try {
             future.get();
         } catch (InterruptedException e) {
@@ -0,0 +1,220 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.glassfish.tyrus.spi.BufferAllocator;
+
+/**
+ * {@link BufferAllocator} which reuses released buffers.
+ * <p/>
+ * Requested sizes are rounded up to the nearest power of two (size class), from 256 bytes up to 64 KiB. Released
+ * buffers are kept in small per-thread cache first; when it is full, they are put to the pool shared by all threads.
+ * Both are bounded, buffers which do not fit are left for garbage collection. Requests bigger than the biggest size
+ * class are not pooled.
+ */
+public class PooledBufferAllocator extends BufferAllocator {
+
+    private static final int MIN_SHIFT = 8; // 256 B
+    private static final int MAX_SHIFT = 16; // 64 KiB
+    private static final int SIZE_CLASSES = MAX_SHIFT - MIN_SHIFT + 1;
+
+    private static final int THREAD_CACHE_BYTES = 64 * 1024;
+    private static final int THREAD_CACHE_MAX_BUFFERS = 8;
+    private static final int SHARED_POOL_BYTES = 4 * 1024 * 1024;
+
+    private final boolean direct;
+    private final SizeClassPool[] sharedPools = new SizeClassPool[SIZE_CLASSES];
+    private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            return new ThreadCache();
+        }
+    };
+
+    /**
+     * Create pooled allocator of heap buffers.
+     */
+    public PooledBufferAllocator() {
+        this(false);
+    }
+
+    /**
+     * Create pooled allocator.
+     *
+     * @param direct {@code true} when direct buffers should be allocated, {@code false} for heap buffers.
+     */
+    public PooledBufferAllocator(boolean direct) {
+        this.direct = direct;
+        for (int i = 0; i < SIZE_CLASSES; i++) {
+            sharedPools[i] = new SizeClassPool(Math.max(1, SHARED_POOL_BYTES >> (i + MIN_SHIFT)));
+        }
+    }
+
+    @Override
+    public ByteBuffer allocate(int size) {
+        final int sizeClass = sizeClass(size);
+        if (sizeClass >= SIZE_CLASSES) {
+            return newBuffer(size);
+        }
+
+        ByteBuffer buffer = threadCache.get().poll(sizeClass);
+        if (buffer == null) {
+            buffer = sharedPools[sizeClass].poll();
+        }
+        if (buffer == null) {
+            buffer = newBuffer(1 << (sizeClass + MIN_SHIFT));
+        }
+
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    @Override
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.isDirect() != direct || buffer.isReadOnly()) {
+            return;
+        }
+
+        final int capacity = buffer.capacity();
+        final int sizeClass = sizeClass(capacity);
+        if (sizeClass >= SIZE_CLASSES || capacity != 1 << (sizeClass + MIN_SHIFT)) {
+            // not allocated by this pool.
+            return;
+        }
+
+        if (!threadCache.get().offer(sizeClass, buffer)) {
+            sharedPools[sizeClass].offer(buffer);
+        }
+    }
+
+    private ByteBuffer newBuffer(int size) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    /**
+     * Get index of the smallest size class able to hold given number of bytes.
+     *
+     * @param size requested size.
+     * @return size class index; value bigger than or equal to {@link #SIZE_CLASSES} when the size is not pooled.
+     */
+    private static int sizeClass(int size) {
+        if (size <= 1 << MIN_SHIFT) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    /**
+     * Bounded pool of buffers of one size class, shared by all threads.
+     */
+    private static class SizeClassPool {
+
+        private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+        private final AtomicInteger size = new AtomicInteger(0);
+        private final int maxSize;
+
+        SizeClassPool(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        ByteBuffer poll() {
+            final ByteBuffer buffer = buffers.poll();
+            if (buffer != null) {
+                size.decrementAndGet();
+            }
+            return buffer;
+        }
+
+        void offer(ByteBuffer buffer) {
+            if (size.incrementAndGet() > maxSize) {
+                size.decrementAndGet();
+                return;
+            }
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Per-thread stacks of released buffers, one for each size class.
+     */
+    private static class ThreadCache {
+
+        private final ByteBuffer[][] stacks = new ByteBuffer[SIZE_CLASSES][];
+        private final int[] sizes = new int[SIZE_CLASSES];
+
+        ThreadCache() {
+            for (int i = 0; i < SIZE_CLASSES; i++) {
+                stacks[i] = new ByteBuffer[Math.max(1, Math.min(THREAD_CACHE_MAX_BUFFERS, THREAD_CACHE_BYTES >> (i + MIN_SHIFT)))];
+            }
+        }
+
+        ByteBuffer poll(int sizeClass) {
+            final int size = sizes[sizeClass];
+            if (size == 0) {
+                return null;
+            }
+
+            final ByteBuffer[] stack = stacks[sizeClass];
+            final ByteBuffer buffer = stack[size - 1];
+            stack[size - 1] = null;
+            sizes[sizeClass] = size - 1;
+            return buffer;
+        }
+
+        boolean offer(int sizeClass, ByteBuffer buffer) {
+            final ByteBuffer[] stack = stacks[sizeClass];
+            final int size = sizes[sizeClass];
+            if (size == stack.length) {
+                return false;
+            }
+
+            stack[size] = buffer;
+            sizes[sizeClass] = size + 1;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.glassfish.tyrus.core.frame.Frame;
+
+/**
+ * Message encoded and framed once, which can be sent to any number of sessions.
+ * <p/>
+ * Text is encoded to UTF-8 when the message is created. Serialized frame is created lazily for each distinct
+ * configuration of negotiated extensions (see
+ * {@link org.glassfish.tyrus.core.extension.ShareableOutgoingExtension}) and reused for all sessions with that
+ * configuration. Frames sent to sessions which extensions process the frames based on connection state and frames
+ * sent by clients (which have to be masked) share only the encoded payload.
+ * <p/>
+ * Instances are immutable and thread safe.
+ *
+ * @see TyrusSession#sendPrepared(PreparedMessage)
+ * @see TyrusSession#prepareMessage(Object)
+ */
+public class PreparedMessage {
+
+    private static final Object NO_EXTENSIONS = Collections.emptyList();
+
+    private final Frame frame;
+    private final boolean text;
+    private final ConcurrentMap<Object, byte[]> framedData = new ConcurrentHashMap<Object, byte[]>();
+
+    /**
+     * Create text message.
+     *
+     * @param text message text.
+     */
+    public PreparedMessage(String text) {
+        this(Utf8Utils.encode(text), true);
+    }
+
+    /**
+     * Create binary message.
+     * <p/>
+     * Remaining data of provided buffer are copied; position of the buffer is not changed.
+     *
+     * @param data message data.
+     */
+    public PreparedMessage(ByteBuffer data) {
+        this(copy(data), false);
+    }
+
+    private PreparedMessage(byte[] payload, boolean text) {
+        this.frame = Frame.builder().fin(true).opcode(text ? (byte) 0x01 : (byte) 0x02).payloadData(payload).build();
+        this.text = text;
+    }
+
+    /**
+     * Get type of this message.
+     *
+     * @return {@code true} for text message, {@code false} for binary message.
+     */
+    public boolean isText() {
+        return text;
+    }
+
+    /**
+     * Get serialized (unmasked) frame of this message, as sent to sessions without extensions.
+     *
+     * @return read-only buffer containing whole frame.
+     */
+    public ByteBuffer getFramedData() {
+        byte[] data = framedData.get(NO_EXTENSIONS);
+        if (data == null) {
+            data = ProtocolHandler.serialize(frame);
+            final byte[] previous = framedData.putIfAbsent(NO_EXTENSIONS, data);
+            if (previous != null) {
+                data = previous;
+            }
+        }
+
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    /**
+     * Get frame with encoded payload.
+     *
+     * @return message frame.
+     */
+    Frame getFrame() {
+        return frame;
+    }
+
+    /**
+     * Get serialized frame for connections with given outgoing key.
+     *
+     * @param key             outgoing key, see {@link ProtocolHandler#getOutgoingKey()}.
+     * @param protocolHandler protocol handler of a connection with given key, used when the frame is not serialized
+     *                        yet.
+     * @return serialized frame, must not be modified.
+     */
+    byte[] getFramedData(Object key, ProtocolHandler protocolHandler) {
+        byte[] data = framedData.get(key);
+        if (data == null) {
+            // might be computed more times concurrently, the result is the same.
+            data = protocolHandler.frameShared(frame);
+            final byte[] previous = framedData.putIfAbsent(key, data);
+            if (previous != null) {
+                data = previous;
+            }
+        }
+
+        return data;
+    }
+
+    private static byte[] copy(ByteBuffer data) {
+        final byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return bytes;
+    }
+}
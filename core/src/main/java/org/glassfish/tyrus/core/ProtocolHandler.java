@@ -41,10 +41,17 @@
 package org.glassfish.tyrus.core;
 
 import java.io.IOException;
+import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -52,14 +59,17 @@ import javax.websocket.CloseReason;
 import javax.websocket.Extension;
 import javax.websocket.SendHandler;
 import javax.websocket.SendResult;
+import javax.websocket.Session;
 
 import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.extension.ShareableOutgoingExtension;
 import org.glassfish.tyrus.core.frame.BinaryFrame;
 import org.glassfish.tyrus.core.frame.CloseFrame;
 import org.glassfish.tyrus.core.frame.Frame;
 import org.glassfish.tyrus.core.frame.TextFrame;
 import org.glassfish.tyrus.core.frame.TyrusFrame;
 import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+import org.glassfish.tyrus.spi.BufferAllocator;
 import org.glassfish.tyrus.spi.CompletionHandler;
 import org.glassfish.tyrus.spi.UpgradeRequest;
 import org.glassfish.tyrus.spi.UpgradeResponse;
@@ -77,9 +87,49 @@ public final class ProtocolHandler {
      */
     public static final int MASK_SIZE = 4;
 
+    /**
+     * Minimal payload size of unmasked frame which will be written as separate header and payload buffers (see
+     * {@link Writer#write(ByteBuffer[], CompletionHandler)}). Smaller frames are copied into single buffer.
+     */
+    private static final int GATHERING_WRITE_THRESHOLD = 1024;
+
+    /**
+     * Default size of batched frames which triggers flush of the batch, see {@link #setBatchSize(int)}.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 16384;
+
+    /**
+     * Default time in milliseconds after which non-empty batch is flushed, see {@link #setBatchLinger(long)}.
+     */
+    public static final long DEFAULT_BATCH_LINGER = 10;
+
+    /**
+     * Default amount of buffered outbound data which makes the connection non-writable, see
+     * {@link #setOutboundWatermarks(long, long)}.
+     */
+    public static final long DEFAULT_HIGH_WATERMARK = 65536;
+
+    /**
+     * Default amount of buffered outbound data which makes the connection writable again, see
+     * {@link #setOutboundWatermarks(long, long)}.
+     */
+    public static final long DEFAULT_LOW_WATERMARK = 32768;
+
+    private static final BufferAllocator DEFAULT_BUFFER_ALLOCATOR = new HeapBufferAllocator();
+
+    /**
+     * Marks connection which frames cannot be shared, see {@link #getOutgoingKey()}.
+     */
+    private static final Object NOT_SHAREABLE = new Object();
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<CompletionHandlerWrapper> DONE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(CompletionHandlerWrapper.class, "done");
+
     private static final Logger LOGGER = Logger.getLogger(ProtocolHandler.class.getName());
 
     private final boolean maskData;
+    private volatile MaskingKeyGenerator maskingKeyGenerator;
     private final ParsingState state = new ParsingState();
 
     private TyrusWebSocket webSocket;
@@ -91,17 +141,267 @@ public final class ProtocolHandler {
     private String subProtocol = null;
     private List<Extension> extensions;
     private ExtendedExtension.ExtensionContext extensionContext;
-    private ByteBuffer remainder = null;
     private boolean hasExtensions = false;
+    private volatile Object outgoingKey = null;
+    private int streamingChunkSize = 0;
+    private BufferAllocator bufferAllocator = DEFAULT_BUFFER_ALLOCATOR;
+    private final Utf8Decoder utf8Decoder = new Utf8Decoder();
+    private final Object batchLock = new Object();
+    private volatile boolean batchingAllowed = false;
+    private volatile Batch batch = null;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long batchLinger = DEFAULT_BATCH_LINGER;
+    private ScheduledExecutorService batchLingerService = null;
+    private volatile long sendTimeout = 0;
+    private volatile HashedWheelTimer sendTimer = null;
+    private volatile boolean closeOnSendTimeout = false;
+    private final AtomicLong bufferedAmount = new AtomicLong(0);
+    private final Object writabilityLock = new Object();
+    private volatile boolean writable = true;
+    // guarded by writabilityLock; writability last passed to the listener and whether some thread is notifying it.
+    private boolean notifiedWritable = true;
+    private boolean notifyingWritability = false;
+    private volatile long highWatermark = DEFAULT_HIGH_WATERMARK;
+    private volatile long lowWatermark = DEFAULT_LOW_WATERMARK;
+    private volatile long outboundBufferLimit = 0;
+    private volatile OutboundOverflowPolicy overflowPolicy = OutboundOverflowPolicy.REJECT;
+    private volatile WritabilityListener writabilityListener = null;
+    private volatile Session writabilitySession = null;
 
     ProtocolHandler(boolean maskData) {
         this.maskData = maskData;
+        this.maskingKeyGenerator = maskData ? new MaskingKeyGenerator() : null;
     }
 
     public void setWriter(Writer handler) {
         this.writer = handler;
     }
 
+    /**
+     * Set generator of masking keys used for frames without explicitly set masking key.
+     * <p/>
+     * Used only when this handler masks outgoing frames (client side).
+     *
+     * @param maskingKeyGenerator masking key generator.
+     */
+    void setMaskingKeyGenerator(MaskingKeyGenerator maskingKeyGenerator) {
+        this.maskingKeyGenerator = maskingKeyGenerator;
+    }
+
+    /**
+     * Set streaming chunk size.
+     * <p/>
+     * When set (positive value), payload of incoming data frame bigger than chunk size is not buffered until the
+     * whole frame is received; it is returned from {@link #unframe(ByteBuffer)} as a sequence of fragments with at
+     * most {@code streamingChunkSize} bytes of payload each. Frames are not streamed when there is some negotiated
+     * extension, since extensions process whole frames.
+     *
+     * @param streamingChunkSize maximal size of streamed payload chunk; {@code 0} or negative value disables
+     *                           streaming.
+     */
+    public void setStreamingChunkSize(int streamingChunkSize) {
+        this.streamingChunkSize = streamingChunkSize;
+    }
+
+    /**
+     * Set allocator used for serialized outgoing frames and for incoming data buffered by read handler.
+     *
+     * @param bufferAllocator buffer allocator to be used.
+     */
+    public void setBufferAllocator(BufferAllocator bufferAllocator) {
+        this.bufferAllocator = bufferAllocator;
+    }
+
+    /**
+     * Get allocator used by this connection.
+     *
+     * @return buffer allocator.
+     */
+    public BufferAllocator getBufferAllocator() {
+        return bufferAllocator;
+    }
+
+    /**
+     * Set size of batched frames which triggers flush of the batch.
+     *
+     * @param batchSize number of bytes.
+     * @see #setBatchingAllowed(boolean, ScheduledExecutorService)
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Set time after which non-empty batch is flushed.
+     *
+     * @param batchLinger time in milliseconds; {@code 0} or negative value means that the batch is flushed only
+     *                    explicitly or when it reaches batch size.
+     * @see #setBatchingAllowed(boolean, ScheduledExecutorService)
+     */
+    public void setBatchLinger(long batchLinger) {
+        this.batchLinger = batchLinger;
+    }
+
+    /**
+     * Allow or disallow batching of outgoing data frames.
+     * <p/>
+     * When batching is allowed, serialized data frames are not written one by one; they are collected and written by
+     * one gathering write ({@link Writer#write(ByteBuffer[], CompletionHandler)}) when {@link #flushBatch()} is
+     * called, when their size reaches {@link #setBatchSize(int) batch size} or when {@link #setBatchLinger(long)
+     * batch linger} time elapses. Futures and handlers of batched frames are completed when the batch is written.
+     * Control and raw frames are written immediately, after the frames which were batched before them. Disallowing
+     * batching flushes current batch; frames which are still batched when the connection is closed ({@link #doClose()})
+     * are failed.
+     *
+     * @param batchingAllowed {@code true} when outgoing data frames can be batched.
+     * @param lingerService   executor used to flush the batch when linger time elapses. Batch won't be flushed
+     *                        automatically after linger time when {@code null}.
+     */
+    void setBatchingAllowed(boolean batchingAllowed, ScheduledExecutorService lingerService) {
+        synchronized (batchLock) {
+            this.batchingAllowed = batchingAllowed;
+            this.batchLingerService = lingerService;
+
+            final Writer localWriter = writer;
+            if (!batchingAllowed && localWriter != null) {
+                flushBatch(localWriter);
+            }
+        }
+    }
+
+    /**
+     * Get information whether outgoing data frames can be batched.
+     *
+     * @return {@code true} when batching is allowed, {@code false} otherwise.
+     * @see #setBatchingAllowed(boolean, ScheduledExecutorService)
+     */
+    boolean isBatchingAllowed() {
+        return batchingAllowed;
+    }
+
+    /**
+     * Write all batched frames.
+     *
+     * @see #setBatchingAllowed(boolean, ScheduledExecutorService)
+     */
+    public void flushBatch() {
+        final Writer localWriter = writer;
+        if (localWriter == null) {
+            throw new IllegalStateException(LocalizationMessages.CONNECTION_NULL());
+        }
+
+        synchronized (batchLock) {
+            flushBatch(localWriter);
+        }
+    }
+
+    /**
+     * Set send timeout.
+     * <p/>
+     * Sends which are not completed in given time are failed with {@link SocketTimeoutException}. The timeout applies
+     * only to messages sent by {@link javax.websocket.RemoteEndpoint.Async}; for batched frames it starts when the batch
+     * is flushed. Timeouts are enforced only when send timer is set, see {@link #setSendTimer(HashedWheelTimer)}.
+     * Payload of a message which can time out is always copied, so the caller can reuse its buffer once the send
+     * fails, even though the writer may still hold the data.
+     *
+     * @param sendTimeout timeout in milliseconds; {@code 0} or negative value means no timeout.
+     */
+    public void setSendTimeout(long sendTimeout) {
+        this.sendTimeout = sendTimeout;
+    }
+
+    private boolean isSendTimeoutActive(boolean useTimeout) {
+        return useTimeout && sendTimeout > 0 && sendTimer != null;
+    }
+
+    /**
+     * Set timer used for send timeouts. Timer is expected to be shared by all connections of the container.
+     *
+     * @param sendTimer timer used for send timeouts.
+     * @see #setSendTimeout(long)
+     */
+    public void setSendTimer(HashedWheelTimer sendTimer) {
+        this.sendTimer = sendTimer;
+    }
+
+    /**
+     * Set whether the connection should be closed when some send times out.
+     *
+     * @param closeOnSendTimeout {@code true} when the connection should be closed with
+     *                           {@link CloseReason.CloseCodes#CLOSED_ABNORMALLY} when some send times out.
+     * @see #setSendTimeout(long)
+     */
+    public void setCloseOnSendTimeout(boolean closeOnSendTimeout) {
+        this.closeOnSendTimeout = closeOnSendTimeout;
+    }
+
+    /**
+     * Set outbound watermarks.
+     * <p/>
+     * Connection becomes non-writable when amount of data passed to the {@link Writer} and not written yet (see
+     * {@link #getBufferedAmount()}) reaches the high watermark and writable again when it drops to the low watermark
+     * and below the high watermark.
+     * Writability listener is notified about both changes, see {@link #setWritabilityListener(Session,
+     * WritabilityListener)}.
+     *
+     * @param lowWatermark  amount of buffered data (in bytes) which makes the connection writable again; values
+     *                      greater than {@code highWatermark} are replaced by {@code highWatermark}.
+     * @param highWatermark amount of buffered data (in bytes) which makes the connection non-writable; {@code 0} or
+     *                      negative value means that the connection is always writable.
+     */
+    public void setOutboundWatermarks(long lowWatermark, long highWatermark) {
+        this.lowWatermark = Math.min(lowWatermark, highWatermark);
+        this.highWatermark = highWatermark;
+        updateWritability();
+    }
+
+    /**
+     * Set outbound buffer limit.
+     * <p/>
+     * When the buffered amount (see {@link #getBufferedAmount()}) together with newly sent message would exceed the
+     * limit, the message is rejected or dropped, based on provided policy. The limit is applied to whole
+     * (non-fragmented) data messages and raw frames; control frames and message fragments are always sent.
+     *
+     * @param outboundBufferLimit limit in bytes; {@code 0} or negative value means no limit.
+     * @param overflowPolicy      policy applied to messages which would exceed the limit.
+     */
+    public void setOutboundBufferLimit(long outboundBufferLimit, OutboundOverflowPolicy overflowPolicy) {
+        this.outboundBufferLimit = outboundBufferLimit;
+        this.overflowPolicy = overflowPolicy == null ? OutboundOverflowPolicy.REJECT : overflowPolicy;
+    }
+
+    /**
+     * Set listener notified when writability of the connection changes.
+     *
+     * @param session  session passed to the listener.
+     * @param listener listener to be set, {@code null} removes current listener.
+     * @see #setOutboundWatermarks(long, long)
+     */
+    void setWritabilityListener(Session session, WritabilityListener listener) {
+        this.writabilitySession = session;
+        this.writabilityListener = listener;
+    }
+
+    /**
+     * Get amount of outbound data passed to the {@link Writer} (or batched) and not written yet.
+     *
+     * @return number of buffered bytes.
+     */
+    public long getBufferedAmount() {
+        return bufferedAmount.get();
+    }
+
+    /**
+     * Get writability of the connection.
+     *
+     * @return {@code false} when the buffered amount reached the high watermark and did not drop to the low watermark
+     * yet, {@code true} otherwise.
+     * @see #setOutboundWatermarks(long, long)
+     */
+    public boolean isWritable() {
+        return writable;
+    }
+
     /**
      * Returns true when current connection has some negotiated extension.
      *
@@ -127,6 +427,7 @@ public final class ProtocolHandler {
         this.subProtocol = response.getFirstHeaderValue(UpgradeRequest.SEC_WEBSOCKET_PROTOCOL);
         this.extensionContext = extensionContext;
         hasExtensions = extensions != null && extensions.size() > 0;
+        outgoingKey = null;
         return handshake;
     }
 
@@ -164,6 +465,7 @@ public final class ProtocolHandler {
     public void setExtensions(List<Extension> extensions) {
         this.extensions = extensions;
         this.hasExtensions = extensions != null && extensions.size() > 0;
+        this.outgoingKey = null;
     }
 
     public final Future<Frame> send(Frame frame, boolean useTimeout) {
@@ -171,9 +473,18 @@ public final class ProtocolHandler {
     }
 
     public final Future<Frame> send(Frame frame) {
-        return send(frame, null, true);
+        return send(frame, null, false);
     }
 
+    /**
+     * Send frame.
+     *
+     * @param frame             frame to be sent.
+     * @param completionHandler handler notified when the frame is written or when the write fails.
+     * @param useTimeout        {@code true} when send timeout should be applied.
+     * @return future which could be used to wait for the frame to be written; {@code null} when
+     * {@code completionHandler} is provided.
+     */
     Future<Frame> send(Frame frame,
                        CompletionHandler<Frame> completionHandler, Boolean useTimeout) {
         return write(frame, completionHandler, useTimeout);
@@ -185,11 +496,93 @@ public final class ProtocolHandler {
     }
 
     public Future<Frame> send(byte[] data) {
-        return send(new BinaryFrame(data, false, true), null, true);
+        return send(new BinaryFrame(data, false, true), null, false);
     }
 
     public void send(final byte[] data, final SendHandler handler) {
-        send(new BinaryFrame(data, false, true), new CompletionHandler<Frame>() {
+        send(new BinaryFrame(data, false, true), handler);
+    }
+
+    /**
+     * Send binary message.
+     * <p/>
+     * Remaining data of provided buffer are not copied unless an extension needs to process them or the frame has to
+     * be masked, so the buffer must not be modified until the returned {@link Future} is done.
+     *
+     * @param data data to be sent.
+     * @return future which could be used to wait for the frame to be written.
+     */
+    public Future<Frame> send(ByteBuffer data) {
+        return send(new BinaryFrame(data, false, true), null, false);
+    }
+
+    /**
+     * Send binary message.
+     * <p/>
+     * Remaining data of provided buffer are not copied unless an extension needs to process them or the frame has to
+     * be masked, so the buffer must not be modified until the handler is notified.
+     *
+     * @param data    data to be sent.
+     * @param handler notified when the message is sent.
+     */
+    public void send(final ByteBuffer data, final SendHandler handler) {
+        send(new BinaryFrame(data, false, true), handler);
+    }
+
+    /**
+     * Send prepared message.
+     * <p/>
+     * Serialized frame is shared with other connections with the same outgoing key (see {@link #getOutgoingKey()});
+     * otherwise only the encoded payload is shared and the frame is processed by extensions and framed for this
+     * connection.
+     *
+     * @param message message to be sent.
+     * @return future which could be used to wait for the frame to be written.
+     */
+    public Future<Frame> send(PreparedMessage message) {
+        return send(message, (CompletionHandler<Frame>) null);
+    }
+
+    /**
+     * Send prepared message.
+     *
+     * @param message message to be sent.
+     * @param handler notified when the message is sent.
+     * @see #send(PreparedMessage)
+     */
+    public void send(PreparedMessage message, SendHandler handler) {
+        send(message, toCompletionHandler(handler));
+    }
+
+    /**
+     * Send prepared message.
+     *
+     * @param message           message to be sent.
+     * @param completionHandler notified when the message is sent, can be {@code null}.
+     * @return future which could be used to wait for the frame to be written or {@code null} when completion handler
+     * is provided.
+     */
+    Future<Frame> send(PreparedMessage message, CompletionHandler<Frame> completionHandler) {
+        final Object key = getOutgoingKey();
+        if (key == null) {
+            return send(message.getFrame(), completionHandler, false);
+        }
+
+        return send(ByteBuffer.wrap(message.getFramedData(key, this)), completionHandler, false);
+    }
+
+    private void send(Frame frame, SendHandler handler) {
+        send(frame, toCompletionHandler(handler), false);
+    }
+
+    /**
+     * Create completion handler which notifies given {@link SendHandler}.
+     *
+     * @param handler handler to be notified.
+     * @return completion handler.
+     */
+    static CompletionHandler<Frame> toCompletionHandler(final SendHandler handler) {
+        return new CompletionHandler<Frame>() {
             @Override
             public void failed(Throwable throwable) {
                 handler.onResult(new SendResult(throwable));
@@ -199,7 +592,7 @@ public final class ProtocolHandler {
             public void completed(Frame result) {
                 handler.onResult(new SendResult());
             }
-        }, true);
+        };
     }
 
     public Future<Frame> send(String data) {
@@ -207,21 +600,11 @@ public final class ProtocolHandler {
     }
 
     public void send(final String data, final SendHandler handler) {
-        send(new TextFrame(data, false, true), new CompletionHandler<Frame>() {
-            @Override
-            public void failed(Throwable throwable) {
-                handler.onResult(new SendResult(throwable));
-            }
-
-            @Override
-            public void completed(Frame result) {
-                handler.onResult(new SendResult());
-            }
-        }, true);
+        send(new TextFrame(data, false, true), handler);
     }
 
     public Future<Frame> sendRawFrame(ByteBuffer data) {
-        return send(data, null, true);
+        return send(data, null, false);
     }
 
     public Future<Frame> stream(boolean last, byte[] bytes, int off, int len) {
@@ -236,6 +619,21 @@ public final class ProtocolHandler {
         }
     }
 
+    /**
+     * Send binary fragment.
+     * <p/>
+     * Remaining data of provided buffer are shared with the sent frame, see {@link #send(ByteBuffer)}.
+     *
+     * @param last     {@code true} when the fragment is the last one of the message.
+     * @param fragment data to be sent.
+     * @return future which could be used to wait for the frame to be written.
+     */
+    public Future<Frame> stream(boolean last, ByteBuffer fragment) {
+        final boolean continuation = sendingFragment;
+        sendingFragment = !last;
+        return send(new BinaryFrame(fragment, continuation, last));
+    }
+
     public Future<Frame> stream(boolean last, String fragment) {
         if (sendingFragment) {
             if (last) {
@@ -268,31 +666,146 @@ public final class ProtocolHandler {
 
     private Future<Frame> write(final Frame frame, final CompletionHandler<Frame> completionHandler, boolean useTimeout) {
         final Writer localWriter = writer;
-        final TyrusFuture<Frame> future = new TyrusFuture<Frame>();
+        // completion handler is notified instead.
+        final TyrusFuture<Frame> future = completionHandler == null ? new TyrusFuture<Frame>() : null;
 
         if (localWriter == null) {
             throw new IllegalStateException(LocalizationMessages.CONNECTION_NULL());
         }
 
-        final ByteBuffer byteBuffer = frame(frame);
-        localWriter.write(byteBuffer, new CompletionHandlerWrapper(completionHandler, future, frame));
+        // only whole messages can be rejected, fragments have to follow already sent ones.
+        if (!frame.isControlFrame() && frame.isFin() && frame.getOpcode() != 0x00
+                && !checkOutboundBufferLimit(frame.getPayloadLength(), frame, completionHandler, future)) {
+            return future;
+        }
+
+        if (batchingAllowed || batch != null) {
+            synchronized (batchLock) {
+                if (batchingAllowed && !frame.isControlFrame()) {
+                    addToBatch(localWriter, frame, completionHandler, future, useTimeout);
+                } else {
+                    // preserve order of batched and current frame.
+                    flushBatch(localWriter);
+                    write(localWriter, frame, completionHandler, future, useTimeout);
+                }
+            }
+        } else {
+            write(localWriter, frame, completionHandler, future, useTimeout);
+        }
 
         return future;
     }
 
+    private void write(Writer localWriter, Frame frame, CompletionHandler<Frame> completionHandler, TyrusFuture<Frame> future, boolean useTimeout) {
+        // payload is copied when the send can time out, its buffer can be reused by the caller after the timeout.
+        final ByteBuffer[] buffers = frame(frame, !isSendTimeoutActive(useTimeout));
+        if (buffers.length == 1) {
+            // whole frame was serialized to allocated buffer, which is released when written.
+            localWriter.write(buffers[0], new CompletionHandlerWrapper<ByteBuffer>(completionHandler, future, frame, bufferAllocator, buffers[0],
+                    buffers[0].remaining(), useTimeout).startTimeout());
+        } else {
+            localWriter.write(buffers, new CompletionHandlerWrapper<ByteBuffer[]>(completionHandler, future, frame, null, null,
+                    buffers[0].remaining() + buffers[1].remaining(), useTimeout).startTimeout());
+        }
+    }
+
     private Future<Frame> write(final ByteBuffer frame, final CompletionHandler<Frame> completionHandler, boolean useTimeout) {
         final Writer localWriter = writer;
-        final TyrusFuture<Frame> future = new TyrusFuture<Frame>();
+        final TyrusFuture<Frame> future = completionHandler == null ? new TyrusFuture<Frame>() : null;
 
         if (localWriter == null) {
             throw new IllegalStateException(LocalizationMessages.CONNECTION_NULL());
         }
 
-        localWriter.write(frame, new CompletionHandlerWrapper(completionHandler, future, null));
+        final int size = frame.remaining();
+        if (!checkOutboundBufferLimit(size, null, completionHandler, future)) {
+            return future;
+        }
+
+        if (batch != null) {
+            synchronized (batchLock) {
+                flushBatch(localWriter);
+                localWriter.write(frame, new CompletionHandlerWrapper<ByteBuffer>(completionHandler, future, null, null, null, size, useTimeout).startTimeout());
+            }
+        } else {
+            localWriter.write(frame, new CompletionHandlerWrapper<ByteBuffer>(completionHandler, future, null, null, null, size, useTimeout).startTimeout());
+        }
 
         return future;
     }
 
+    // batchLock must be held
+    private void addToBatch(final Writer localWriter, Frame frame, CompletionHandler<Frame> completionHandler, TyrusFuture<Frame> future,
+                            boolean useTimeout) {
+        final ByteBuffer buffer = frame(frame, false)[0];
+
+        Batch currentBatch = batch;
+        if (currentBatch == null) {
+            currentBatch = new Batch();
+            batch = currentBatch;
+
+            if (batchLingerService != null && batchLinger > 0) {
+                final Batch lingeringBatch = currentBatch;
+                currentBatch.lingerFuture = batchLingerService.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (batchLock) {
+                            if (batch == lingeringBatch) {
+                                flushBatch(localWriter);
+                            }
+                        }
+                    }
+                }, batchLinger, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        currentBatch.add(buffer, new CompletionHandlerWrapper<ByteBuffer>(completionHandler, future, frame, bufferAllocator, buffer,
+                buffer.remaining(), useTimeout));
+
+        if (currentBatch.size >= batchSize) {
+            flushBatch(localWriter);
+        }
+    }
+
+    // batchLock must be held
+    private void flushBatch(Writer localWriter) {
+        final Batch flushedBatch = batch;
+        if (flushedBatch == null) {
+            return;
+        }
+
+        batch = null;
+        if (flushedBatch.lingerFuture != null) {
+            flushedBatch.lingerFuture.cancel(false);
+        }
+
+        // time spent in the batch does not count against the send timeout.
+        for (CompletionHandlerWrapper<ByteBuffer> handler : flushedBatch.handlers) {
+            handler.startTimeout();
+        }
+        localWriter.write(flushedBatch.buffers.toArray(new ByteBuffer[flushedBatch.buffers.size()]), flushedBatch);
+    }
+
+    /**
+     * Fail frames which are batched and won't be written, because the connection is being closed. Batching is
+     * disallowed, so frames sent afterwards are passed directly to the writer.
+     */
+    private void failBatch() {
+        final Batch failedBatch;
+        synchronized (batchLock) {
+            batchingAllowed = false;
+            failedBatch = batch;
+            batch = null;
+        }
+
+        if (failedBatch != null) {
+            if (failedBatch.lingerFuture != null) {
+                failedBatch.lingerFuture.cancel(false);
+            }
+            failedBatch.failed(new IOException(LocalizationMessages.CONNECTION_HAS_BEEN_CLOSED()));
+        }
+    }
+
     /**
      * Convert a byte[] to a long. Used for rebuilding payload length.
      *
@@ -312,7 +825,7 @@ public final class ProtocolHandler {
      * @param length the payload size
      * @return the array
      */
-    byte[] encodeLength(final long length) {
+    static byte[] encodeLength(final long length) {
         byte[] lengthBytes;
         if (length <= 125) {
             lengthBytes = new byte[1];
@@ -363,6 +876,8 @@ public final class ProtocolHandler {
             throw new IllegalStateException(LocalizationMessages.CONNECTION_NULL());
         }
 
+        failBatch();
+
         try {
             localWriter.close();
         } catch (IOException e) {
@@ -370,19 +885,33 @@ public final class ProtocolHandler {
         }
     }
 
+    /**
+     * Create serialized representation of given frame (header, possibly masked payload).
+     * <p/>
+     * Returned buffer is obtained from {@link #getBufferAllocator()}; caller can release it when it is not used
+     * anymore.
+     *
+     * @param frame frame to be serialized.
+     * @return buffer containing whole frame.
+     */
     public ByteBuffer frame(Frame frame) {
+        return frame(frame, false)[0];
+    }
 
-        if (extensions != null && extensions.size() > 0) {
-            for (Extension extension : extensions) {
-                if (extension instanceof ExtendedExtension) {
-                    try {
-                        frame = ((ExtendedExtension) extension).processOutgoing(extensionContext, frame);
-                    } catch (Throwable t) {
-                        LOGGER.log(Level.FINE, LocalizationMessages.EXTENSION_EXCEPTION(extension.getName(), t.getMessage()), t);
-                    }
-                }
-            }
-        }
+    /**
+     * Create serialized representation of given frame.
+     * <p/>
+     * When {@code gather} is {@code true}, frame is not masked and its payload is big enough, returned array contains
+     * two buffers - frame header and payload, which is shared with the frame (not copied). Otherwise, returned array
+     * contains only one buffer with whole frame.
+     *
+     * @param frame  frame to be serialized.
+     * @param gather {@code true} when header and payload can be returned as separate buffers.
+     * @return buffer(s) containing frame.
+     */
+    private ByteBuffer[] frame(Frame frame, boolean gather) {
+
+        frame = processOutgoing(frame);
 
         byte opcode = checkForLastFrame(frame);
         if (frame.isRsv1()) {
@@ -395,35 +924,147 @@ public final class ProtocolHandler {
             opcode |= 0x10;
         }
 
-        final byte[] bytes = frame.getPayloadData();
         final byte[] lengthBytes = encodeLength(frame.getPayloadLength());
 
         // TODO - length limited to int, it should be long (see RFC 9788, chapter 5.2)
         // TODO - in that case, we will need to NOT store dataframe inmemory - introduce maskingByteStream or
         // TODO   maskingByteBuffer
         final int payloadLength = (int) frame.getPayloadLength();
+
+        if (gather && !maskData && payloadLength >= GATHERING_WRITE_THRESHOLD) {
+            final byte[] header = new byte[1 + lengthBytes.length];
+            header[0] = opcode;
+            System.arraycopy(lengthBytes, 0, header, 1, lengthBytes.length);
+            return new ByteBuffer[]{ByteBuffer.wrap(header), frame.getPayloadBuffer()};
+        }
+
         int length = 1 + lengthBytes.length + payloadLength + (maskData ? MASK_SIZE : 0);
         int payloadStart = 1 + lengthBytes.length + (maskData ? MASK_SIZE : 0);
-        final byte[] packet = new byte[length];
-        packet[0] = opcode;
-        System.arraycopy(lengthBytes, 0, packet, 1, lengthBytes.length);
+        final ByteBuffer packet = bufferAllocator.allocate(length);
+        packet.put(opcode);
+        packet.put(lengthBytes);
         if (maskData) {
-            Masker masker = new Masker(frame.getMaskingKey());
-            packet[1] |= 0x80;
-            masker.mask(packet, payloadStart, bytes, payloadLength);
-            System.arraycopy(masker.getMask(), 0, packet, payloadStart - MASK_SIZE,
-                    MASK_SIZE);
+            final int maskingKey = frame.getMaskingKey();
+            Masker masker = new Masker(maskingKey != 0 ? maskingKey : maskingKeyGenerator.nextKey());
+            packet.put(1, (byte) (packet.get(1) | 0x80));
+            packet.put(masker.getMask());
+            frame.writePayload(packet);
+            masker.unmask(packet, payloadStart, payloadLength);
         } else {
-            System.arraycopy(bytes, 0, packet, payloadStart, payloadLength);
+            frame.writePayload(packet);
         }
-        return ByteBuffer.wrap(packet);
+        packet.flip();
+        return new ByteBuffer[]{packet};
     }
 
     /**
-     * TODO!
+     * Serialize whole data frame shared by more connections.
+     * <p/>
+     * Negotiated extensions are applied; the frame is not masked and fragmentation state of this handler is neither
+     * used nor changed. Should be used only when {@link #getOutgoingKey()} is not {@code null}.
      *
-     * @param buffer TODO.
-     * @return TODO.
+     * @param frame whole (fin) data frame.
+     * @return serialized frame.
+     */
+    byte[] frameShared(Frame frame) {
+        return serialize(processOutgoing(frame));
+    }
+
+    /**
+     * Serialize whole, unmasked frame into new array.
+     *
+     * @param frame whole (fin) frame.
+     * @return serialized frame.
+     */
+    static byte[] serialize(Frame frame) {
+        byte opcode = (byte) (0x80 | frame.getOpcode());
+        if (frame.isRsv1()) {
+            opcode |= 0x40;
+        }
+        if (frame.isRsv2()) {
+            opcode |= 0x20;
+        }
+        if (frame.isRsv3()) {
+            opcode |= 0x10;
+        }
+
+        final byte[] lengthBytes = encodeLength(frame.getPayloadLength());
+        final int payloadLength = (int) frame.getPayloadLength();
+
+        final byte[] data = new byte[1 + lengthBytes.length + payloadLength];
+        data[0] = opcode;
+        System.arraycopy(lengthBytes, 0, data, 1, lengthBytes.length);
+        frame.writePayload(ByteBuffer.wrap(data, 1 + lengthBytes.length, payloadLength));
+        return data;
+    }
+
+    /**
+     * Get key of outgoing frame processing of this connection.
+     * <p/>
+     * Connections with equal keys produce the same serialized form of the same whole data frame (see
+     * {@link #frameShared(Frame)}), so it can be computed once and shared. All negotiated extensions which process
+     * outgoing frames have to be {@link ShareableOutgoingExtension}s for that and frames must not be masked.
+     *
+     * @return key, {@code null} when the frames have to be processed and framed for this connection only.
+     */
+    Object getOutgoingKey() {
+        Object key = outgoingKey;
+        if (key == null) {
+            key = computeOutgoingKey();
+            outgoingKey = key;
+        }
+
+        return key == NOT_SHAREABLE ? null : key;
+    }
+
+    private Object computeOutgoingKey() {
+        if (maskData) {
+            return NOT_SHAREABLE;
+        }
+
+        final List<Object> key = new ArrayList<Object>();
+        if (extensions != null) {
+            for (Extension extension : extensions) {
+                if (extension instanceof ShareableOutgoingExtension) {
+                    final Object extensionKey = ((ShareableOutgoingExtension) extension).getOutgoingKey(extensionContext);
+                    if (extensionKey == null) {
+                        return NOT_SHAREABLE;
+                    }
+                    key.add(extension.getName());
+                    key.add(extensionKey);
+                } else if (extension instanceof ExtendedExtension) {
+                    return NOT_SHAREABLE;
+                }
+            }
+        }
+
+        return key;
+    }
+
+    private Frame processOutgoing(Frame frame) {
+        if (extensions != null && extensions.size() > 0) {
+            for (Extension extension : extensions) {
+                if (extension instanceof ExtendedExtension) {
+                    try {
+                        frame = ((ExtendedExtension) extension).processOutgoing(extensionContext, frame);
+                    } catch (Throwable t) {
+                        LOGGER.log(Level.FINE, LocalizationMessages.EXTENSION_EXCEPTION(extension.getName(), t.getMessage()), t);
+                    }
+                }
+            }
+        }
+
+        return frame;
+    }
+
+    /**
+     * Parse next frame from provided buffer.
+     * <p/>
+     * Payload of returned frame is not copied; it is unmasked in place and shared with provided buffer, so it is valid
+     * only until the buffer content is changed (compacted, reused, ...).
+     *
+     * @param buffer buffer containing incoming data.
+     * @return parsed frame or {@code null} when buffer does not contain complete frame.
      */
     public Frame unframe(ByteBuffer buffer) {
 
@@ -488,15 +1129,25 @@ public final class ProtocolHandler {
                         state.state++;
                         break;
                     case 3:
+                        if (streamingChunkSize > 0 && !state.controlFrame && !hasExtensions
+                                && state.length > streamingChunkSize) {
+                            state.remaining = state.length;
+                            state.state = 4;
+                            break;
+                        }
+
                         if (buffer.remaining() < state.length) {
                             return null;
                         }
 
-                        state.masker.setBuffer(buffer);
-                        final byte[] data = state.masker.unmask((int) state.length);
-                        if (data.length != state.length) {
-                            throw new ProtocolException(LocalizationMessages.DATA_UNEXPECTED_LENGTH(data.length, state.length));
-                        }
+                        // payload is unmasked in place and is not copied - frame shares it with the read buffer.
+                        final int payloadStart = buffer.position();
+                        final int payloadLength = (int) state.length;
+                        state.masker.unmask(buffer, payloadStart, payloadLength);
+
+                        final ByteBuffer data = buffer.slice();
+                        data.limit(payloadLength);
+                        buffer.position(payloadStart + payloadLength);
 
                         final Frame frame = Frame.builder()
                                 .fin(state.finalFragment)
@@ -511,6 +1162,44 @@ public final class ProtocolHandler {
                         state.recycle();
 
                         return frame;
+                    case 4:
+                        // large data frame - payload is passed on in chunks, as a sequence of fragments.
+                        final int chunkLength = (int) Math.min(streamingChunkSize, state.remaining);
+                        if (buffer.remaining() < chunkLength) {
+                            return null;
+                        }
+
+                        final boolean firstChunk = state.remaining == state.length;
+                        final boolean lastChunk = state.remaining == chunkLength;
+
+                        final int chunkStart = buffer.position();
+                        state.masker.unmask(buffer, chunkStart, chunkLength);
+
+                        final ByteBuffer chunk = buffer.slice();
+                        chunk.limit(chunkLength);
+                        buffer.position(chunkStart + chunkLength);
+
+                        final Frame.Builder builder = Frame.builder()
+                                .fin(lastChunk && state.finalFragment)
+                                .payloadLength(chunkLength)
+                                .payloadData(chunk);
+
+                        if (firstChunk) {
+                            builder.rsv1(isBitSet(state.opcode, 6))
+                                    .rsv2(isBitSet(state.opcode, 5))
+                                    .rsv3(isBitSet(state.opcode, 4))
+                                    .opcode((byte) (state.opcode & 0xf));
+                        } else {
+                            builder.opcode((byte) 0);
+                        }
+
+                        if (lastChunk) {
+                            state.recycle();
+                        } else {
+                            state.remaining -= chunkLength;
+                        }
+
+                        return builder.build();
                     default:
                         // Should never get here
                         throw new IllegalStateException(LocalizationMessages.UNEXPECTED_STATE(state.state));
@@ -557,13 +1246,7 @@ public final class ProtocolHandler {
             }
         }
 
-        TyrusFrame tyrusFrame = TyrusFrame.wrap(frame, inFragmentedType, remainder);
-
-        // TODO - utf8 decoder needs this state to be shared among decoded frames.
-        // TODO - investigate whether it can be removed; (this effectively denies lazy decoding)
-        if (tyrusFrame instanceof TextFrame) {
-            remainder = ((TextFrame) tyrusFrame).getRemainder();
-        }
+        TyrusFrame tyrusFrame = TyrusFrame.wrap(frame, inFragmentedType, utf8Decoder);
 
         tyrusFrame.respond(socket);
 
@@ -581,23 +1264,181 @@ public final class ProtocolHandler {
         return ((b >> bit & 1) != 0);
     }
 
+    /**
+     * Apply outbound buffer limit to a message.
+     *
+     * @return {@code true} when the message should be written, {@code false} when it was rejected or dropped; handler
+     * or future is already notified in that case.
+     */
+    private boolean checkOutboundBufferLimit(long size, Frame frame, CompletionHandler<Frame> completionHandler, TyrusFuture<Frame> future) {
+        final long limit = outboundBufferLimit;
+        if (limit <= 0 || bufferedAmount.get() + size <= limit) {
+            return true;
+        }
+
+        if (overflowPolicy == OutboundOverflowPolicy.DROP) {
+            LOGGER.log(Level.FINE, LocalizationMessages.OUTBOUND_BUFFER_LIMIT_DROPPED(limit));
+            if (completionHandler != null) {
+                completionHandler.completed(frame);
+            }
+            if (future != null) {
+                future.setResult(frame);
+            }
+        } else {
+            final IOException exception = new IOException(LocalizationMessages.OUTBOUND_BUFFER_LIMIT_EXCEEDED(limit));
+            if (completionHandler != null) {
+                completionHandler.failed(exception);
+            }
+            if (future != null) {
+                future.setFailure(exception);
+            }
+        }
+
+        return false;
+    }
+
+    private void updateWritability() {
+        final long localHighWatermark = highWatermark;
+        final long amount = bufferedAmount.get();
+        if (writable ? (localHighWatermark <= 0 || amount < localHighWatermark) : (localHighWatermark > 0 && (amount > lowWatermark || amount >= localHighWatermark))) {
+            return;
+        }
+
+        synchronized (writabilityLock) {
+            // re-check; buffered amount could have been changed by a thread which saw the previous writability.
+            while (true) {
+                final long current = bufferedAmount.get();
+                if (writable) {
+                    if (highWatermark <= 0 || current < highWatermark) {
+                        break;
+                    }
+                    writable = false;
+                } else {
+                    // low watermark equal to the high one must not make the connection writable and
+                    // non-writable again in a loop.
+                    if (highWatermark > 0 && (current > lowWatermark || current >= highWatermark)) {
+                        break;
+                    }
+                    writable = true;
+                }
+            }
+
+            if (notifyingWritability || notifiedWritable == writable) {
+                return;
+            }
+            notifyingWritability = true;
+        }
+
+        // listener is invoked without holding the lock, it can send messages (and so change the writability again);
+        // only one thread notifies it, so the changes are delivered in order.
+        while (true) {
+            final boolean newWritable;
+            synchronized (writabilityLock) {
+                if (notifiedWritable == writable) {
+                    notifyingWritability = false;
+                    return;
+                }
+                newWritable = writable;
+                notifiedWritable = newWritable;
+            }
+
+            final WritabilityListener listener = writabilityListener;
+            if (listener != null) {
+                try {
+                    listener.onWritabilityChanged(writabilitySession, newWritable);
+                } catch (Throwable t) {
+                    LOGGER.log(Level.FINE, t.getMessage(), t);
+                }
+            }
+        }
+    }
+
+    private void onSendTimeout() {
+        final TyrusWebSocket localWebSocket = webSocket;
+        if (closeOnSendTimeout && localWebSocket != null) {
+            localWebSocket.close(new CloseReason(CloseReason.CloseCodes.CLOSED_ABNORMALLY, LocalizationMessages.SEND_TIMEOUT_CLOSE()));
+        }
+    }
+
     /**
      * Handler passed to the {@link org.glassfish.tyrus.spi.Writer}.
+     * <p/>
+     * When send timeout is set, the handler registers itself to the send timer; frame handler and future are failed
+     * with {@link SocketTimeoutException} when the write is not completed in time. Buffer is released only when the
+     * write is really finished.
      */
-    private static class CompletionHandlerWrapper extends CompletionHandler<ByteBuffer> {
+    private class CompletionHandlerWrapper<T> extends CompletionHandler<T> implements Runnable {
 
         private final CompletionHandler<Frame> frameCompletionHandler;
         private final TyrusFuture<Frame> future;
         private final Frame frame;
+        private final BufferAllocator bufferAllocator;
+        private final ByteBuffer buffer;
+        private final boolean useTimeout;
+        private final int size;
+        private volatile HashedWheelTimer.Timeout timeout = null;
+
+        // see DONE_UPDATER
+        volatile int done = 0;
 
-        private CompletionHandlerWrapper(CompletionHandler<Frame> frameCompletionHandler, TyrusFuture<Frame> future, Frame frame) {
+        private CompletionHandlerWrapper(CompletionHandler<Frame> frameCompletionHandler, TyrusFuture<Frame> future, Frame frame,
+                                         BufferAllocator bufferAllocator, ByteBuffer buffer, int size, boolean useTimeout) {
             this.frameCompletionHandler = frameCompletionHandler;
             this.future = future;
             this.frame = frame;
+            this.bufferAllocator = bufferAllocator;
+            this.buffer = buffer;
+            this.size = size;
+            this.useTimeout = useTimeout;
+
+            // buffered until the writer notifies this handler.
+            bufferedAmount.addAndGet(size);
+            updateWritability();
+        }
+
+        /**
+         * Start send timeout, if it should be applied; must be called before the data are passed to the writer.
+         *
+         * @return this handler.
+         */
+        private CompletionHandlerWrapper<T> startTimeout() {
+            final long localSendTimeout = sendTimeout;
+            final HashedWheelTimer localSendTimer = sendTimer;
+            if (useTimeout && localSendTimeout > 0 && localSendTimer != null) {
+                timeout = localSendTimer.newTimeout(this, localSendTimeout, TimeUnit.MILLISECONDS);
+            }
+            return this;
+        }
+
+        private void release() {
+            if (bufferAllocator != null) {
+                bufferAllocator.release(buffer);
+            }
+
+            bufferedAmount.addAndGet(-size);
+            updateWritability();
+        }
+
+        private boolean complete() {
+            if (!DONE_UPDATER.compareAndSet(this, 0, 1)) {
+                return false;
+            }
+
+            final HashedWheelTimer.Timeout localTimeout = timeout;
+            if (localTimeout != null) {
+                localTimeout.cancel();
+            }
+            return true;
         }
 
         @Override
         public void cancelled() {
+            release();
+
+            if (!complete()) {
+                return;
+            }
+
             if (frameCompletionHandler != null) {
                 frameCompletionHandler.cancelled();
             }
@@ -609,6 +1450,12 @@ public final class ProtocolHandler {
 
         @Override
         public void failed(Throwable throwable) {
+            release();
+
+            if (!complete()) {
+                return;
+            }
+
             if (frameCompletionHandler != null) {
                 frameCompletionHandler.failed(throwable);
             }
@@ -619,7 +1466,13 @@ public final class ProtocolHandler {
         }
 
         @Override
-        public void completed(ByteBuffer result) {
+        public void completed(T result) {
+            release();
+
+            if (!complete()) {
+                return;
+            }
+
             if (frameCompletionHandler != null) {
                 frameCompletionHandler.completed(frame);
             }
@@ -630,11 +1483,73 @@ public final class ProtocolHandler {
         }
 
         @Override
-        public void updated(ByteBuffer result) {
-            if (frameCompletionHandler != null) {
+        public void updated(T result) {
+            if (frameCompletionHandler != null && done == 0) {
                 frameCompletionHandler.updated(frame);
             }
         }
+
+        /**
+         * Send timeout expired.
+         */
+        @Override
+        public void run() {
+            if (!DONE_UPDATER.compareAndSet(this, 0, 1)) {
+                return;
+            }
+
+            final Throwable throwable = new SocketTimeoutException(LocalizationMessages.SEND_TIMEOUT(sendTimeout));
+
+            if (frameCompletionHandler != null) {
+                frameCompletionHandler.failed(throwable);
+            }
+
+            if (future != null) {
+                future.setFailure(throwable);
+            }
+
+            onSendTimeout();
+        }
+    }
+
+    /**
+     * Serialized frames waiting for batch flush.
+     * <p/>
+     * Completion of the gathering write of the whole batch is propagated to handlers of all batched frames.
+     */
+    private static class Batch extends CompletionHandler<ByteBuffer[]> {
+
+        private final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        private final List<CompletionHandlerWrapper<ByteBuffer>> handlers = new ArrayList<CompletionHandlerWrapper<ByteBuffer>>();
+        private int size = 0;
+        private ScheduledFuture<?> lingerFuture = null;
+
+        private void add(ByteBuffer buffer, CompletionHandlerWrapper<ByteBuffer> handler) {
+            buffers.add(buffer);
+            handlers.add(handler);
+            size += buffer.remaining();
+        }
+
+        @Override
+        public void cancelled() {
+            for (CompletionHandlerWrapper<ByteBuffer> handler : handlers) {
+                handler.cancelled();
+            }
+        }
+
+        @Override
+        public void failed(Throwable throwable) {
+            for (CompletionHandlerWrapper<ByteBuffer> handler : handlers) {
+                handler.failed(throwable);
+            }
+        }
+
+        @Override
+        public void completed(ByteBuffer[] result) {
+            for (CompletionHandlerWrapper<ByteBuffer> handler : handlers) {
+                handler.completed(null);
+            }
+        }
     }
 
     private static class ParsingState {
@@ -645,6 +1560,7 @@ public final class ProtocolHandler {
         Masker masker;
         boolean finalFragment;
         boolean controlFrame;
+        long remaining = -1;
         private byte lengthCode = -1;
 
         void recycle() {
@@ -656,6 +1572,7 @@ public final class ProtocolHandler {
             masker = null;
             finalFragment = false;
             controlFrame = false;
+            remaining = -1;
         }
     }
 }
\ No newline at end of file
@@ -40,12 +40,10 @@
 
 package org.glassfish.tyrus.core;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Method;
@@ -59,12 +57,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.websocket.CloseReason;
-import javax.websocket.DecodeException;
 import javax.websocket.Decoder;
 import javax.websocket.DeploymentException;
 import javax.websocket.EncodeException;
@@ -81,6 +79,7 @@ import javax.websocket.server.ServerEndpointConfig;
 import org.glassfish.tyrus.core.cluster.BroadcastListener;
 import org.glassfish.tyrus.core.cluster.ClusterContext;
 import org.glassfish.tyrus.core.cluster.ClusterSession;
+import org.glassfish.tyrus.core.cluster.PublishListener;
 import org.glassfish.tyrus.core.cluster.SessionListener;
 import org.glassfish.tyrus.core.coder.CoderWrapper;
 import org.glassfish.tyrus.core.coder.InputStreamDecoder;
@@ -90,9 +89,6 @@ import org.glassfish.tyrus.core.coder.NoOpTextCoder;
 import org.glassfish.tyrus.core.coder.PrimitiveDecoders;
 import org.glassfish.tyrus.core.coder.ReaderDecoder;
 import org.glassfish.tyrus.core.coder.ToStringEncoder;
-import org.glassfish.tyrus.core.frame.BinaryFrame;
-import org.glassfish.tyrus.core.frame.Frame;
-import org.glassfish.tyrus.core.frame.TextFrame;
 import org.glassfish.tyrus.core.l10n.LocalizationMessages;
 import org.glassfish.tyrus.spi.UpgradeRequest;
 import org.glassfish.tyrus.spi.UpgradeResponse;
@@ -116,13 +112,20 @@ public class TyrusEndpointWrapper {
     private final String contextPath;
     private final List<CoderWrapper<Decoder>> decoders = new ArrayList<CoderWrapper<Decoder>>();
     private final List<CoderWrapper<Encoder>> encoders = new ArrayList<CoderWrapper<Encoder>>();
+    // runtime class of encoded object -> selected encoder, see doEncode(...).
+    private final ConcurrentMap<Class<?>, EncoderEntry> encoderCache = new ConcurrentHashMap<Class<?>, EncoderEntry>();
     private final EndpointConfig configuration;
     private final Class<? extends Endpoint> endpointClass;
+    // slot of endpointClass instances, see ComponentProviderService#getSlot(Class).
+    private final int endpointSlot;
     private final Endpoint endpoint;
     private final Map<TyrusWebSocket, TyrusSession> webSocketToSession =
             new ConcurrentHashMap<TyrusWebSocket, TyrusSession>();
     private final Map<String, ClusterSession> clusteredSessions =
             new ConcurrentHashMap<String, ClusterSession>();
+    // topic -> subscribed sessions, see TyrusSession#subscribe(String).
+    private final ConcurrentMap<String, Set<TyrusSession>> topics =
+            new ConcurrentHashMap<String, Set<TyrusSession>>();
     private final ComponentProviderService componentProvider;
     private final ServerEndpointConfig.Configurator configurator;
     private final OnCloseListener onCloseListener;
@@ -132,6 +135,7 @@ public class TyrusEndpointWrapper {
 
     private final ClusterContext clusterContext;
     private final Session dummySession;
+    private final Broadcaster broadcaster;
 
     /**
      * Create {@link TyrusEndpointWrapper} for class that extends {@link Endpoint}.
@@ -172,6 +176,9 @@ public class TyrusEndpointWrapper {
         this.configurator = configurator;
         this.onCloseListener = onCloseListener;
         this.clusterContext = clusterContext;
+        this.broadcaster = new Broadcaster(container instanceof ExecutorServiceProvider
+                ? ((ExecutorServiceProvider) container).getExecutorService() : null,
+                Runtime.getRuntime().availableProcessors());
 
         this.componentProvider = configurator == null ? componentProvider : new ComponentProviderService(componentProvider) {
             @Override
@@ -179,6 +186,7 @@ public class TyrusEndpointWrapper {
                 return configurator.getEndpointInstance(endpointClass);
             }
         };
+        this.endpointSlot = endpointClass == null ? -1 : this.componentProvider.getSlot(endpointClass);
 
 
         {
@@ -263,6 +271,10 @@ public class TyrusEndpointWrapper {
         encoders.add(new CoderWrapper<Encoder>(NoOpByteArrayCoder.class, byte[].class));
         encoders.add(new CoderWrapper<Encoder>(ToStringEncoder.class, Object.class));
 
+        for (CoderWrapper<Encoder> encoder : encoders) {
+            getEncoder(encoder.getType());
+        }
+
         // clustered mode
         if (clusterContext != null) {
             dummySession = new ClusterSession(null, null, null, null, null);
@@ -292,6 +304,18 @@ public class TyrusEndpointWrapper {
                 }
             });
 
+            clusterContext.registerPublishListener(getEndpointPath(), new PublishListener() {
+                @Override
+                public void onPublish(String topic, String text) {
+                    publish(topic, new PreparedMessage(text));
+                }
+
+                @Override
+                public void onPublish(String topic, byte[] data) {
+                    publish(topic, new PreparedMessage(ByteBuffer.wrap(data)));
+                }
+            });
+
             for (String sessionId : clusterContext.getRemoteSessionIds(getEndpointPath())) {
                 final Map<ClusterSession.DistributedMapKey, Object> distributedSessionProperties = clusterContext.getDistributedSessionProperties(sessionId);
                 clusteredSessions.put(sessionId, new ClusterSession(sessionId, clusterContext, distributedSessionProperties, this, dummySession));
@@ -335,11 +359,24 @@ public class TyrusEndpointWrapper {
         return null;
     }
 
-    private <T> Object getCoderInstance(Session session, CoderWrapper<T> wrapper) {
+    /**
+     * Get coder instance for given session.
+     *
+     * @param session session the coder is used for.
+     * @param wrapper wrapper of the coder.
+     * @param <T>     coder type.
+     * @return coder instance, {@code null} when the instance could not be created.
+     */
+    <T> Object getCoderInstance(Session session, CoderWrapper<T> wrapper) {
+        return getCoderInstance(session, wrapper,
+                wrapper.getCoder() == null ? componentProvider.getSlot(wrapper.getCoderClass()) : -1);
+    }
+
+    private <T> Object getCoderInstance(Session session, CoderWrapper<T> wrapper, int slot) {
         final Object coder = wrapper.getCoder();
         if (coder == null) {
             ErrorCollector collector = new ErrorCollector();
-            final Object coderInstance = this.componentProvider.getCoderInstance(wrapper.getCoderClass(), session, getEndpointConfig(), collector);
+            final Object coderInstance = this.componentProvider.getCoderInstance(slot, wrapper.getCoderClass(), session, getEndpointConfig(), collector);
             if (!collector.isEmpty()) {
                 final DeploymentException deploymentException = collector.composeComprehensiveException();
                 LOGGER.log(Level.WARNING, deploymentException.getMessage(), deploymentException);
@@ -352,99 +389,58 @@ public class TyrusEndpointWrapper {
         return coder;
     }
 
-    Object decodeCompleteMessage(Session session, Object message, Class<?> type, CoderWrapper<Decoder> selectedDecoder) throws DecodeException, IOException {
-        final Class<? extends Decoder> decoderClass = selectedDecoder.getCoderClass();
-
-        if (Decoder.Text.class.isAssignableFrom(decoderClass)) {
-            if (type != null && type.isAssignableFrom(selectedDecoder.getType())) {
-                final Decoder.Text decoder = (Decoder.Text) getCoderInstance(session, selectedDecoder);
-
-                // TYRUS-210: willDecode was already called
-                return decoder.decode((String) message);
-            }
-        } else if (Decoder.Binary.class.isAssignableFrom(decoderClass)) {
-            if (type != null && type.isAssignableFrom(selectedDecoder.getType())) {
-                final Decoder.Binary decoder = (Decoder.Binary) getCoderInstance(session, selectedDecoder);
-
-                // TYRUS-210: willDecode was already called
-                return decoder.decode((ByteBuffer) message);
-            }
-        } else if (Decoder.TextStream.class.isAssignableFrom(decoderClass)) {
-            if (type != null && type.isAssignableFrom(selectedDecoder.getType())) {
-                return ((Decoder.TextStream) getCoderInstance(session, selectedDecoder)).decode(new StringReader((String) message));
-            }
-        } else if (Decoder.BinaryStream.class.isAssignableFrom(decoderClass)) {
-            if (type != null && type.isAssignableFrom(selectedDecoder.getType())) {
-                byte[] array = ((ByteBuffer) message).array();
-                return ((Decoder.BinaryStream) getCoderInstance(session, selectedDecoder)).decode(new ByteArrayInputStream(array));
+    public Object doEncode(Session session, Object message) throws EncodeException, IOException {
+        final EncoderEntry entry = getEncoder(message.getClass());
+
+        if (entry != null) {
+            switch (entry.kind) {
+                case EncoderEntry.BINARY:
+                    return ((Encoder.Binary) getCoderInstance(session, entry.encoder, entry.slot)).encode(message);
+                case EncoderEntry.TEXT:
+                    return ((Encoder.Text) getCoderInstance(session, entry.encoder, entry.slot)).encode(message);
+                case EncoderEntry.BINARY_STREAM:
+                    final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                    ((Encoder.BinaryStream) getCoderInstance(session, entry.encoder, entry.slot)).encode(message, stream);
+                    return stream;
+                default:
+                    final Writer writer = new StringWriter();
+                    ((Encoder.TextStream) getCoderInstance(session, entry.encoder, entry.slot)).encode(message, writer);
+                    return writer;
             }
         }
 
-        return null;
+        throw new EncodeException(message, LocalizationMessages.ENCODING_FAILED());
     }
 
-    private ArrayList<CoderWrapper<Decoder>> findApplicableDecoders(Session session, Object message, boolean isString) {
-        ArrayList<CoderWrapper<Decoder>> result = new ArrayList<CoderWrapper<Decoder>>();
-
-        for (CoderWrapper<Decoder> dec : decoders) {
-            if (isString && (Decoder.Text.class.isAssignableFrom(dec.getCoderClass()))) {
-                final Decoder.Text decoder = (Decoder.Text) getCoderInstance(session, dec);
-
-                if (decoder.willDecode((String) message)) {
-                    result.add(dec);
-                }
-            } else if (!isString && (Decoder.Binary.class.isAssignableFrom(dec.getCoderClass()))) {
-                final Decoder.Binary decoder = (Decoder.Binary) getCoderInstance(session, dec);
-
-                if (decoder.willDecode((ByteBuffer) message)) {
-                    result.add(dec);
+    /**
+     * Get encoder for given type.
+     * <p/>
+     * First registered encoder which accepts the type is selected. Result is cached; cache is filled for declared
+     * types of encoders at deployment time and lazily for other types (subclasses).
+     *
+     * @param type type of encoded object.
+     * @return selected encoder or {@code null} when there is none.
+     */
+    private EncoderEntry getEncoder(Class<?> type) {
+        EncoderEntry entry = encoderCache.get(type);
+        if (entry == null) {
+            for (CoderWrapper<Encoder> enc : encoders) {
+                final int kind = EncoderEntry.getKind(enc.getCoderClass());
+                if (kind != -1 && enc.getType().isAssignableFrom(type)) {
+                    entry = new EncoderEntry(enc, kind,
+                            enc.getCoder() == null ? componentProvider.getSlot(enc.getCoderClass()) : -1);
+                    break;
                 }
-            } else if (isString && (Decoder.TextStream.class.isAssignableFrom(dec.getCoderClass()))) {
-                result.add(dec);
-            } else if (!isString && (Decoder.BinaryStream.class.isAssignableFrom(dec.getCoderClass()))) {
-                result.add(dec);
             }
-        }
 
-        return result;
-    }
-
-    public Object doEncode(Session session, Object message) throws EncodeException, IOException {
-        for (CoderWrapper<Encoder> enc : encoders) {
-            final Class<? extends Encoder> encoderClass = enc.getCoderClass();
-
-            if (Encoder.Binary.class.isAssignableFrom(encoderClass)) {
-                if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final Encoder.Binary encoder = (Encoder.Binary) getCoderInstance(session, enc);
-
-                    return encoder.encode(message);
-                }
-            } else if (Encoder.Text.class.isAssignableFrom(encoderClass)) {
-                if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final Encoder.Text encoder = (Encoder.Text) getCoderInstance(session, enc);
-
-                    return encoder.encode(message);
-                }
-            } else if (Encoder.BinaryStream.class.isAssignableFrom(encoderClass)) {
-                if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final ByteArrayOutputStream stream = new ByteArrayOutputStream();
-                    final Encoder.BinaryStream encoder = (Encoder.BinaryStream) getCoderInstance(session, enc);
-
-                    encoder.encode(message, stream);
-                    return stream;
-                }
-            } else if (Encoder.TextStream.class.isAssignableFrom(encoderClass)) {
-                if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final Writer writer = new StringWriter();
-                    final Encoder.TextStream encoder = (Encoder.TextStream) getCoderInstance(session, enc);
-
-                    encoder.encode(message, writer);
-                    return writer;
-                }
+            if (entry == null) {
+                return null;
             }
+
+            encoderCache.putIfAbsent(type, entry);
         }
 
-        throw new EncodeException(message, LocalizationMessages.ENCODING_FAILED());
+        return entry;
     }
 
     /**
@@ -546,7 +542,7 @@ public class TyrusEndpointWrapper {
         ErrorCollector collector = new ErrorCollector();
 
         final Object toCall = endpoint != null ? endpoint :
-                componentProvider.getInstance(endpointClass, session, collector);
+                componentProvider.getInstance(endpointSlot, endpointClass, session, collector);
         try {
             if (!collector.isEmpty()) {
                 throw collector.composeComprehensiveException();
@@ -598,7 +594,7 @@ public class TyrusEndpointWrapper {
                 session.setState(TyrusSession.State.RUNNING);
             }
             if (session.isWholeBinaryHandlerPresent()) {
-                session.notifyMessageHandlers(messageBytes, findApplicableDecoders(session, messageBytes, false));
+                session.notifyMessageHandlers(messageBytes);
             } else if (session.isPartialBinaryHandlerPresent()) {
                 session.notifyMessageHandlers(messageBytes, true);
             } else {
@@ -608,7 +604,7 @@ public class TyrusEndpointWrapper {
             if (!processThrowable(t, session)) {
                 ErrorCollector collector = new ErrorCollector();
                 final Object toCall = endpoint != null ? endpoint :
-                        componentProvider.getInstance(endpointClass, session, collector);
+                        componentProvider.getInstance(endpointSlot, endpointClass, session, collector);
                 if (toCall != null) {
                     if (endpoint != null) {
                         ((Endpoint) toCall).onError(session, t);
@@ -649,7 +645,7 @@ public class TyrusEndpointWrapper {
                 session.setState(TyrusSession.State.RUNNING);
             }
             if (session.isWholeTextHandlerPresent()) {
-                session.notifyMessageHandlers(messageString, findApplicableDecoders(session, messageString, true));
+                session.notifyMessageHandlers(messageString);
             } else if (session.isPartialTextHandlerPresent()) {
                 session.notifyMessageHandlers(messageString, true);
             } else {
@@ -659,7 +655,7 @@ public class TyrusEndpointWrapper {
             if (!processThrowable(t, session)) {
                 ErrorCollector collector = new ErrorCollector();
                 final Object toCall = endpoint != null ? endpoint :
-                        componentProvider.getInstance(endpointClass, session, collector);
+                        componentProvider.getInstance(endpointSlot, endpointClass, session, collector);
                 if (toCall != null) {
                     if (endpoint != null) {
                         ((Endpoint) toCall).onError(session, t);
@@ -742,7 +738,7 @@ public class TyrusEndpointWrapper {
                         session.getTextBuffer().appendMessagePart(partialString);
                         if (last) {
                             final String message = session.getTextBuffer().getBufferedContent();
-                            session.notifyMessageHandlers(message, findApplicableDecoders(session, message, true));
+                            session.notifyMessageHandlers(message);
                             session.setState(TyrusSession.State.RUNNING);
                         }
                         break;
@@ -757,7 +753,7 @@ public class TyrusEndpointWrapper {
             if (!processThrowable(t, session)) {
                 ErrorCollector collector = new ErrorCollector();
                 final Object toCall = endpoint != null ? endpoint :
-                        componentProvider.getInstance(endpointClass, session, collector);
+                        componentProvider.getInstance(endpointSlot, endpointClass, session, collector);
                 if (toCall != null) {
                     if (endpoint != null) {
                         ((Endpoint) toCall).onError(session, t);
@@ -840,7 +836,7 @@ public class TyrusEndpointWrapper {
                         session.getBinaryBuffer().appendMessagePart(partialBytes);
                         if (last) {
                             ByteBuffer bb = session.getBinaryBuffer().getBufferedContent();
-                            session.notifyMessageHandlers(bb, findApplicableDecoders(session, bb, false));
+                            session.notifyMessageHandlers(bb);
                             session.setState(TyrusSession.State.RUNNING);
                         }
                         break;
@@ -855,7 +851,7 @@ public class TyrusEndpointWrapper {
             if (!processThrowable(t, session)) {
                 ErrorCollector collector = new ErrorCollector();
                 final Object toCall = endpoint != null ? endpoint :
-                        componentProvider.getInstance(endpointClass, session, collector);
+                        componentProvider.getInstance(endpointSlot, endpointClass, session, collector);
                 if (toCall != null) {
                     if (endpoint != null) {
                         ((Endpoint) toCall).onError(session, t);
@@ -978,7 +974,7 @@ public class TyrusEndpointWrapper {
         ErrorCollector collector = new ErrorCollector();
 
         final Object toCall = endpoint != null ? endpoint :
-                componentProvider.getInstance(endpointClass, session, collector);
+                componentProvider.getInstance(endpointSlot, endpointClass, session, collector);
 
         try {
             if (!collector.isEmpty()) {
@@ -1016,6 +1012,7 @@ public class TyrusEndpointWrapper {
             }
 
             webSocketToSession.remove(socket);
+            session.unsubscribeAll();
             componentProvider.removeSession(session);
 
             if (onCloseListener != null) {
@@ -1050,43 +1047,7 @@ public class TyrusEndpointWrapper {
             clusterContext.broadcastText(getEndpointPath(), message);
         }
 
-        final Map<Session, Future<?>> futures = new HashMap<Session, Future<?>>();
-        byte[] frame = null;
-
-        for (Map.Entry<TyrusWebSocket, TyrusSession> e : webSocketToSession.entrySet()) {
-            if (e.getValue().isOpen()) {
-
-                final TyrusWebSocket webSocket = e.getKey();
-                final ProtocolHandler protocolHandler = webSocket.getProtocolHandler();
-
-                // we need to let protocol handler execute extensions if there are any
-                if (protocolHandler.hasExtensions()) {
-                    byte[] tempFrame;
-
-                    final Frame dataFrame = new TextFrame(message, false, true);
-                    final ByteBuffer byteBuffer = webSocket.getProtocolHandler().frame(dataFrame);
-                    tempFrame = new byte[byteBuffer.remaining()];
-                    byteBuffer.get(tempFrame);
-
-                    final Future<Frame> frameFuture = webSocket.sendRawFrame(ByteBuffer.wrap(tempFrame));
-                    futures.put(e.getValue(), frameFuture);
-
-                } else {
-
-                    if (frame == null) {
-                        final Frame dataFrame = new TextFrame(message, false, true);
-                        final ByteBuffer byteBuffer = webSocket.getProtocolHandler().frame(dataFrame);
-                        frame = new byte[byteBuffer.remaining()];
-                        byteBuffer.get(frame);
-                    }
-
-                    final Future<Frame> frameFuture = webSocket.sendRawFrame(ByteBuffer.wrap(frame));
-                    futures.put(e.getValue(), frameFuture);
-                }
-            }
-        }
-
-        return futures;
+        return broadcast(new PreparedMessage(message));
     }
 
     /**
@@ -1102,49 +1063,145 @@ public class TyrusEndpointWrapper {
 
     private Map<Session, Future<?>> broadcast(final ByteBuffer message, boolean local) {
 
-        final Map<Session, Future<?>> futures = new HashMap<Session, Future<?>>();
-        byte[] frame = null;
+        if (!local && clusterContext != null) {
+            clusterContext.broadcastBinary(getEndpointPath(), Utils.getRemainingArray(message.duplicate()));
+        }
 
-        byte[] byteArrayMessage = Utils.getRemainingArray(message);
+        return broadcast(new PreparedMessage(message));
+    }
 
-        if (!local && clusterContext != null) {
-            clusterContext.broadcastBinary(getEndpointPath(), byteArrayMessage);
+    /**
+     * Broadcasts text message to all connected clients without waiting for the message to be passed to all of them.
+     * <p/>
+     * Large sets of sessions are processed in parallel by the container executor service; the calling thread does not
+     * wait for them.
+     *
+     * @param message message to be broadcasted.
+     * @return aggregate status of the broadcast. Messages send from other cluster nodes are not included.
+     */
+    public BroadcastResult broadcastAsync(final String message) {
+        if (clusterContext != null) {
+            clusterContext.broadcastText(getEndpointPath(), message);
         }
 
-        for (Map.Entry<TyrusWebSocket, TyrusSession> e : webSocketToSession.entrySet()) {
-            if (e.getValue().isOpen()) {
+        return broadcaster.broadcastAsync(webSocketToSession.values(), new PreparedMessage(message));
+    }
 
-                final TyrusWebSocket webSocket = e.getKey();
-                final ProtocolHandler protocolHandler = webSocket.getProtocolHandler();
+    /**
+     * Broadcasts binary message to all connected clients without waiting for the message to be passed to all of them.
+     * <p/>
+     * Large sets of sessions are processed in parallel by the container executor service; the calling thread does not
+     * wait for them.
+     *
+     * @param message message to be broadcasted.
+     * @return aggregate status of the broadcast. Messages send from other cluster nodes are not included.
+     */
+    public BroadcastResult broadcastAsync(final ByteBuffer message) {
+        if (clusterContext != null) {
+            clusterContext.broadcastBinary(getEndpointPath(), Utils.getRemainingArray(message.duplicate()));
+        }
 
-                // we need to let protocol handler execute extensions if there are any
-                if (protocolHandler.hasExtensions()) {
-                    byte[] tempFrame;
+        return broadcaster.broadcastAsync(webSocketToSession.values(), new PreparedMessage(message));
+    }
 
-                    final Frame dataFrame = new BinaryFrame(byteArrayMessage, false, true);
-                    final ByteBuffer byteBuffer = webSocket.getProtocolHandler().frame(dataFrame);
-                    tempFrame = new byte[byteBuffer.remaining()];
-                    byteBuffer.get(tempFrame);
+    /**
+     * Publish text message to all sessions subscribed to given topic.
+     * <p/>
+     * Message is framed once for all subscribers; large sets of subscribers are processed in parallel by the container
+     * executor service. Message is forwarded to other cluster nodes.
+     *
+     * @param topic   topic to publish the message to.
+     * @param message message to be published.
+     * @return aggregate status of the message. Messages send from other cluster nodes are not included.
+     * @see TyrusSession#subscribe(String)
+     */
+    public BroadcastResult publish(final String topic, final String message) {
+        if (clusterContext != null) {
+            clusterContext.publishText(getEndpointPath(), topic, message);
+        }
 
-                    final Future<Frame> frameFuture = webSocket.sendRawFrame(ByteBuffer.wrap(tempFrame));
-                    futures.put(e.getValue(), frameFuture);
+        return publish(topic, new PreparedMessage(message));
+    }
 
-                } else {
+    /**
+     * Publish binary message to all sessions subscribed to given topic.
+     * <p/>
+     * See {@link #publish(String, String)}.
+     *
+     * @param topic   topic to publish the message to.
+     * @param message message to be published.
+     * @return aggregate status of the message. Messages send from other cluster nodes are not included.
+     */
+    public BroadcastResult publish(final String topic, final ByteBuffer message) {
+        if (clusterContext != null) {
+            clusterContext.publishBinary(getEndpointPath(), topic, Utils.getRemainingArray(message.duplicate()));
+        }
 
-                    if (frame == null) {
-                        final Frame dataFrame = new BinaryFrame(byteArrayMessage, false, true);
-                        final ByteBuffer byteBuffer = webSocket.getProtocolHandler().frame(dataFrame);
-                        frame = new byte[byteBuffer.remaining()];
-                        byteBuffer.get(frame);
-                    }
+        return publish(topic, new PreparedMessage(message));
+    }
+
+    private BroadcastResult publish(final String topic, final PreparedMessage message) {
+        final Set<TyrusSession> subscribers = topics.get(topic);
+        return broadcaster.broadcastAsync(subscribers == null ? Collections.<TyrusSession>emptySet() : subscribers, message);
+    }
 
-                    final Future<Frame> frameFuture = webSocket.sendRawFrame(ByteBuffer.wrap(frame));
-                    futures.put(e.getValue(), frameFuture);
+    /**
+     * Add session to subscribers of given topic.
+     *
+     * @param session session to be added.
+     * @param topic   topic.
+     */
+    void subscribe(TyrusSession session, String topic) {
+        while (true) {
+            Set<TyrusSession> subscribers = topics.get(topic);
+            if (subscribers == null) {
+                final Set<TyrusSession> newSubscribers =
+                        Collections.newSetFromMap(new ConcurrentHashMap<TyrusSession, Boolean>());
+                subscribers = topics.putIfAbsent(topic, newSubscribers);
+                if (subscribers == null) {
+                    subscribers = newSubscribers;
                 }
             }
+
+            subscribers.add(session);
+
+            // set might have been removed as empty by concurrent unsubscribe, see below.
+            if (topics.get(topic) == subscribers) {
+                return;
+            }
         }
+    }
 
-        return futures;
+    /**
+     * Remove session from subscribers of given topic. Topic without subscribers is removed.
+     *
+     * @param session session to be removed.
+     * @param topic   topic.
+     */
+    void unsubscribe(TyrusSession session, String topic) {
+        final Set<TyrusSession> subscribers = topics.get(topic);
+        if (subscribers != null && subscribers.remove(session) && subscribers.isEmpty()
+                && topics.remove(topic, subscribers)) {
+            // sessions which subscribed concurrently are moved to a new set.
+            for (TyrusSession subscriber : subscribers) {
+                if (subscriber.getSubscriptions().contains(topic)) {
+                    subscribe(subscriber, topic);
+                }
+            }
+        }
+    }
+
+    /**
+     * Send prepared message to all open sessions of this endpoint.
+     * <p/>
+     * Message is framed once for all sessions with the same configuration of negotiated extensions. Large sets of
+     * sessions are split into shards which are processed in parallel.
+     *
+     * @param message message to be sent.
+     * @return map of sessions and futures for user to get the information about status of the message.
+     */
+    private Map<Session, Future<?>> broadcast(final PreparedMessage message) {
+        return broadcaster.broadcast(webSocketToSession.values(), message);
     }
 
     /**
@@ -1156,6 +1213,15 @@ public class TyrusEndpointWrapper {
         return (List<Decoder>) (List<?>) decoders;
     }
 
+    /**
+     * Registered decoders.
+     *
+     * @return {@link List} of registered decoders.
+     */
+    List<CoderWrapper<Decoder>> getDecoderWrappers() {
+        return decoders;
+    }
+
     private Class<?> getEncoderClassType(Class<?> encoderClass) {
         if (Encoder.Binary.class.isAssignableFrom(encoderClass)) {
             return ReflectionHelper.getClassType(encoderClass, Encoder.Binary.class);
@@ -1295,4 +1361,39 @@ public class TyrusEndpointWrapper {
          */
         void onClose(CloseReason closeReason);
     }
+
+    /**
+     * Encoder selected for a type.
+     */
+    private static class EncoderEntry {
+
+        private static final int BINARY = 0;
+        private static final int TEXT = 1;
+        private static final int BINARY_STREAM = 2;
+        private static final int TEXT_STREAM = 3;
+
+        private final CoderWrapper<Encoder> encoder;
+        private final int kind;
+        // slot of encoder instances, -1 when the encoder was registered as an instance.
+        private final int slot;
+
+        private EncoderEntry(CoderWrapper<Encoder> encoder, int kind, int slot) {
+            this.encoder = encoder;
+            this.kind = kind;
+            this.slot = slot;
+        }
+
+        private static int getKind(Class<?> encoderClass) {
+            if (Encoder.Binary.class.isAssignableFrom(encoderClass)) {
+                return BINARY;
+            } else if (Encoder.Text.class.isAssignableFrom(encoderClass)) {
+                return TEXT;
+            } else if (Encoder.BinaryStream.class.isAssignableFrom(encoderClass)) {
+                return BINARY_STREAM;
+            } else if (Encoder.TextStream.class.isAssignableFrom(encoderClass)) {
+                return TEXT_STREAM;
+            }
+            return -1;
+        }
+    }
 }
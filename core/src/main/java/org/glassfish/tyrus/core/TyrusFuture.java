@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2013-2014 Oracle and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -40,22 +40,40 @@
 
 package org.glassfish.tyrus.core;
 
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Simple {@link Future} implementation.
+ * <p/>
+ * Completion is a single CAS; threads waiting in {@link #get()} are parked and unparked only when some thread
+ * actually waits, so there is no synchronizer allocated per instance.
  *
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
  */
 public class TyrusFuture<T> implements Future<T> {
 
-    private volatile T result;
-    private volatile Throwable throwable = null;
-    private final CountDownLatch latch = new CountDownLatch(1);
+    /**
+     * Outcome representing {@code null} result.
+     */
+    private static final Object NULL_RESULT = new Object();
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<TyrusFuture, Object> OUTCOME_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(TyrusFuture.class, Object.class, "outcome");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<TyrusFuture, Waiter> WAITERS_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(TyrusFuture.class, Waiter.class, "waiters");
+
+    /**
+     * {@code null} until completed; then the result, {@link #NULL_RESULT} or {@link Failure}.
+     */
+    private volatile Object outcome = null;
+    private volatile Waiter waiters = null;
 
     @Override
     public boolean cancel(boolean mayInterruptIfRunning) {
@@ -69,27 +87,30 @@ public class TyrusFuture<T> implements Future<T> {
 
     @Override
     public boolean isDone() {
-        return (latch.getCount() == 0);
+        return outcome != null;
     }
 
     @Override
     public T get() throws InterruptedException, ExecutionException {
-        latch.await();
-
-        if (throwable != null) {
-            throw new ExecutionException(throwable);
+        Object o = outcome;
+        if (o == null) {
+            o = await(false, 0);
         }
 
-        return result;
+        return report(o);
     }
 
     @Override
     public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-        if (latch.await(timeout, unit) && throwable != null) {
-            throw new ExecutionException(throwable);
+        Object o = outcome;
+        if (o == null) {
+            o = await(true, unit.toNanos(timeout));
+            if (o == null) {
+                throw new TimeoutException();
+            }
         }
 
-        return result;
+        return report(o);
     }
 
     /**
@@ -98,10 +119,7 @@ public class TyrusFuture<T> implements Future<T> {
      * @param result result
      */
     public void setResult(T result) {
-        if (latch.getCount() == 1) {
-            this.result = result;
-            latch.countDown();
-        }
+        complete(result == null ? NULL_RESULT : result);
     }
 
     /**
@@ -110,9 +128,97 @@ public class TyrusFuture<T> implements Future<T> {
      * @param throwable throwable.
      */
     public void setFailure(Throwable throwable) {
-        if (latch.getCount() == 1) {
+        complete(new Failure(throwable));
+    }
+
+    private void complete(Object o) {
+        if (OUTCOME_UPDATER.compareAndSet(this, null, o)) {
+            releaseWaiters();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T report(Object o) throws ExecutionException {
+        if (o == NULL_RESULT) {
+            return null;
+        } else if (o instanceof Failure) {
+            throw new ExecutionException(((Failure) o).throwable);
+        }
+
+        return (T) o;
+    }
+
+    /**
+     * Wait for completion.
+     *
+     * @return outcome or {@code null} when timed out.
+     */
+    private Object await(boolean timed, long nanos) throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        Waiter waiter = null;
+        boolean queued = false;
+
+        while (true) {
+            if (Thread.interrupted()) {
+                if (waiter != null) {
+                    waiter.thread = null;
+                }
+                throw new InterruptedException();
+            }
+
+            final Object o = outcome;
+            if (o != null) {
+                if (waiter != null) {
+                    waiter.thread = null;
+                }
+                return o;
+            }
+
+            if (waiter == null) {
+                waiter = new Waiter();
+            } else if (!queued) {
+                waiter.next = waiters;
+                queued = WAITERS_UPDATER.compareAndSet(this, waiter.next, waiter);
+            } else if (timed) {
+                nanos = deadline - System.nanoTime();
+                if (nanos <= 0L) {
+                    waiter.thread = null;
+                    return outcome;
+                }
+                LockSupport.parkNanos(this, nanos);
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    private void releaseWaiters() {
+        // outcome is already set; threads which are not queued yet won't park.
+        if (waiters == null) {
+            return;
+        }
+
+        Waiter waiter = WAITERS_UPDATER.getAndSet(this, null);
+        while (waiter != null) {
+            final Thread thread = waiter.thread;
+            if (thread != null) {
+                waiter.thread = null;
+                LockSupport.unpark(thread);
+            }
+            waiter = waiter.next;
+        }
+    }
+
+    private static final class Failure {
+        private final Throwable throwable;
+
+        private Failure(Throwable throwable) {
             this.throwable = throwable;
-            latch.countDown();
         }
     }
+
+    private static final class Waiter {
+        private volatile Thread thread = Thread.currentThread();
+        private Waiter next;
+    }
 }
@@ -56,6 +56,8 @@ import javax.websocket.EncodeException;
 import javax.websocket.SendHandler;
 import javax.websocket.SendResult;
 
+import org.glassfish.tyrus.core.frame.BinaryFrame;
+import org.glassfish.tyrus.core.frame.TextFrame;
 import org.glassfish.tyrus.core.l10n.LocalizationMessages;
 import static org.glassfish.tyrus.core.Utils.checkNotNull;
 
@@ -102,7 +104,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         @Override
         public void sendBinary(ByteBuffer data) throws IOException {
             checkNotNull(data, LocalizationMessages.ARGUMENT_NOT_NULL("data"));
-            final Future<?> future = webSocket.sendBinary(Utils.getRemainingArray(data));
+            final Future<?> future = webSocket.sendBinary(data);
             try {
                 processFuture(future);
             } finally {
@@ -124,7 +126,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         @Override
         public void sendBinary(ByteBuffer partialByte, boolean isLast) throws IOException {
             checkNotNull(partialByte, LocalizationMessages.ARGUMENT_NOT_NULL("partialByte"));
-            final Future<?> future = webSocket.sendBinary(Utils.getRemainingArray(partialByte), isLast);
+            final Future<?> future = webSocket.sendBinary(partialByte, isLast);
             try {
                 processFuture(future);
             } finally {
@@ -135,13 +137,19 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         /**
          * Wait for the future to be completed.
          * <p/>
-         * {@link java.util.concurrent.Future#get()} will be invoked and exception processed (if thrown).
+         * {@link java.util.concurrent.Future#get()} will be invoked and exception processed (if thrown). When batching
+         * is allowed, only already completed future is processed, since batched messages are written later.
          *
          * @param future to be processed.
          * @throws IOException when {@link java.io.IOException} is the cause of thrown {@link java.util.concurrent.ExecutionException}
          *                     it will be extracted and rethrown. Otherwise whole ExecutionException will be rethrown wrapped in {@link java.io.IOException}.
          */
         private void processFuture(Future<?> future) throws IOException {
+            if (getBatchingAllowed() && !future.isDone()) {
+                // batched message is written when the batch is flushed.
+                return;
+            }
+
             try {
                 future.get();
             } catch (InterruptedException e) {
@@ -158,9 +166,12 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         @Override
         public void sendObject(Object data) throws IOException, EncodeException {
             checkNotNull(data, LocalizationMessages.ARGUMENT_NOT_NULL("data"));
-            final Future<?> future = sendSyncObject(data);
+            final Future<?> future = sendSyncObject(data, false);
             try {
-                future.get();
+                // batched message is written when the batch is flushed, known failure is reported right away.
+                if (!getBatchingAllowed() || future.isDone()) {
+                    future.get();
+                }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             } catch (ExecutionException e) {
@@ -268,15 +279,15 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
 
             switch (type) {
                 case TEXT:
-                    result = webSocket.sendText((String) message);
+                    result = webSocket.sendAsync(new TextFrame((String) message, false, true));
                     break;
 
                 case BINARY:
-                    result = webSocket.sendBinary(Utils.getRemainingArray((ByteBuffer) message));
+                    result = webSocket.sendAsync(new BinaryFrame((ByteBuffer) message, false, true));
                     break;
 
                 case OBJECT:
-                    result = sendSyncObject(message);
+                    result = sendSyncObject(message, true);
                     break;
             }
 
@@ -325,11 +336,11 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         private void sendAsync(final Object message, final SendHandler handler, final AsyncMessageType type) {
             switch (type) {
                 case TEXT:
-                    webSocket.sendText((String) message, handler);
+                    webSocket.sendAsync(new TextFrame((String) message, false, true), handler);
                     break;
 
                 case BINARY:
-                    webSocket.sendBinary(Utils.getRemainingArray((ByteBuffer) message), handler);
+                    webSocket.sendAsync(new BinaryFrame((ByteBuffer) message, false, true), handler);
                     break;
 
                 case OBJECT:
@@ -345,10 +356,18 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         }
     }
 
+    /**
+     * Encode and send an object.
+     *
+     * @param o     object to be sent.
+     * @param async {@code true} when sent by {@link javax.websocket.RemoteEndpoint.Async}, so the send timeout is
+     *              applied.
+     * @return {@link Future} which could be used to control/check the sending completion state.
+     */
     @SuppressWarnings("unchecked")
-    Future<?> sendSyncObject(Object o) {
+    Future<?> sendSyncObject(Object o, boolean async) {
         if (o instanceof String) {
-            return webSocket.sendText((String) o);
+            return sendWholeText((String) o, async);
         } else {
             Object toSend;
             try {
@@ -383,27 +402,35 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
             }
 
             if (toSend instanceof String) {
-                return webSocket.sendText((String) toSend);
+                return sendWholeText((String) toSend, async);
             } else if (toSend instanceof ByteBuffer) {
-                return webSocket.sendBinary(Utils.getRemainingArray((ByteBuffer) toSend));
+                return sendWholeBinary((ByteBuffer) toSend, async);
             } else if (toSend instanceof StringWriter) {
                 StringWriter writer = (StringWriter) toSend;
                 StringBuffer sb = writer.getBuffer();
-                return webSocket.sendText(sb.toString());
+                return sendWholeText(sb.toString(), async);
             } else if (toSend instanceof ByteArrayOutputStream) {
                 ByteArrayOutputStream baos = (ByteArrayOutputStream) toSend;
-                return webSocket.sendBinary(baos.toByteArray());
+                return sendWholeBinary(ByteBuffer.wrap(baos.toByteArray()), async);
             }
         }
 
         return null;
     }
 
+    private Future<?> sendWholeText(String text, boolean async) {
+        return async ? webSocket.sendAsync(new TextFrame(text, false, true)) : webSocket.sendText(text);
+    }
+
+    private Future<?> sendWholeBinary(ByteBuffer data, boolean async) {
+        return async ? webSocket.sendAsync(new BinaryFrame(data, false, true)) : webSocket.sendBinary(data);
+    }
+
     // TODO: naming
     @SuppressWarnings("unchecked")
     void sendSyncObject(Object o, SendHandler handler) {
         if (o instanceof String) {
-            webSocket.sendText((String) o, handler);
+            webSocket.sendAsync(new TextFrame((String) o, false, true), handler);
         } else {
             Object toSend = null;
             try {
@@ -413,16 +440,16 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
             }
 
             if (toSend instanceof String) {
-                webSocket.sendText((String) toSend, handler);
+                webSocket.sendAsync(new TextFrame((String) toSend, false, true), handler);
             } else if (toSend instanceof ByteBuffer) {
-                webSocket.sendBinary(Utils.getRemainingArray((ByteBuffer) toSend), handler);
+                webSocket.sendAsync(new BinaryFrame((ByteBuffer) toSend, false, true), handler);
             } else if (toSend instanceof StringWriter) {
                 StringWriter writer = (StringWriter) toSend;
                 StringBuffer sb = writer.getBuffer();
-                webSocket.sendText(sb.toString(), handler);
+                webSocket.sendAsync(new TextFrame(sb.toString(), false, true), handler);
             } else if (toSend instanceof ByteArrayOutputStream) {
                 ByteArrayOutputStream baos = (ByteArrayOutputStream) toSend;
-                webSocket.sendBinary(baos.toByteArray(), handler);
+                webSocket.sendAsync(new BinaryFrame(baos.toByteArray(), false, true), handler);
             }
         }
     }
@@ -450,19 +477,35 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         return "Wrapped: " + getClass().getSimpleName();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Batching mode is shared by {@link javax.websocket.RemoteEndpoint.Basic} and
+     * {@link javax.websocket.RemoteEndpoint.Async} of one session. Batched messages are written when
+     * {@link #flushBatch()} is called, when the batch is full or after short linger time (see
+     * {@link TyrusWebSocketEngine#BATCH_SIZE} and {@link TyrusWebSocketEngine#BATCH_LINGER}).
+     */
     @Override
-    public void setBatchingAllowed(boolean allowed) {
-        // TODO: Implement.
+    public void setBatchingAllowed(boolean allowed) throws IOException {
+        try {
+            webSocket.getProtocolHandler().setBatchingAllowed(allowed, session.getScheduledExecutorService());
+        } catch (RuntimeException e) {
+            throw new IOException(e);
+        }
     }
 
     @Override
     public boolean getBatchingAllowed() {
-        return false;  // TODO: Implement.
+        return webSocket.getProtocolHandler().isBatchingAllowed();
     }
 
     @Override
-    public void flushBatch() {
-        // TODO: Implement.
+    public void flushBatch() throws IOException {
+        try {
+            webSocket.getProtocolHandler().flushBatch();
+        } catch (RuntimeException e) {
+            throw new IOException(e);
+        }
     }
 
     public void close(CloseReason cr) {
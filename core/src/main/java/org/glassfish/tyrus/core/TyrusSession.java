@@ -40,8 +40,10 @@
 package org.glassfish.tyrus.core;
 
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.io.StringWriter;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
@@ -50,10 +52,13 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -64,18 +69,20 @@ import java.util.logging.Logger;
 
 import javax.websocket.CloseReason;
 import javax.websocket.DecodeException;
-import javax.websocket.Decoder;
+import javax.websocket.EncodeException;
 import javax.websocket.Extension;
 import javax.websocket.MessageHandler;
 import javax.websocket.PongMessage;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
 import javax.websocket.Session;
 import javax.websocket.WebSocketContainer;
 
 import org.glassfish.tyrus.core.cluster.ClusterContext;
 import org.glassfish.tyrus.core.cluster.ClusterSession;
 import org.glassfish.tyrus.core.cluster.SessionEventListener;
-import org.glassfish.tyrus.core.coder.CoderWrapper;
 import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+import static org.glassfish.tyrus.core.Utils.checkNotNull;
 
 /**
  * Implementation of the {@link Session}.
@@ -89,7 +96,20 @@ public class TyrusSession implements Session {
 
     private static final Logger LOGGER = Logger.getLogger(TyrusSession.class.getName());
 
+    /**
+     * Logs failures of conflated messages, which have no other way to be reported.
+     */
+    private static final SendHandler CONFLATED_SEND_HANDLER = new SendHandler() {
+        @Override
+        public void onResult(SendResult result) {
+            if (!result.isOK()) {
+                LOGGER.log(Level.FINE, result.getException().getMessage(), result.getException());
+            }
+        }
+    };
+
     private final WebSocketContainer container;
+    private final TyrusWebSocket webSocket;
     private final TyrusEndpointWrapper endpointWrapper;
     private final TyrusRemoteEndpoint.Basic basicRemote;
     private final TyrusRemoteEndpoint.Async asyncRemote;
@@ -104,6 +124,7 @@ public class TyrusSession implements Session {
     private final String connectionId;
     private final Map<String, Object> userProperties;
     private final MessageHandlerManager handlerManager;
+    private volatile MessageDispatchTable dispatchTable;
     private final AtomicReference<State> state = new AtomicReference<State>(State.RUNNING);
     private final TextBuffer textBuffer = new TextBuffer();
     private final BinaryBuffer binaryBuffer = new BinaryBuffer();
@@ -119,6 +140,15 @@ public class TyrusSession implements Session {
     private ScheduledExecutorService service;
     private ReaderBuffer readerBuffer;
     private InputStreamBuffer inputStreamBuffer;
+    private volatile WritabilityListener writabilityListener = null;
+
+    // key -> latest message (String or ByteBuffer), see sendConflated(...)
+    private final Map<Object, Object> conflatedMessages = new LinkedHashMap<Object, Object>();
+    // guarded by conflatedMessages; set while some thread is sending pending conflated messages.
+    private boolean sendingConflated = false;
+    private final Set<String> subscriptions = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // endpoint and coder instances of this session, see ComponentProviderService#getSlot(Class).
+    private final InstanceSlots instanceSlots = new InstanceSlots();
 
     TyrusSession(WebSocketContainer container, TyrusWebSocket socket, TyrusEndpointWrapper endpointWrapper,
                  String subprotocol, List<Extension> extensions, boolean isSecure,
@@ -126,6 +156,7 @@ public class TyrusSession implements Session {
                  Map<String, List<String>> requestParameterMap, final ClusterContext clusterContext,
                  String connectionId) {
         this.container = container;
+        this.webSocket = socket;
         this.endpointWrapper = endpointWrapper;
         this.negotiatedExtensions = extensions == null ? Collections.<Extension>emptyList() : Collections.unmodifiableList(extensions);
         this.negotiatedSubprotocol = subprotocol == null ? "" : subprotocol;
@@ -136,14 +167,33 @@ public class TyrusSession implements Session {
         this.basicRemote = new TyrusRemoteEndpoint.Basic(this, socket, endpointWrapper);
         this.asyncRemote = new TyrusRemoteEndpoint.Async(this, socket, endpointWrapper);
         this.handlerManager = MessageHandlerManager.fromDecoderInstances(endpointWrapper.getDecoders());
+        this.dispatchTable = new MessageDispatchTable(endpointWrapper, this, endpointWrapper.getDecoderWrappers(),
+                new MessageHandler[0], new Class<?>[0]);
         this.userPrincipal = principal;
         this.requestParameterMap = requestParameterMap == null ? Collections.<String, List<String>>emptyMap() : Collections.unmodifiableMap(new HashMap<String, List<String>>(requestParameterMap));
         this.connectionId = connectionId;
 
+        socket.getProtocolHandler().setWritabilityListener(this, new WritabilityListener() {
+            @Override
+            public void onWritabilityChanged(Session session, boolean writable) {
+                if (writable) {
+                    sendConflatedMessages();
+                }
+
+                final WritabilityListener listener = writabilityListener;
+                if (listener != null) {
+                    listener.onWritabilityChanged(session, writable);
+                }
+            }
+        });
+
         if (container != null) {
             maxTextMessageBufferSize = container.getDefaultMaxTextMessageBufferSize();
             maxBinaryMessageBufferSize = container.getDefaultMaxBinaryMessageBufferSize();
             service = ((ExecutorServiceProvider) container).getScheduledExecutorService();
+            if (container instanceof BaseContainer) {
+                socket.getProtocolHandler().setSendTimer(((BaseContainer) container).getTimer());
+            }
             setMaxIdleTimeout(container.getDefaultMaxSessionIdleTimeout());
         }
 
@@ -292,6 +342,7 @@ public class TyrusSession implements Session {
         checkConnectionState(State.CLOSED);
         synchronized (handlerManager) {
             handlerManager.addMessageHandler(handler);
+            updateDispatchTable();
         }
     }
 
@@ -307,6 +358,7 @@ public class TyrusSession implements Session {
         checkConnectionState(State.CLOSED);
         synchronized (handlerManager) {
             handlerManager.removeMessageHandler(handler);
+            updateDispatchTable();
         }
     }
 
@@ -365,6 +417,324 @@ public class TyrusSession implements Session {
         return endpointWrapper.broadcast(message);
     }
 
+    /**
+     * Broadcasts text message to all connected clients without waiting for the message to be passed to all of them.
+     *
+     * @param message message to be broadcasted.
+     * @return aggregate status of the broadcast.
+     */
+    public BroadcastResult broadcastAsync(String message) {
+        return endpointWrapper.broadcastAsync(message);
+    }
+
+    /**
+     * Broadcasts binary message to all connected clients without waiting for the message to be passed to all of them.
+     *
+     * @param message message to be broadcasted.
+     * @return aggregate status of the broadcast.
+     */
+    public BroadcastResult broadcastAsync(ByteBuffer message) {
+        return endpointWrapper.broadcastAsync(message);
+    }
+
+    /**
+     * Subscribe this session to given topic.
+     * <p/>
+     * Messages published to the topic (see {@link #publish(String, String)}) are sent to all subscribed sessions of
+     * the endpoint. Session is unsubscribed from all topics when it is closed.
+     *
+     * @param topic topic to subscribe to.
+     */
+    public void subscribe(String topic) {
+        checkNotNull(topic, LocalizationMessages.ARGUMENT_NOT_NULL("topic"));
+        checkConnectionState(State.CLOSED);
+
+        if (subscriptions.add(topic)) {
+            endpointWrapper.subscribe(this, topic);
+        }
+
+        // closed concurrently, subscriptions might have been already cleaned up.
+        if (!isOpen()) {
+            unsubscribeAll();
+        }
+    }
+
+    /**
+     * Unsubscribe this session from given topic.
+     *
+     * @param topic topic to unsubscribe from.
+     */
+    public void unsubscribe(String topic) {
+        checkNotNull(topic, LocalizationMessages.ARGUMENT_NOT_NULL("topic"));
+
+        if (subscriptions.remove(topic)) {
+            endpointWrapper.unsubscribe(this, topic);
+        }
+    }
+
+    /**
+     * Get topics this session is subscribed to.
+     *
+     * @return unmodifiable set of topics.
+     */
+    public Set<String> getSubscriptions() {
+        return Collections.unmodifiableSet(subscriptions);
+    }
+
+    /**
+     * Publish text message to all sessions subscribed to given topic.
+     *
+     * @param topic   topic to publish the message to.
+     * @param message message to be published.
+     * @return aggregate status of the message.
+     * @see TyrusEndpointWrapper#publish(String, String)
+     */
+    public BroadcastResult publish(String topic, String message) {
+        checkNotNull(topic, LocalizationMessages.ARGUMENT_NOT_NULL("topic"));
+        checkNotNull(message, LocalizationMessages.ARGUMENT_NOT_NULL("message"));
+        return endpointWrapper.publish(topic, message);
+    }
+
+    /**
+     * Publish binary message to all sessions subscribed to given topic.
+     *
+     * @param topic   topic to publish the message to.
+     * @param message message to be published.
+     * @return aggregate status of the message.
+     * @see TyrusEndpointWrapper#publish(String, ByteBuffer)
+     */
+    public BroadcastResult publish(String topic, ByteBuffer message) {
+        checkNotNull(topic, LocalizationMessages.ARGUMENT_NOT_NULL("topic"));
+        checkNotNull(message, LocalizationMessages.ARGUMENT_NOT_NULL("message"));
+        return endpointWrapper.publish(topic, message);
+    }
+
+    /**
+     * Create prepared message from given object.
+     * <p/>
+     * {@link String} and {@link ByteBuffer} are used directly, other objects are encoded by encoders of this session's
+     * endpoint. Prepared message can be sent to any session, see {@link #sendPrepared(PreparedMessage)}.
+     *
+     * @param message message to be prepared.
+     * @return prepared message.
+     * @throws EncodeException when the message cannot be encoded.
+     * @throws IOException     when the encoder fails to write the message.
+     */
+    public PreparedMessage prepareMessage(Object message) throws EncodeException, IOException {
+        checkNotNull(message, LocalizationMessages.ARGUMENT_NOT_NULL("message"));
+
+        final Object encoded = message instanceof String || message instanceof ByteBuffer ? message : endpointWrapper.doEncode(this, message);
+        if (encoded instanceof String) {
+            return new PreparedMessage((String) encoded);
+        } else if (encoded instanceof ByteBuffer) {
+            return new PreparedMessage((ByteBuffer) encoded);
+        } else if (encoded instanceof StringWriter) {
+            return new PreparedMessage(((StringWriter) encoded).toString());
+        } else if (encoded instanceof ByteArrayOutputStream) {
+            return new PreparedMessage(ByteBuffer.wrap(((ByteArrayOutputStream) encoded).toByteArray()));
+        }
+
+        throw new EncodeException(message, LocalizationMessages.ENCODING_FAILED());
+    }
+
+    /**
+     * Send prepared message.
+     * <p/>
+     * The message is not encoded again; its serialized frame is shared with all other sessions with the same
+     * negotiated extensions configuration.
+     *
+     * @param message message to be sent.
+     * @return future which could be used to wait for the message to be sent.
+     */
+    public Future<?> sendPrepared(PreparedMessage message) {
+        checkNotNull(message, LocalizationMessages.ARGUMENT_NOT_NULL("message"));
+        restartIdleTimeoutExecutor();
+        return webSocket.sendPrepared(message);
+    }
+
+    /**
+     * Send prepared message.
+     *
+     * @param message message to be sent.
+     * @param handler notified when the message is sent.
+     * @see #sendPrepared(PreparedMessage)
+     */
+    public void sendPrepared(PreparedMessage message, SendHandler handler) {
+        checkNotNull(message, LocalizationMessages.ARGUMENT_NOT_NULL("message"));
+        checkNotNull(handler, LocalizationMessages.ARGUMENT_NOT_NULL("handler"));
+        restartIdleTimeoutExecutor();
+        webSocket.sendPrepared(message, handler);
+    }
+
+    /**
+     * Get amount of outbound data which were sent (or batched) and not written to the connection yet.
+     *
+     * @return number of buffered bytes.
+     */
+    public long getBufferedAmount() {
+        return webSocket.getProtocolHandler().getBufferedAmount();
+    }
+
+    /**
+     * Get writability of this session.
+     * <p/>
+     * Session is not writable when its buffered amount reached the high watermark and did not drop to the low
+     * watermark yet. Messages can still be sent, they are only buffered.
+     *
+     * @return {@code true} when the session is writable, {@code false} otherwise.
+     * @see #setOutboundWatermarks(long, long)
+     */
+    public boolean isWritable() {
+        return webSocket.getProtocolHandler().isWritable();
+    }
+
+    /**
+     * Set outbound watermarks of this session.
+     * <p/>
+     * Default values can be set by {@link TyrusWebSocketEngine#OUTBOUND_LOW_WATERMARK} and
+     * {@link TyrusWebSocketEngine#OUTBOUND_HIGH_WATERMARK} properties.
+     *
+     * @param lowWatermark  buffered amount (in bytes) which makes the session writable again.
+     * @param highWatermark buffered amount (in bytes) which makes the session non-writable; {@code 0} means that the
+     *                      session is always writable.
+     * @see #setWritabilityListener(WritabilityListener)
+     */
+    public void setOutboundWatermarks(long lowWatermark, long highWatermark) {
+        webSocket.getProtocolHandler().setOutboundWatermarks(lowWatermark, highWatermark);
+    }
+
+    /**
+     * Set listener notified when writability of this session changes.
+     *
+     * @param listener listener to be set, {@code null} removes current listener.
+     * @see #setOutboundWatermarks(long, long)
+     */
+    public void setWritabilityListener(WritabilityListener listener) {
+        this.writabilityListener = listener;
+    }
+
+    /**
+     * Send text message which can be replaced by newer message with the same key.
+     * <p/>
+     * When the session is writable (see {@link #isWritable()}) and there is no pending conflated message, the message
+     * is sent immediately. Otherwise it is kept until the session becomes writable again; pending message with the
+     * same key is replaced by the new one (keeping its position), so slow peers receive only the latest value for
+     * each key and the memory needed is bounded by the number of distinct keys.
+     * <p/>
+     * Conflated messages are sent asynchronously; failures are only logged.
+     *
+     * @param key     key of the message, for example name of the updated value.
+     * @param message message to be sent.
+     * @see #setOutboundWatermarks(long, long)
+     */
+    public void sendConflated(Object key, String message) {
+        checkNotNull(key, LocalizationMessages.ARGUMENT_NOT_NULL("key"));
+        checkNotNull(message, LocalizationMessages.ARGUMENT_NOT_NULL("message"));
+        conflate(key, message);
+    }
+
+    /**
+     * Send binary message which can be replaced by newer message with the same key.
+     * <p/>
+     * See {@link #sendConflated(Object, String)}. Remaining data of the buffer are not copied, so they must not be
+     * modified after this call.
+     *
+     * @param key     key of the message, for example name of the updated value.
+     * @param message message to be sent.
+     */
+    public void sendConflated(Object key, ByteBuffer message) {
+        checkNotNull(key, LocalizationMessages.ARGUMENT_NOT_NULL("key"));
+        checkNotNull(message, LocalizationMessages.ARGUMENT_NOT_NULL("message"));
+        conflate(key, message);
+    }
+
+    private void conflate(Object key, Object message) {
+        checkConnectionState(State.CLOSED);
+        restartIdleTimeoutExecutor();
+
+        synchronized (conflatedMessages) {
+            conflatedMessages.put(key, message);
+        }
+
+        sendConflatedMessages();
+    }
+
+    /**
+     * Send pending conflated messages while the session is writable.
+     * <p/>
+     * Messages are sent without holding the lock (sending can notify the writability listener); only one thread sends
+     * them at a time, so the order of messages with the same key is kept.
+     */
+    private void sendConflatedMessages() {
+        while (true) {
+            final Object message;
+            synchronized (conflatedMessages) {
+                if (sendingConflated || conflatedMessages.isEmpty() || !isWritable()) {
+                    return;
+                }
+                final Iterator<Object> iterator = conflatedMessages.values().iterator();
+                message = iterator.next();
+                iterator.remove();
+                sendingConflated = true;
+            }
+
+            try {
+                sendConflatedMessage(message);
+            } finally {
+                synchronized (conflatedMessages) {
+                    sendingConflated = false;
+                }
+            }
+        }
+    }
+
+    private void sendConflatedMessage(Object message) {
+        try {
+            if (message instanceof String) {
+                webSocket.sendText((String) message, CONFLATED_SEND_HANDLER);
+            } else {
+                webSocket.sendBinary((ByteBuffer) message, CONFLATED_SEND_HANDLER);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Set limit of buffered outbound data of this session.
+     * <p/>
+     * Whole messages which would exceed the limit are rejected or dropped, based on provided policy; control frames and
+     * partial messages are always sent. Default values can be set by {@link TyrusWebSocketEngine#OUTBOUND_BUFFER_LIMIT}
+     * and {@link TyrusWebSocketEngine#OUTBOUND_OVERFLOW_POLICY} properties.
+     *
+     * @param limit  limit in bytes; {@code 0} means no limit.
+     * @param policy policy applied to messages which would exceed the limit.
+     */
+    public void setOutboundBufferLimit(long limit, OutboundOverflowPolicy policy) {
+        webSocket.getProtocolHandler().setOutboundBufferLimit(limit, policy);
+    }
+
+    /**
+     * Get executor service provided by the container.
+     *
+     * @return scheduled executor service or {@code null} when the session was not created by a container.
+     */
+    ScheduledExecutorService getScheduledExecutorService() {
+        return service;
+    }
+
+    TyrusWebSocket getWebSocket() {
+        return webSocket;
+    }
+
+    MessageDispatchTable getDispatchTable() {
+        return dispatchTable;
+    }
+
+    InstanceSlots getInstanceSlots() {
+        return instanceSlots;
+    }
+
     void restartIdleTimeoutExecutor() {
         if (this.maxIdleTimeout < 1) {
             synchronized (idleTimeoutLock) {
@@ -405,45 +775,87 @@ public class TyrusSession implements Session {
         }
     }
 
-    void notifyMessageHandlers(Object message, List<CoderWrapper<Decoder>> availableDecoders) throws DecodeException, IOException {
-        boolean decoded = false;
+    /**
+     * Notify whole message handlers about text message.
+     *
+     * @param message received message.
+     * @throws DecodeException when the decoder fails.
+     * @throws IOException     when the stream decoder fails.
+     */
+    void notifyMessageHandlers(String message) throws DecodeException, IOException {
+        notifyMessageHandlers(message, dispatchTable.getTextEntries());
+    }
 
-        if (availableDecoders.isEmpty()) {
-            LOGGER.warning(LocalizationMessages.NO_DECODER_FOUND());
-        }
+    /**
+     * Notify whole message handlers about binary message.
+     *
+     * @param message received message.
+     * @throws DecodeException when the decoder fails.
+     * @throws IOException     when the stream decoder fails.
+     */
+    void notifyMessageHandlers(ByteBuffer message) throws DecodeException, IOException {
+        notifyMessageHandlers(message, dispatchTable.getBinaryEntries());
+    }
 
-        for (CoderWrapper<Decoder> decoder : availableDecoders) {
-            for (MessageHandler mh : getOrderedMessageHandlers()) {
-                Class<?> type;
-                if ((mh instanceof MessageHandler.Whole)
-                        && (type = MessageHandlerManager.getHandlerType(mh)).isAssignableFrom(decoder.getType())) {
+    private void notifyMessageHandlers(Object message, MessageDispatchTable.Entry[] entries) throws DecodeException, IOException {
+        boolean accepted = false;
+        boolean decoderFound = false;
+        MessageDispatchTable.Entry previous = null;
 
-                    if (mh instanceof BasicMessageHandler) {
-                        checkMessageSize(message, ((BasicMessageHandler) mh).getMaxMessageSize());
-                    }
+        for (MessageDispatchTable.Entry entry : entries) {
+            // willDecode is called once per decoder.
+            if (!entry.hasSameDecoder(previous)) {
+                accepted = entry.willDecode(message);
+                decoderFound |= accepted;
+            }
+            previous = entry;
+
+            if (accepted) {
+                checkMessageSize(message, entry.getMaxMessageSize());
 
-                    Object object = endpointWrapper.decodeCompleteMessage(this, message, type, decoder);
-                    if (object != null) {
-                        final State currentState = state.get();
-                        if (currentState != State.CLOSED) {
-                            //noinspection unchecked
-                            ((MessageHandler.Whole) mh).onMessage(object);
-                        }
-                        decoded = true;
-                        break;
+                final Object object = entry.decode(message);
+                if (object != null) {
+                    final State currentState = state.get();
+                    if (currentState != State.CLOSED) {
+                        //noinspection unchecked
+                        ((MessageHandler.Whole) entry.getHandler()).onMessage(object);
                     }
+                    return;
                 }
             }
-            if (decoded) {
-                break;
-            }
         }
+
+        if (!decoderFound) {
+            LOGGER.warning(LocalizationMessages.NO_DECODER_FOUND());
+        }
+    }
+
+    /**
+     * Create new dispatch table with currently registered message handlers; must be called when holding lock of the
+     * handler manager.
+     */
+    private void updateDispatchTable() {
+        final List<Map.Entry<Class<?>, MessageHandler>> entries =
+                new ArrayList<Map.Entry<Class<?>, MessageHandler>>(handlerManager.getRegisteredHandlers().entrySet());
+        Collections.sort(entries, new MessageHandlerComparator());
+
+        final MessageHandler[] handlers = new MessageHandler[entries.size()];
+        final Class<?>[] types = new Class<?>[entries.size()];
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i] = entries.get(i).getValue();
+            types[i] = entries.get(i).getKey();
+        }
+
+        dispatchTable = new MessageDispatchTable(endpointWrapper, this, endpointWrapper.getDecoderWrappers(),
+                handlers, types);
     }
 
     <T> MessageHandler.Whole<T> getMessageHandler(Class<T> c) {
-        for (MessageHandler mh : this.getOrderedMessageHandlers()) {
-            if (MessageHandlerManager.getHandlerType(mh) == c) {
-                return (MessageHandler.Whole<T>) mh;
+        final MessageDispatchTable table = dispatchTable;
+        final Class<?>[] types = table.getHandlerTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == c) {
+                return (MessageHandler.Whole<T>) table.getHandlers()[i];
             }
         }
 
@@ -453,9 +865,11 @@ public class TyrusSession implements Session {
     void notifyMessageHandlers(Object message, boolean last) {
         boolean handled = false;
 
-        for (MessageHandler handler : getMessageHandlers()) {
-            if ((handler instanceof MessageHandler.Partial) &&
-                    MessageHandlerManager.getHandlerType(handler).isAssignableFrom(message.getClass())) {
+        final MessageDispatchTable table = dispatchTable;
+        final Class<?>[] types = table.getHandlerTypes();
+        for (int i = 0; i < types.length; i++) {
+            final MessageHandler handler = table.getHandlers()[i];
+            if ((handler instanceof MessageHandler.Partial) && types[i].isAssignableFrom(message.getClass())) {
 
                 if (handler instanceof AsyncMessageHandler) {
                     checkMessageSize(message, ((AsyncMessageHandler) handler).getMaxMessageSize());
@@ -481,10 +895,11 @@ public class TyrusSession implements Session {
     }
 
     void notifyPongHandler(PongMessage pongMessage) {
-        final Set<MessageHandler> messageHandlers = getMessageHandlers();
-        for (MessageHandler handler : messageHandlers) {
-            if (MessageHandlerManager.getHandlerType(handler).equals(PongMessage.class)) {
-                ((MessageHandler.Whole<PongMessage>) handler).onMessage(pongMessage);
+        final MessageDispatchTable table = dispatchTable;
+        final Class<?>[] types = table.getHandlerTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (types[i].equals(PongMessage.class)) {
+                ((MessageHandler.Whole<PongMessage>) table.getHandlers()[i]).onMessage(pongMessage);
             }
         }
     }
@@ -517,16 +932,6 @@ public class TyrusSession implements Session {
         return handlerManager.isPongHandlerPresent();
     }
 
-    private List<MessageHandler> getOrderedMessageHandlers() {
-        Set<MessageHandler> handlers = this.getMessageHandlers();
-        ArrayList<MessageHandler> result = new ArrayList<MessageHandler>();
-
-        result.addAll(handlers);
-        Collections.sort(result, new MessageHandlerComparator());
-
-        return result;
-    }
-
     State getState() {
         return state.get();
     }
@@ -586,6 +991,21 @@ public class TyrusSession implements Session {
         state.compareAndSet(State.RUNNING, State.CLOSED);
         state.compareAndSet(State.RECEIVING_BINARY, State.CLOSED);
         state.compareAndSet(State.RECEIVING_TEXT, State.CLOSED);
+
+        synchronized (conflatedMessages) {
+            conflatedMessages.clear();
+        }
+
+        unsubscribeAll();
+    }
+
+    /**
+     * Unsubscribe from all topics.
+     */
+    void unsubscribeAll() {
+        for (String topic : subscriptions) {
+            unsubscribe(topic);
+        }
     }
 
     /**
@@ -614,16 +1034,20 @@ public class TyrusSession implements Session {
         CLOSED
     }
 
-    private static class MessageHandlerComparator implements Comparator<MessageHandler>, Serializable {
+    /**
+     * Orders message handlers (with their types) so that whole message handlers with more specific types come first.
+     */
+    private static class MessageHandlerComparator
+            implements Comparator<Map.Entry<Class<?>, MessageHandler>>, Serializable {
 
         private static final long serialVersionUID = -5136634876439146784L;
 
         @Override
-        public int compare(MessageHandler o1, MessageHandler o2) {
-            if (o1 instanceof MessageHandler.Whole) {
-                if (o2 instanceof MessageHandler.Whole) {
-                    Class<?> type1 = MessageHandlerManager.getHandlerType(o1);
-                    Class<?> type2 = MessageHandlerManager.getHandlerType(o2);
+        public int compare(Map.Entry<Class<?>, MessageHandler> o1, Map.Entry<Class<?>, MessageHandler> o2) {
+            if (o1.getValue() instanceof MessageHandler.Whole) {
+                if (o2.getValue() instanceof MessageHandler.Whole) {
+                    Class<?> type1 = o1.getKey();
+                    Class<?> type2 = o2.getKey();
 
                     if (type1.isAssignableFrom(type2)) {
                         return 1;
@@ -635,7 +1059,7 @@ public class TyrusSession implements Session {
                 } else {
                     return 1;
                 }
-            } else if (o2 instanceof MessageHandler.Whole) {
+            } else if (o2.getValue() instanceof MessageHandler.Whole) {
                 return 1;
             }
             return 0;
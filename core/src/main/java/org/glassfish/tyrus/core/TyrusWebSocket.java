@@ -91,9 +91,10 @@ public class TyrusWebSocket {
      * Sets the timeout for the writing operation.
      *
      * @param timeoutMs timeout in milliseconds.
+     * @see ProtocolHandler#setSendTimeout(long)
      */
     public void setWriteTimeout(long timeoutMs) {
-        // do nothing.
+        protocolHandler.setSendTimeout(timeoutMs);
     }
 
     /**
@@ -272,6 +273,32 @@ public class TyrusWebSocket {
         protocolHandler.send(data, handler);
     }
 
+    /**
+     * Send a binary frame to the remote endpoint.
+     * <p/>
+     * Remaining data of the buffer are not copied, so they must not be modified until the sending is complete.
+     *
+     * @param data data to be sent.
+     * @return {@link Future} which could be used to control/check the sending completion state.
+     */
+    public Future<Frame> sendBinary(ByteBuffer data) {
+        checkConnectedState();
+        return protocolHandler.send(data);
+    }
+
+    /**
+     * Send a binary frame to the remote endpoint.
+     * <p/>
+     * Remaining data of the buffer are not copied, so they must not be modified until the sending is complete.
+     *
+     * @param data    data to be sent.
+     * @param handler {@link SendHandler#onResult(javax.websocket.SendResult)} will be called when sending is complete.
+     */
+    public void sendBinary(ByteBuffer data, SendHandler handler) {
+        checkConnectedState();
+        protocolHandler.send(data, handler);
+    }
+
     /**
      * Send a text frame to the remote endpoint.
      *
@@ -294,6 +321,52 @@ public class TyrusWebSocket {
         protocolHandler.send(data, handler);
     }
 
+    /**
+     * Send a prepared message to the remote endpoint.
+     *
+     * @param message message to be sent.
+     * @return {@link Future} which could be used to control/check the sending completion state.
+     */
+    public Future<Frame> sendPrepared(PreparedMessage message) {
+        checkConnectedState();
+        return protocolHandler.send(message);
+    }
+
+    /**
+     * Send a prepared message to the remote endpoint.
+     *
+     * @param message message to be sent.
+     * @param handler {@link SendHandler#onResult(javax.websocket.SendResult)} will be called when sending is complete.
+     */
+    public void sendPrepared(PreparedMessage message, SendHandler handler) {
+        checkConnectedState();
+        protocolHandler.send(message, handler);
+    }
+
+    /**
+     * Send a message of {@link javax.websocket.RemoteEndpoint.Async}; send timeout is applied, see
+     * {@link #setWriteTimeout(long)}.
+     *
+     * @param frame frame to be sent.
+     * @return {@link Future} which could be used to control/check the sending completion state.
+     */
+    Future<Frame> sendAsync(Frame frame) {
+        checkConnectedState();
+        return protocolHandler.send(frame, null, true);
+    }
+
+    /**
+     * Send a message of {@link javax.websocket.RemoteEndpoint.Async}; send timeout is applied, see
+     * {@link #setWriteTimeout(long)}.
+     *
+     * @param frame   frame to be sent.
+     * @param handler {@link SendHandler#onResult(javax.websocket.SendResult)} will be called when sending is complete.
+     */
+    void sendAsync(Frame frame, SendHandler handler) {
+        checkConnectedState();
+        protocolHandler.send(frame, ProtocolHandler.toCompletionHandler(handler), true);
+    }
+
     /**
      * Send a frame to the remote endpoint.
      *
@@ -369,6 +442,20 @@ public class TyrusWebSocket {
         return sendBinary(bytes, 0, bytes.length, last);
     }
 
+    /**
+     * Sends a fragment of a complete message.
+     * <p/>
+     * Remaining data of the buffer are not copied, so they must not be modified until the sending is complete.
+     *
+     * @param fragment the binary fragment to send.
+     * @param last     boolean indicating if this message fragment is the last.
+     * @return {@link Future} which could be used to control/check the sending completion state.
+     */
+    public Future<Frame> sendBinary(ByteBuffer fragment, boolean last) {
+        checkConnectedState();
+        return protocolHandler.stream(last, fragment);
+    }
+
     /**
      * Sends a fragment of a complete message.
      *
@@ -48,6 +48,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -65,6 +67,7 @@ import org.glassfish.tyrus.core.frame.CloseFrame;
 import org.glassfish.tyrus.core.frame.Frame;
 import org.glassfish.tyrus.core.l10n.LocalizationMessages;
 import org.glassfish.tyrus.core.uri.Match;
+import org.glassfish.tyrus.spi.BufferAllocator;
 import org.glassfish.tyrus.spi.Connection;
 import org.glassfish.tyrus.spi.ReadHandler;
 import org.glassfish.tyrus.spi.UpgradeRequest;
@@ -84,7 +87,98 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
     public static final String INCOMING_BUFFER_SIZE = "org.glassfish.tyrus.incomingBufferSize";
 
-    private static final int BUFFER_STEP_SIZE = 256;
+    /**
+     * Property name for streaming chunk size.
+     * <p/>
+     * When set, payload of incoming data frames bigger than this value is delivered in chunks as it arrives (to
+     * partial message handlers or to the stream based whole message handlers) instead of being buffered until the
+     * whole frame is received. Frames bigger than {@link #INCOMING_BUFFER_SIZE} can be received this way. Value is
+     * expected to be {@link Integer} smaller than incoming buffer size; streaming is disabled by default.
+     *
+     * @see ProtocolHandler#setStreamingChunkSize(int)
+     */
+    public static final String STREAMING_CHUNK_SIZE = "org.glassfish.tyrus.streamingChunkSize";
+
+    /**
+     * Property name for {@link BufferAllocator} used for incoming data and outgoing frames.
+     * <p/>
+     * Value is expected to be {@link BufferAllocator} instance, for example {@link PooledBufferAllocator}. Heap
+     * buffers are allocated for every request by default (see {@link HeapBufferAllocator}).
+     */
+    public static final String BUFFER_ALLOCATOR = "org.glassfish.tyrus.bufferAllocator";
+
+    /**
+     * Property name for growth factor of per-connection buffer for incomplete incoming frames.
+     * <p/>
+     * When the buffer needs to grow, its capacity is multiplied by this factor (but it will not exceed
+     * {@link #INCOMING_BUFFER_SIZE}). Value {@code 1} means that the buffer grows only to the required size. Value is
+     * expected to be {@link Integer}, default value is {@value IncomingBuffer#DEFAULT_GROWTH_FACTOR}.
+     */
+    public static final String INCOMING_BUFFER_GROWTH_FACTOR = "org.glassfish.tyrus.incomingBufferGrowthFactor";
+
+    /**
+     * Property name for size of outgoing batch.
+     * <p/>
+     * When batching is allowed ({@link javax.websocket.RemoteEndpoint#setBatchingAllowed(boolean)}), batched frames are
+     * written as soon as their size reaches this value. Value is expected to be {@link Integer}, default value is
+     * {@value ProtocolHandler#DEFAULT_BATCH_SIZE}.
+     */
+    public static final String BATCH_SIZE = "org.glassfish.tyrus.batchSize";
+
+    /**
+     * Property name for linger time of outgoing batch.
+     * <p/>
+     * When batching is allowed ({@link javax.websocket.RemoteEndpoint#setBatchingAllowed(boolean)}), batched frames are
+     * written at latest after this time (in milliseconds) even if the batch is not flushed explicitly. Value is
+     * expected to be {@link Integer}, default value is {@value ProtocolHandler#DEFAULT_BATCH_LINGER}; {@code 0}
+     * disables automatic flush after linger time.
+     */
+    public static final String BATCH_LINGER = "org.glassfish.tyrus.batchLinger";
+
+    /**
+     * Property name for closing sessions on send timeout.
+     * <p/>
+     * When set to {@code true}, session is closed with {@link javax.websocket.CloseReason.CloseCodes#CLOSED_ABNORMALLY}
+     * when some send is not completed within send timeout
+     * ({@link javax.websocket.RemoteEndpoint.Async#setSendTimeout(long)}). Send handler or future of the timed out
+     * send is failed in any case. Value is expected to be {@link Boolean}, default value is {@code false}.
+     */
+    public static final String CLOSE_ON_SEND_TIMEOUT = "org.glassfish.tyrus.closeOnSendTimeout";
+
+    /**
+     * Property name for high watermark of session outbound buffer.
+     * <p/>
+     * Session becomes non-writable when amount of its sent and not yet written data reaches this value (see
+     * {@link TyrusSession#setOutboundWatermarks(long, long)}). Value is expected to be {@link Integer}, default value
+     * is {@value ProtocolHandler#DEFAULT_HIGH_WATERMARK}; {@code 0} disables writability changes.
+     */
+    public static final String OUTBOUND_HIGH_WATERMARK = "org.glassfish.tyrus.outboundHighWatermark";
+
+    /**
+     * Property name for low watermark of session outbound buffer.
+     * <p/>
+     * Non-writable session becomes writable again when amount of its sent and not yet written data drops to this
+     * value. Value is expected to be {@link Integer}, default value is {@value ProtocolHandler#DEFAULT_LOW_WATERMARK}.
+     */
+    public static final String OUTBOUND_LOW_WATERMARK = "org.glassfish.tyrus.outboundLowWatermark";
+
+    /**
+     * Property name for limit of session outbound buffer.
+     * <p/>
+     * Whole messages which would make amount of sent and not yet written data of a session exceed this value are
+     * handled according to {@link #OUTBOUND_OVERFLOW_POLICY}. Value is expected to be {@link Integer}, default value
+     * is {@code 0} (no limit).
+     */
+    public static final String OUTBOUND_BUFFER_LIMIT = "org.glassfish.tyrus.outboundBufferLimit";
+
+    /**
+     * Property name for policy applied to messages exceeding {@link #OUTBOUND_BUFFER_LIMIT}.
+     * <p/>
+     * Value is expected to be {@link OutboundOverflowPolicy} or its name ({@link String}), default value is
+     * {@link OutboundOverflowPolicy#REJECT}.
+     */
+    public static final String OUTBOUND_OVERFLOW_POLICY = "org.glassfish.tyrus.outboundOverflowPolicy";
+
     private static final Logger LOGGER = Logger.getLogger(UpgradeRequest.WEBSOCKET);
 
     private static final UpgradeInfo NOT_APPLICABLE_UPGRADE_INFO = new NoConnectionUpgradeInfo(UpgradeStatus.NOT_APPLICABLE);
@@ -95,6 +189,17 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
     private final WebSocketContainer webSocketContainer;
 
     private int incomingBufferSize = 4194315; // 4M (payload) + 11 (frame overhead)
+    private int streamingChunkSize = 0;
+    private BufferAllocator bufferAllocator = new HeapBufferAllocator();
+    private int incomingBufferGrowthFactor = IncomingBuffer.DEFAULT_GROWTH_FACTOR;
+    private int batchSize = ProtocolHandler.DEFAULT_BATCH_SIZE;
+    private long batchLinger = ProtocolHandler.DEFAULT_BATCH_LINGER;
+    private boolean closeOnSendTimeout = false;
+    private long outboundLowWatermark = ProtocolHandler.DEFAULT_LOW_WATERMARK;
+    private long outboundHighWatermark = ProtocolHandler.DEFAULT_HIGH_WATERMARK;
+    private long outboundBufferLimit = 0;
+    private OutboundOverflowPolicy outboundOverflowPolicy = OutboundOverflowPolicy.REJECT;
+    private final AtomicLong incomingBufferedBytes = new AtomicLong(0);
 
     private final ClusterContext clusterContext;
 
@@ -183,13 +288,21 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
                 };
 
                 protocolHandler.handshake(endpointWrapper, request, response, extensionContext);
+                protocolHandler.setStreamingChunkSize(streamingChunkSize);
+                protocolHandler.setBufferAllocator(bufferAllocator);
+                protocolHandler.setBatchSize(batchSize);
+                protocolHandler.setBatchLinger(batchLinger);
+                protocolHandler.setCloseOnSendTimeout(closeOnSendTimeout);
+                protocolHandler.setOutboundWatermarks(outboundLowWatermark, outboundHighWatermark);
+                protocolHandler.setOutboundBufferLimit(outboundBufferLimit, outboundOverflowPolicy);
 
                 if (clusterContext != null && request.getHeaders().get(UpgradeRequest.CLUSTER_CONNECTION_ID_HEADER) == null) {
                     // TODO: we might need to introduce some property to check whether we should put this header into the response.
                     response.getHeaders().put(UpgradeRequest.CLUSTER_CONNECTION_ID_HEADER, Collections.singletonList(clusterContext.createConnectionId()));
                 }
 
-                return new SuccessfulUpgradeInfo(endpointWrapper, protocolHandler, incomingBufferSize, request, response, extensionContext);
+                final IncomingBuffer incomingBuffer = new IncomingBuffer(incomingBufferSize, incomingBufferGrowthFactor, bufferAllocator, incomingBufferedBytes);
+                return new SuccessfulUpgradeInfo(endpointWrapper, protocolHandler, incomingBuffer, request, response, extensionContext);
             }
         } catch (HandshakeException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
@@ -201,48 +314,49 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         return NOT_APPLICABLE_UPGRADE_INFO;
     }
 
-    private static class TyrusReadHandler implements ReadHandler {
+    static class TyrusReadHandler implements ReadHandler {
 
         private final ProtocolHandler protocolHandler;
         private final TyrusWebSocket socket;
         private final TyrusEndpointWrapper endpointWrapper;
-        private final int incomingBufferSize;
+        private final IncomingBuffer incomingBuffer;
         private final ExtendedExtension.ExtensionContext extensionContext;
+        private final ReentrantLock lock = new ReentrantLock();
 
-        private volatile ByteBuffer buffer;
+        private volatile boolean closed = false;
 
-        private TyrusReadHandler(ProtocolHandler protocolHandler, TyrusWebSocket socket, TyrusEndpointWrapper endpointWrapper, int incomingBufferSize, ExtendedExtension.ExtensionContext extensionContext) {
+        TyrusReadHandler(ProtocolHandler protocolHandler, TyrusWebSocket socket, TyrusEndpointWrapper endpointWrapper, IncomingBuffer incomingBuffer, ExtendedExtension.ExtensionContext extensionContext) {
             this.extensionContext = extensionContext;
             this.protocolHandler = protocolHandler;
             this.socket = socket;
             this.endpointWrapper = endpointWrapper;
-            this.incomingBufferSize = incomingBufferSize;
+            this.incomingBuffer = incomingBuffer;
         }
 
         @Override
         public void handle(ByteBuffer data) {
+            lock.lock();
             try {
+                if (closed) {
+                    // connection is closed, data are dropped and no buffer is allocated.
+                    return;
+                }
+
                 if (data != null && data.hasRemaining()) {
 
-                    if (buffer != null) {
-                        data = Utils.appendBuffers(buffer, data, incomingBufferSize, BUFFER_STEP_SIZE);
-                    } else {
-                        int newSize = data.remaining();
-                        if (newSize > incomingBufferSize) {
-                            throw new IllegalArgumentException(LocalizationMessages.BUFFER_OVERFLOW());
-                        } else {
-                            final int roundedSize = (newSize % BUFFER_STEP_SIZE) > 0 ? ((newSize / BUFFER_STEP_SIZE) + 1) * BUFFER_STEP_SIZE : newSize;
-                            final ByteBuffer result = ByteBuffer.allocate(roundedSize > incomingBufferSize ? newSize : roundedSize);
-                            result.flip();
-                            data = Utils.appendBuffers(result, data, incomingBufferSize, BUFFER_STEP_SIZE);
-                        }
+                    if (incomingBuffer.hasRemaining() || data.isReadOnly()) {
+                        // incomplete frame from previous read - new data have to be appended. Read only data are
+                        // copied too, masked payload would be unmasked in place.
+                        data = incomingBuffer.append(data);
                     }
 
+                    // otherwise frames are parsed directly from passed buffer.
                     do {
                         final Frame incomingFrame = protocolHandler.unframe(data);
 
                         if (incomingFrame == null) {
-                            buffer = data;
+                            // only the trailing incomplete frame is kept.
+                            incomingBuffer.retain(data);
                             break;
                         } else {
                             Frame frame = incomingFrame;
@@ -274,6 +388,29 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
                     }
                     socket.onClose(new CloseFrame(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, message)));
                 }
+            } finally {
+                lock.unlock();
+                if (closed) {
+                    close();
+                }
+            }
+        }
+
+        /**
+         * Release buffered data when the connection is closed.
+         * <p/>
+         * Does not block - when data are being processed (possibly by current thread, during close frame
+         * processing), buffer is released by {@link #handle(ByteBuffer)} after the processing is finished. Data passed
+         * to {@link #handle(ByteBuffer)} after this call are dropped.
+         */
+        void close() {
+            closed = true;
+            if (!lock.isHeldByCurrentThread() && lock.tryLock()) {
+                try {
+                    incomingBuffer.release();
+                } finally {
+                    lock.unlock();
+                }
             }
         }
     }
@@ -282,6 +419,95 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         this.incomingBufferSize = incomingBufferSize;
     }
 
+    /**
+     * Set streaming chunk size. See {@link #STREAMING_CHUNK_SIZE}.
+     *
+     * @param streamingChunkSize maximal size of payload chunk delivered before the whole frame is received;
+     *                           {@code 0} disables streaming.
+     */
+    public void setStreamingChunkSize(int streamingChunkSize) {
+        this.streamingChunkSize = streamingChunkSize;
+    }
+
+    /**
+     * Set buffer allocator. See {@link #BUFFER_ALLOCATOR}.
+     *
+     * @param bufferAllocator allocator used for incoming data and outgoing frames of all connections created after
+     *                        this call.
+     */
+    public void setBufferAllocator(BufferAllocator bufferAllocator) {
+        this.bufferAllocator = bufferAllocator;
+    }
+
+    /**
+     * Set growth factor of incoming buffers. See {@link #INCOMING_BUFFER_GROWTH_FACTOR}.
+     *
+     * @param incomingBufferGrowthFactor growth factor used for connections created after this call.
+     */
+    public void setIncomingBufferGrowthFactor(int incomingBufferGrowthFactor) {
+        this.incomingBufferGrowthFactor = incomingBufferGrowthFactor;
+    }
+
+    /**
+     * Set size of outgoing batch. See {@link #BATCH_SIZE}.
+     *
+     * @param batchSize size of batched frames which triggers flush of the batch.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Set linger time of outgoing batch. See {@link #BATCH_LINGER}.
+     *
+     * @param batchLinger time in milliseconds after which non-empty batch is flushed.
+     */
+    public void setBatchLinger(long batchLinger) {
+        this.batchLinger = batchLinger;
+    }
+
+    /**
+     * Set whether sessions should be closed on send timeout. See {@link #CLOSE_ON_SEND_TIMEOUT}.
+     *
+     * @param closeOnSendTimeout {@code true} when sessions should be closed on send timeout.
+     */
+    public void setCloseOnSendTimeout(boolean closeOnSendTimeout) {
+        this.closeOnSendTimeout = closeOnSendTimeout;
+    }
+
+    /**
+     * Set watermarks of session outbound buffers. See {@link #OUTBOUND_LOW_WATERMARK} and
+     * {@link #OUTBOUND_HIGH_WATERMARK}.
+     *
+     * @param lowWatermark  buffered amount (in bytes) which makes the session writable again.
+     * @param highWatermark buffered amount (in bytes) which makes the session non-writable.
+     */
+    public void setOutboundWatermarks(long lowWatermark, long highWatermark) {
+        this.outboundLowWatermark = lowWatermark;
+        this.outboundHighWatermark = highWatermark;
+    }
+
+    /**
+     * Set limit of session outbound buffers. See {@link #OUTBOUND_BUFFER_LIMIT} and {@link #OUTBOUND_OVERFLOW_POLICY}.
+     *
+     * @param limit  limit in bytes; {@code 0} means no limit.
+     * @param policy policy applied to messages which would exceed the limit.
+     */
+    public void setOutboundBufferLimit(long limit, OutboundOverflowPolicy policy) {
+        this.outboundBufferLimit = limit;
+        this.outboundOverflowPolicy = policy;
+    }
+
+    /**
+     * Get number of bytes currently held by buffers for incomplete incoming frames of all connections of this
+     * engine.
+     *
+     * @return total capacity of allocated incoming buffers.
+     */
+    public long getIncomingBufferedBytes() {
+        return incomingBufferedBytes.get();
+    }
+
     /**
      * Registers the specified {@link TyrusEndpointWrapper} with the
      * <code>WebSocketEngine</code>.
@@ -390,16 +616,16 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
         private final TyrusEndpointWrapper endpointWrapper;
         private final ProtocolHandler protocolHandler;
-        private final int incomingBufferSize;
+        private final IncomingBuffer incomingBuffer;
         private final UpgradeRequest upgradeRequest;
         private final UpgradeResponse upgradeResponse;
         private final ExtendedExtension.ExtensionContext extensionContext;
 
-        SuccessfulUpgradeInfo(TyrusEndpointWrapper endpointWrapper, ProtocolHandler protocolHandler, int incomingBufferSize,
+        SuccessfulUpgradeInfo(TyrusEndpointWrapper endpointWrapper, ProtocolHandler protocolHandler, IncomingBuffer incomingBuffer,
                               UpgradeRequest upgradeRequest, UpgradeResponse upgradeResponse, ExtendedExtension.ExtensionContext extensionContext) {
             this.endpointWrapper = endpointWrapper;
             this.protocolHandler = protocolHandler;
-            this.incomingBufferSize = incomingBufferSize;
+            this.incomingBuffer = incomingBuffer;
             this.upgradeRequest = upgradeRequest;
             this.upgradeResponse = upgradeResponse;
             this.extensionContext = extensionContext;
@@ -412,20 +638,20 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
         @Override
         public Connection createConnection(Writer writer, Connection.CloseListener closeListener) {
-            return new TyrusConnection(endpointWrapper, protocolHandler, incomingBufferSize, writer, closeListener, upgradeRequest, upgradeResponse, extensionContext);
+            return new TyrusConnection(endpointWrapper, protocolHandler, incomingBuffer, writer, closeListener, upgradeRequest, upgradeResponse, extensionContext);
         }
     }
 
     static class TyrusConnection implements Connection {
 
-        private final ReadHandler readHandler;
+        private final TyrusReadHandler readHandler;
         private final Writer writer;
         private final CloseListener closeListener;
         private final TyrusWebSocket socket;
         private final ExtendedExtension.ExtensionContext extensionContext;
         private final List<Extension> extensions;
 
-        TyrusConnection(TyrusEndpointWrapper endpointWrapper, ProtocolHandler protocolHandler, int incomingBufferSize, Writer writer, CloseListener closeListener,
+        TyrusConnection(TyrusEndpointWrapper endpointWrapper, ProtocolHandler protocolHandler, IncomingBuffer incomingBuffer, Writer writer, CloseListener closeListener,
                         UpgradeRequest upgradeRequest, UpgradeResponse upgradeResponse, ExtendedExtension.ExtensionContext extensionContext) {
             protocolHandler.setWriter(writer);
             extensions = protocolHandler.getExtensions();
@@ -442,7 +668,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
             this.socket.onConnect(upgradeRequest, protocolHandler.getSubProtocol(), extensions, connectionId);
 
-            this.readHandler = new TyrusReadHandler(protocolHandler, socket, endpointWrapper, incomingBufferSize, extensionContext);
+            this.readHandler = new TyrusReadHandler(protocolHandler, socket, endpointWrapper, incomingBuffer, extensionContext);
             this.writer = writer;
             this.closeListener = closeListener;
             this.extensionContext = extensionContext;
@@ -465,6 +691,8 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
         @Override
         public void close(CloseReason reason) {
+            readHandler.close();
+
             if (!socket.isConnected()) {
                 return;
             }
@@ -0,0 +1,191 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Validating incremental UTF-8 decoder.
+ * <p/>
+ * Input can be split at any position (for example into more frames of fragmented text message); incomplete character
+ * at the end of decoded data is kept as decoder state (at most 3 bytes) and completed by the next call, so the input
+ * data never need to be concatenated. Decoder rejects overlong encodings, surrogates and code points above U+10FFFF,
+ * same as {@link StrictUtf8}.
+ * <p/>
+ * Input which contains only ASCII characters is converted to {@link String} directly.
+ * <p/>
+ * Not thread safe.
+ */
+public class Utf8Decoder {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private int codePoint = 0;
+    private int bytesNeeded = 0;
+    private int lowerBoundary = 0x80;
+    private int upperBoundary = 0xBF;
+
+    /**
+     * Decode remaining data of given buffer.
+     * <p/>
+     * All remaining data are consumed (buffer position is set to its limit).
+     *
+     * @param data data to be decoded.
+     * @param last {@code true} when the data are the last part of the decoded text (incomplete character at the end
+     *             is an error then), {@code false} otherwise.
+     * @return decoded characters.
+     * @throws Utf8DecodingException when the data are not valid UTF-8.
+     */
+    public String decode(ByteBuffer data, boolean last) {
+        final int length = data.remaining();
+        final byte[] array;
+        final int offset;
+        if (data.hasArray()) {
+            array = data.array();
+            offset = data.arrayOffset() + data.position();
+            data.position(data.limit());
+        } else {
+            array = new byte[length];
+            offset = 0;
+            data.get(array);
+        }
+
+        final String result;
+        if (bytesNeeded == 0 && isAscii(array, offset, length)) {
+            result = new String(array, offset, length, ISO_8859_1);
+        } else {
+            result = decode(array, offset, length);
+        }
+
+        if (last && bytesNeeded != 0) {
+            reset();
+            throw new Utf8DecodingException();
+        }
+
+        return result;
+    }
+
+    /**
+     * Reset decoder state - discard incomplete character.
+     */
+    public void reset() {
+        codePoint = 0;
+        bytesNeeded = 0;
+        lowerBoundary = 0x80;
+        upperBoundary = 0xBF;
+    }
+
+    private String decode(byte[] array, int offset, int length) {
+        // one byte can complete supplementary character pending from previous call (two chars).
+        final char[] chars = new char[length + 1];
+        int count = 0;
+
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            final int b = array[i] & 0xFF;
+
+            if (bytesNeeded == 0) {
+                if (b < 0x80) {
+                    chars[count++] = (char) b;
+                    continue;
+                } else if (b >= 0xC2 && b <= 0xDF) {
+                    bytesNeeded = 1;
+                    codePoint = b & 0x1F;
+                } else if (b >= 0xE0 && b <= 0xEF) {
+                    if (b == 0xE0) {
+                        // overlong
+                        lowerBoundary = 0xA0;
+                    } else if (b == 0xED) {
+                        // surrogates
+                        upperBoundary = 0x9F;
+                    }
+                    bytesNeeded = 2;
+                    codePoint = b & 0x0F;
+                } else if (b >= 0xF0 && b <= 0xF4) {
+                    if (b == 0xF0) {
+                        // overlong
+                        lowerBoundary = 0x90;
+                    } else if (b == 0xF4) {
+                        // above U+10FFFF
+                        upperBoundary = 0x8F;
+                    }
+                    bytesNeeded = 3;
+                    codePoint = b & 0x07;
+                } else {
+                    reset();
+                    throw new Utf8DecodingException();
+                }
+                continue;
+            }
+
+            if (b < lowerBoundary || b > upperBoundary) {
+                reset();
+                throw new Utf8DecodingException();
+            }
+
+            lowerBoundary = 0x80;
+            upperBoundary = 0xBF;
+            codePoint = (codePoint << 6) | (b & 0x3F);
+
+            if (--bytesNeeded == 0) {
+                if (codePoint < 0x10000) {
+                    chars[count++] = (char) codePoint;
+                } else {
+                    count += Character.toChars(codePoint, chars, count);
+                }
+                codePoint = 0;
+            }
+        }
+
+        return new String(chars, 0, count);
+    }
+
+    private static boolean isAscii(byte[] array, int offset, int length) {
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (array[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2012-2013 Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2012-2014 Oracle and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -49,6 +49,137 @@ import java.nio.charset.CoderResult;
 
 public class Utf8Utils {
 
+    /**
+     * Replacement for unpaired surrogates, same as used by {@link String#getBytes(Charset)}.
+     */
+    private static final byte REPLACEMENT = (byte) '?';
+
+    /**
+     * Size of the chunk used to encode strings into buffers without accessible array.
+     */
+    private static final int ENCODE_CHUNK_SIZE = 256;
+
+    /**
+     * Get length of UTF-8 representation of given string.
+     * <p/>
+     * Unpaired surrogates are counted as one byte, see {@link #encode(String)}.
+     *
+     * @param string string to be measured.
+     * @return number of bytes needed to encode given string.
+     */
+    public static int encodedLength(String string) {
+        final int length = string.length();
+        int encodedLength = length;
+
+        for (int i = 0; i < length; i++) {
+            final char c = string.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+
+            if (c < 0x800) {
+                encodedLength += 1;
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                encodedLength += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                // two chars, four bytes.
+                encodedLength += 2;
+                i++;
+            }
+        }
+
+        return encodedLength;
+    }
+
+    /**
+     * Encode given string to UTF-8.
+     * <p/>
+     * Unpaired surrogates are replaced by {@code '?'}.
+     *
+     * @param string string to be encoded.
+     * @return UTF-8 representation of given string, length of returned array is {@link #encodedLength(String)}.
+     */
+    public static byte[] encode(String string) {
+        final byte[] bytes = new byte[encodedLength(string)];
+        encode(string, bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Encode given string to UTF-8 and put the result into provided buffer.
+     * <p/>
+     * Buffer position is advanced by {@link #encodedLength(String)}. Unpaired surrogates are replaced by {@code '?'}.
+     *
+     * @param string string to be encoded.
+     * @param buffer target buffer, must have at least {@link #encodedLength(String)} bytes remaining.
+     */
+    public static void encode(String string, ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            final int offset = buffer.arrayOffset();
+            final int end = encode(string, buffer.array(), offset + buffer.position());
+            buffer.position(end - offset);
+        } else {
+            // encoded in small chunks, so no array of the encoded string size is allocated.
+            final byte[] chunk = new byte[ENCODE_CHUNK_SIZE];
+            final int length = string.length();
+            int from = 0;
+            while (from < length) {
+                // char is encoded to at most three bytes, surrogate pair to four.
+                int to = Math.min(length, from + ENCODE_CHUNK_SIZE / 3);
+                if (to < length && Character.isHighSurrogate(string.charAt(to - 1))) {
+                    to--;
+                }
+                buffer.put(chunk, 0, encode(string, from, to, chunk, 0));
+                from = to;
+            }
+        }
+    }
+
+    private static int encode(String string, byte[] bytes, int offset) {
+        return encode(string, 0, string.length(), bytes, offset);
+    }
+
+    /**
+     * Encode chars of given string from {@code from} (inclusive) to {@code to} (exclusive).
+     *
+     * @return position in {@code bytes} after the last written byte.
+     */
+    private static int encode(String string, int from, int to, byte[] bytes, int offset) {
+        int i = from;
+        int p = offset;
+
+        for (; i < to; i++) {
+            final char c = string.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            bytes[p++] = (byte) c;
+        }
+
+        for (; i < to; i++) {
+            final char c = string.charAt(i);
+            if (c < 0x80) {
+                bytes[p++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[p++] = (byte) (0xC0 | (c >> 6));
+                bytes[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                bytes[p++] = (byte) (0xE0 | (c >> 12));
+                bytes[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(string.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                bytes[p++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[p++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[p++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[p++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                bytes[p++] = REPLACEMENT;
+            }
+        }
+
+        return p;
+    }
 
     public static byte[] encode(Charset charset, String string) {
         CharsetEncoder ce = charset.newEncoder();
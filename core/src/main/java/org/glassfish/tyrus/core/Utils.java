@@ -47,6 +47,7 @@ import java.util.Locale;
 import java.util.Map;
 
 import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+import org.glassfish.tyrus.spi.BufferAllocator;
 
 /**
  * Utility methods shared among Tyrus modules.
@@ -55,6 +56,8 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
  */
 public class Utils {
 
+    private static final BufferAllocator HEAP_BUFFER_ALLOCATOR = new HeapBufferAllocator();
+
     /**
      * Define to {@link String} conversion for various types.
      *
@@ -297,6 +300,21 @@ public class Utils {
      * @return concatenation.
      */
     public static ByteBuffer appendBuffers(ByteBuffer buffer, ByteBuffer buffer1, int incomingBufferSize, int BUFFER_STEP_SIZE) {
+        return appendBuffers(buffer, buffer1, incomingBufferSize, BUFFER_STEP_SIZE, HEAP_BUFFER_ALLOCATOR);
+    }
+
+    /**
+     * Concatenates two buffers into one. If buffer given as first argument has enough space for putting
+     * the other one, it will be done and the original buffer will be returned. Otherwise new buffer will
+     * be obtained from given allocator and the original one will be released.
+     *
+     * @param buffer          first buffer.
+     * @param buffer1         second buffer.
+     * @param bufferAllocator allocator used when new buffer needs to be created.
+     * @return concatenation.
+     */
+    public static ByteBuffer appendBuffers(ByteBuffer buffer, ByteBuffer buffer1, int incomingBufferSize, int BUFFER_STEP_SIZE,
+                                           BufferAllocator bufferAllocator) {
 
         final int limit = buffer.limit();
         final int capacity = buffer.capacity();
@@ -326,10 +344,11 @@ public class Utils {
                 throw new IllegalArgumentException(LocalizationMessages.BUFFER_OVERFLOW());
             } else {
                 final int roundedSize = (newSize % BUFFER_STEP_SIZE) > 0 ? ((newSize / BUFFER_STEP_SIZE) + 1) * BUFFER_STEP_SIZE : newSize;
-                final ByteBuffer result = ByteBuffer.allocate(roundedSize > incomingBufferSize ? newSize : roundedSize);
+                final ByteBuffer result = bufferAllocator.allocate(roundedSize > incomingBufferSize ? newSize : roundedSize);
                 result.put(buffer);
                 result.put(buffer1);
                 result.flip();
+                bufferAllocator.release(buffer);
                 return result;
             }
         }
@@ -0,0 +1,68 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import javax.websocket.Session;
+
+/**
+ * Listener notified when writability of a session changes.
+ * <p/>
+ * Session becomes non-writable when amount of its outbound data which were not written yet (see
+ * {@link TyrusSession#getBufferedAmount()}) reaches the high watermark and writable again when the amount drops to the
+ * low watermark (see {@link TyrusSession#setOutboundWatermarks(long, long)}). Applications can use this to stop
+ * producing messages for slow peers.
+ * <p/>
+ * Listener is invoked by the thread which caused the change (sending thread or the thread which completed the write),
+ * so it should not block.
+ *
+ * @see TyrusSession#setWritabilityListener(WritabilityListener)
+ */
+public interface WritabilityListener {
+
+    /**
+     * Writability of the session changed.
+     *
+     * @param session  session which writability changed.
+     * @param writable {@code true} when the buffered amount dropped to the low watermark, {@code false} when it reached
+     *                 the high watermark.
+     */
+    void onWritabilityChanged(Session session, boolean writable);
+}
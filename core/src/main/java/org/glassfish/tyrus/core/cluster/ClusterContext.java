@@ -167,6 +167,31 @@ public abstract class ClusterContext {
      */
     public abstract void broadcastBinary(String endpointPath, byte[] data);
 
+    /**
+     * Publish text message to subscribers of a topic on other nodes.
+     * <p/>
+     * Message should be delivered to {@link PublishListener}s registered for the endpoint on all other nodes. Default
+     * implementation does not forward the message, so the message reaches only subscribers connected to this node.
+     *
+     * @param endpointPath endpoint path identifying sessions alignment to the endpoint.
+     * @param topic        topic the message is published to.
+     * @param text         message to be published.
+     */
+    public void publishText(String endpointPath, String topic, String text) {
+    }
+
+    /**
+     * Publish binary message to subscribers of a topic on other nodes.
+     * <p/>
+     * See {@link #publishText(String, String, String)}.
+     *
+     * @param endpointPath endpoint path identifying sessions alignment to the endpoint.
+     * @param topic        topic the message is published to.
+     * @param data         data to be published.
+     */
+    public void publishBinary(String endpointPath, String topic, byte[] data) {
+    }
+
     /**
      * Close remote session.
      *
@@ -248,6 +273,19 @@ public abstract class ClusterContext {
      */
     public abstract void registerBroadcastListener(String endpointPath, BroadcastListener listener);
 
+    /**
+     * Register publish listener.
+     * <p/>
+     * Gets notification about messages published to a topic on other nodes, see
+     * {@link #publishText(String, String, String)}. Default implementation does nothing.
+     *
+     * @param endpointPath endpoint path identifying sessions alignment to the endpoint.
+     * @param listener     listener instance.
+     * @see org.glassfish.tyrus.core.cluster.PublishListener
+     */
+    public void registerPublishListener(String endpointPath, PublishListener listener) {
+    }
+
     /**
      * Get the map containing session properties to be shared among nodes.
      * <p/>
@@ -40,6 +40,8 @@
 
 package org.glassfish.tyrus.core.frame;
 
+import java.nio.ByteBuffer;
+
 import org.glassfish.tyrus.core.TyrusWebSocket;
 
 /**
@@ -83,6 +85,23 @@ public class BinaryFrame extends TyrusFrame {
         this.continuation = continuation;
     }
 
+    /**
+     * Constructor.
+     * <p/>
+     * Payload is not copied; created frame shares remaining data of provided buffer (which can be direct or read-only),
+     * so the data must not be modified until the frame is written. Position and limit of provided buffer are not
+     * changed.
+     *
+     * @param payload      frame payload.
+     * @param continuation {@code true} when this frame is continuation frame, {@code false} otherwise.
+     * @param fin          {@code true} when this frame is last in current partial message batch. Standard (non-continuous)
+     *                     frames have this bit set to {@code true}.
+     */
+    public BinaryFrame(ByteBuffer payload, boolean continuation, boolean fin) {
+        super(Frame.builder().payloadData(payload).opcode(continuation ? (byte) 0x00 : (byte) 0x02).fin(fin).build());
+        this.continuation = continuation;
+    }
+
     @Override
     public void respond(TyrusWebSocket socket) {
 
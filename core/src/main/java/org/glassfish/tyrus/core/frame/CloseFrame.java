@@ -41,18 +41,14 @@
 package org.glassfish.tyrus.core.frame;
 
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
-import java.nio.charset.CoderResult;
 
 import javax.websocket.CloseReason;
 
 import org.glassfish.tyrus.core.CloseReasons;
 import org.glassfish.tyrus.core.ProtocolException;
-import org.glassfish.tyrus.core.StrictUtf8;
 import org.glassfish.tyrus.core.TyrusWebSocket;
-import org.glassfish.tyrus.core.Utf8DecodingException;
+import org.glassfish.tyrus.core.Utf8Decoder;
+import org.glassfish.tyrus.core.Utf8Utils;
 import org.glassfish.tyrus.core.Utils;
 
 /**
@@ -133,33 +129,7 @@ public class CloseFrame extends TyrusFrame {
     }
 
     private String utf8Decode(byte[] data) {
-        String reason;
-        final ByteBuffer b = ByteBuffer.wrap(data, 2, data.length - 2);
-        Charset charset = new StrictUtf8();
-        final CharsetDecoder decoder = charset.newDecoder();
-        int n = (int) (b.remaining() * decoder.averageCharsPerByte());
-        CharBuffer cb = CharBuffer.allocate(n);
-        while (true) {
-            CoderResult result = decoder.decode(b, cb, true);
-            if (result.isUnderflow()) {
-                decoder.flush(cb);
-                cb.flip();
-                reason = cb.toString();
-                break;
-            }
-            if (result.isOverflow()) {
-                CharBuffer tmp = CharBuffer.allocate(2 * n + 1);
-                cb.flip();
-                tmp.put(cb);
-                cb = tmp;
-                continue;
-            }
-            if (result.isError() || result.isMalformed()) {
-                throw new Utf8DecodingException();
-            }
-        }
-
-        return reason;
+        return new Utf8Decoder().decode(ByteBuffer.wrap(data, 2, data.length - 2), true);
     }
 
     private static byte[] getPayload(int closeCode, String closeReason) {
@@ -168,7 +138,7 @@ public class CloseFrame extends TyrusFrame {
         }
 
         final byte[] bytes = Utils.toArray(closeCode);
-        final byte[] reasonBytes = closeReason == null ? EMPTY_BYTES : closeReason.getBytes(new StrictUtf8());
+        final byte[] reasonBytes = closeReason == null ? EMPTY_BYTES : Utf8Utils.encode(closeReason);
         final byte[] frameBytes = new byte[2 + reasonBytes.length];
         System.arraycopy(bytes, bytes.length - 2, frameBytes, 0, 2);
         System.arraycopy(reasonBytes, 0, frameBytes, 2, reasonBytes.length);
@@ -40,7 +40,7 @@
 
 package org.glassfish.tyrus.core.frame;
 
-import java.security.SecureRandom;
+import java.nio.ByteBuffer;
 
 /**
  * WebSocket frame representation.
@@ -49,6 +49,10 @@ import java.security.SecureRandom;
  * - masking (isMask is currently ignored)
  * - validation
  * - payloadLength is limited to int</pre>
+ * <p/>
+ * Payload of frames created by {@link org.glassfish.tyrus.core.ProtocolHandler#unframe(java.nio.ByteBuffer)} is not
+ * copied out of the buffer it was parsed from; it is valid only until the frame is processed. Use
+ * {@link #getPayloadData()} when the data needs to be kept longer.
  *
  * @author Pavel Bucek (pavel.bucek at oracle.com)
  */
@@ -64,7 +68,7 @@ public class Frame {
     private final long payloadLength;
     private final int maskingKey;
 
-    private final byte[] payloadData;
+    private final ByteBuffer payloadData;
 
     private final boolean controlFrame;
 
@@ -89,7 +93,7 @@ public class Frame {
         this.controlFrame = (opcode & 0x08) == 0x08;
     }
 
-    private Frame(boolean fin, boolean rsv1, boolean rsv2, boolean rsv3, boolean mask, byte opcode, long payloadLength, int maskingKey, byte[] payloadData) {
+    private Frame(boolean fin, boolean rsv1, boolean rsv2, boolean rsv3, boolean mask, byte opcode, long payloadLength, int maskingKey, ByteBuffer payloadData) {
         this.fin = fin;
         this.rsv1 = rsv1;
         this.rsv2 = rsv2;
@@ -169,7 +173,7 @@ public class Frame {
     /**
      * Get masking key.
      *
-     * @return masking key (32 bit value).
+     * @return masking key (32 bit value), {@code 0} when not set.
      */
     public int getMaskingKey() {
         return maskingKey;
@@ -186,10 +190,44 @@ public class Frame {
      */
     public byte[] getPayloadData() {
         byte[] tmp = new byte[(int) payloadLength];
-        System.arraycopy(payloadData, 0, tmp, 0, (int) payloadLength);
+        if (payloadData != null) {
+            final ByteBuffer payload = payloadData.duplicate();
+            payload.get(tmp);
+        }
         return tmp;
     }
 
+    /**
+     * Get payload data without copying it.
+     * <p/>
+     * Returned buffer shares its content with this {@link Frame} instance; its position is set to the beginning of the
+     * payload and remaining bytes count is always same as {@link #getPayloadLength()}. Content of the returned buffer
+     * must not be modified.
+     *
+     * @return payload data view.
+     */
+    public ByteBuffer getPayloadBuffer() {
+        if (payloadData == null) {
+            return ByteBuffer.allocate(0);
+        }
+
+        final ByteBuffer payload = payloadData.duplicate();
+        payload.limit(payload.position() + (int) payloadLength);
+        return payload;
+    }
+
+    /**
+     * Put payload data into provided buffer.
+     * <p/>
+     * Used when the frame is serialized; buffer position is advanced by {@link #getPayloadLength()}. Subclasses may
+     * override this to produce the payload directly into the buffer, without creating intermediate payload copy.
+     *
+     * @param buffer target buffer, must have at least {@link #getPayloadLength()} bytes remaining.
+     */
+    public void writePayload(ByteBuffer buffer) {
+        buffer.put(getPayloadBuffer());
+    }
+
     /**
      * Get information about frame type.
      *
@@ -246,9 +284,9 @@ public class Frame {
 
         private byte opcode;
         private long payloadLength;
-        private int maskingKey = new SecureRandom().nextInt();
+        private int maskingKey;
 
-        private byte[] payloadData;
+        private ByteBuffer payloadData;
 
         /**
          * Constructor.
@@ -270,7 +308,7 @@ public class Frame {
             this.opcode = frame.opcode;
             this.payloadLength = frame.payloadLength;
             this.maskingKey = frame.maskingKey;
-            this.payloadData = frame.payloadData;
+            this.payloadData = frame.getPayloadBuffer();
         }
 
         /**
@@ -364,7 +402,8 @@ public class Frame {
         }
 
         /**
-         * Set masking key. Default value is {@code new SecureRandom().nextInt();}.
+         * Set masking key. Default value is {@code 0}, which means that the key will be generated when (and if) the
+         * frame is masked.
          *
          * @param maskingKey masking key.
          * @return updated {@link Frame.Builder} instance.
@@ -382,9 +421,25 @@ public class Frame {
          * @see #payloadLength(long)
          */
         public Builder payloadData(byte[] payloadData) {
-            this.payloadData = payloadData;
+            this.payloadData = ByteBuffer.wrap(payloadData);
             this.payloadLength = payloadData.length;
             return this;
         }
+
+        /**
+         * Set payload data. {@link #payloadLength(long)} is also updated with payloadData.remaining().
+         * <p/>
+         * Data are not copied, built frame will share them with provided buffer (from its current position to its
+         * limit). Position and limit of provided buffer are not changed.
+         *
+         * @param payloadData data to be set.
+         * @return updated {@link Frame.Builder} instance.
+         * @see #payloadLength(long)
+         */
+        public Builder payloadData(ByteBuffer payloadData) {
+            this.payloadData = payloadData.slice();
+            this.payloadLength = payloadData.remaining();
+            return this;
+        }
     }
 }
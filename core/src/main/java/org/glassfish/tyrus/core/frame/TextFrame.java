@@ -41,14 +41,9 @@
 package org.glassfish.tyrus.core.frame;
 
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
-import java.nio.charset.CoderResult;
 
-import org.glassfish.tyrus.core.StrictUtf8;
 import org.glassfish.tyrus.core.TyrusWebSocket;
-import org.glassfish.tyrus.core.Utf8DecodingException;
+import org.glassfish.tyrus.core.Utf8Decoder;
 import org.glassfish.tyrus.core.Utf8Utils;
 
 /**
@@ -58,50 +53,86 @@ import org.glassfish.tyrus.core.Utf8Utils;
  */
 public class TextFrame extends TyrusFrame {
 
-    private final Charset utf8 = new StrictUtf8();
-    private final CharsetDecoder currentDecoder = utf8.newDecoder();
     private final String textPayload;
     private final boolean continuation;
+    private final boolean outgoing;
 
-    private ByteBuffer remainder;
+    private ByteBuffer encodedPayload = null;
 
     /**
      * Constructor.
      *
      * @param frame     original (text) frame.
-     * @param remainder UTF-8 decoding remainder from previously processed frame.
+     * @param decoder UTF-8 decoder holding decoding state from previously processed frame.
      */
-    public TextFrame(Frame frame, ByteBuffer remainder) {
+    public TextFrame(Frame frame, Utf8Decoder decoder) {
         super(frame);
-        this.textPayload = utf8Decode(isFin(), getPayloadData(), remainder);
+        this.textPayload = decoder.decode(getPayloadBuffer(), isFin());
         this.continuation = false;
+        this.outgoing = false;
     }
 
     /**
      * Constructor.
      *
      * @param frame        original (text) frame.
-     * @param remainder    UTF-8 decoding remainder from previously processed frame.
+     * @param decoder      UTF-8 decoder holding decoding state from previously processed frame.
      * @param continuation {@code true} when this frame is continuation frame, {@code false} otherwise.
      */
-    public TextFrame(Frame frame, ByteBuffer remainder, boolean continuation) {
+    public TextFrame(Frame frame, Utf8Decoder decoder, boolean continuation) {
         super(frame);
-        this.textPayload = utf8Decode(isFin(), getPayloadData(), remainder);
+        this.textPayload = decoder.decode(getPayloadBuffer(), isFin());
         this.continuation = continuation;
+        this.outgoing = false;
     }
 
     /**
      * Constructor.
      *
-     * @param message      text message (will be encoded using strict UTF-8 encoding).
+     * Payload is encoded lazily - directly to the serialized frame or when it is requested for the first time.
+     *
+     * @param message      text message (will be encoded using UTF-8 encoding).
      * @param continuation {@code true} when this frame is continuation frame, {@code false} otherwise.
      * @param fin          {@code true} when this frame is last in current partial message batch. Standard (non-continuous)
      *                     frames have this bit set to {@code true}.
      */
     public TextFrame(String message, boolean continuation, boolean fin) {
-        super(Frame.builder().payloadData(Utf8Utils.encode(new StrictUtf8(), message)).opcode(continuation ? (byte) 0x00 : (byte) 0x01).fin(fin).build());
+        super(Frame.builder().payloadLength(Utf8Utils.encodedLength(message)).opcode(continuation ? (byte) 0x00 : (byte) 0x01).fin(fin).build());
         this.continuation = continuation;
         this.textPayload = message;
+        this.outgoing = true;
+    }
+
+    @Override
+    public byte[] getPayloadData() {
+        if (!outgoing) {
+            return super.getPayloadData();
+        }
+
+        final byte[] bytes = new byte[(int) getPayloadLength()];
+        getPayloadBuffer().get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public ByteBuffer getPayloadBuffer() {
+        if (!outgoing) {
+            return super.getPayloadBuffer();
+        }
+
+        if (encodedPayload == null) {
+            encodedPayload = ByteBuffer.wrap(Utf8Utils.encode(textPayload));
+        }
+        return encodedPayload.duplicate();
+    }
+
+    @Override
+    public void writePayload(ByteBuffer buffer) {
+        if (outgoing && encodedPayload == null) {
+            Utf8Utils.encode(textPayload, buffer);
+        } else {
+            super.writePayload(buffer);
+        }
     }
 
     /**
@@ -113,17 +144,6 @@ public class TextFrame extends TyrusFrame {
         return textPayload;
     }
 
-    /**
-     * Remainder after UTF-8 decoding.
-     * <p/>
-     * This might be removed in the future, if encoding part will be separated from text frame impl.
-     *
-     * @return UTF-8 decoding remainder. Used internally to decoding next incoming frame.
-     */
-    public ByteBuffer getRemainder() {
-        return remainder;
-    }
-
     @Override
     public void respond(TyrusWebSocket socket) {
 
@@ -139,57 +159,6 @@ public class TextFrame extends TyrusFrame {
 
     }
 
-    private String utf8Decode(boolean finalFragment, byte[] data, ByteBuffer remainder) {
-        final ByteBuffer b = getByteBuffer(data, remainder);
-        int n = (int) (b.remaining() * currentDecoder.averageCharsPerByte());
-        CharBuffer cb = CharBuffer.allocate(n);
-        String res;
-        while (true) {
-            CoderResult result = currentDecoder.decode(b, cb, finalFragment);
-            if (result.isUnderflow()) {
-                if (finalFragment) {
-                    currentDecoder.flush(cb);
-                    if (b.hasRemaining()) {
-                        throw new IllegalStateException("Final UTF-8 fragment received, but not all bytes consumed by decode process");
-                    }
-                    currentDecoder.reset();
-                } else {
-                    if (b.hasRemaining()) {
-                        this.remainder = b;
-                    }
-                }
-                cb.flip();
-                res = cb.toString();
-                break;
-            }
-            if (result.isOverflow()) {
-                CharBuffer tmp = CharBuffer.allocate(2 * n + 1);
-                cb.flip();
-                tmp.put(cb);
-                cb = tmp;
-                continue;
-            }
-            if (result.isError() || result.isMalformed()) {
-                throw new Utf8DecodingException();
-            }
-        }
-
-        return res;
-    }
-
-    private ByteBuffer getByteBuffer(final byte[] data, ByteBuffer remainder) {
-        if (remainder == null) {
-            return ByteBuffer.wrap(data);
-        } else {
-            final int rem = remainder.remaining();
-            final byte[] orig = remainder.array();
-            byte[] b = new byte[rem + data.length];
-            System.arraycopy(orig, orig.length - rem, b, 0, rem);
-            System.arraycopy(data, 0, b, rem, data.length);
-            return ByteBuffer.wrap(b);
-        }
-    }
-
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder(super.toString());
@@ -40,11 +40,11 @@
 
 package org.glassfish.tyrus.core.frame;
 
-import java.nio.ByteBuffer;
 import java.util.Locale;
 
 import org.glassfish.tyrus.core.ProtocolException;
 import org.glassfish.tyrus.core.TyrusWebSocket;
+import org.glassfish.tyrus.core.Utf8Decoder;
 
 /**
  * Frame representation used in Tyrus runtime.
@@ -71,20 +71,20 @@ public abstract class TyrusFrame extends Frame {
      *
      * @param frame            original plain frame.
      * @param inFragmentedType type of fragment (text or binary).
-     * @param remainder        decoding remainder. Used only for partial text frames.
+     * @param utf8Decoder      UTF-8 decoder. Used only for text frames, keeps decoding state of fragmented text messages.
      * @return new TyrusFrame.
      */
-    public static TyrusFrame wrap(Frame frame, byte inFragmentedType, ByteBuffer remainder) {
+    public static TyrusFrame wrap(Frame frame, byte inFragmentedType, Utf8Decoder utf8Decoder) {
 
         switch (frame.getOpcode()) {
             case 0x00:
                 if ((inFragmentedType & 0x01) == 0x01) {
-                    return new TextFrame(frame, remainder, true);
+                    return new TextFrame(frame, utf8Decoder, true);
                 } else {
                     return new BinaryFrame(frame, true);
                 }
             case 0x01:
-                return new TextFrame(frame, remainder);
+                return new TextFrame(frame, utf8Decoder);
             case 0x02:
                 return new BinaryFrame(frame);
             case 0x08:
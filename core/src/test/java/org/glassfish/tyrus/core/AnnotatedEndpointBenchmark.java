@@ -0,0 +1,159 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.lang.reflect.Method;
+
+import javax.websocket.ClientEndpoint;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+
+/**
+ * Annotated endpoint dispatch benchmark; not executed as a part of the build.
+ * <p/>
+ * Compares the time needed to deliver a text message to programmatic endpoint ({@link MessageHandler.Whole}) and to
+ * annotated endpoint ({@link OnMessage} method with {@link Session} parameter), and the cost of the method invocation
+ * itself using generated and reflective {@link MethodInvoker}. Run with:
+ * <pre>
+ * java -cp ... org.glassfish.tyrus.core.AnnotatedEndpointBenchmark [messages]
+ * </pre>
+ */
+public class AnnotatedEndpointBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        final int count = args.length == 0 ? 2000000 : Integer.parseInt(args[0]);
+
+        final ProgrammaticEndpoint programmatic = new ProgrammaticEndpoint();
+        final AnnotatedEndpoint annotated = AnnotatedEndpoint.fromInstance(new Annotated(),
+                ComponentProviderService.createClient(), false, new ErrorCollector());
+        final Connection programmaticConnection = new Connection(programmatic, null);
+        final Connection annotatedConnection = new Connection(annotated, annotated.getEndpointConfig());
+
+        final Method method = Annotated.class.getMethod("onMessage", String.class, Session.class);
+        final MethodInvoker generated = new GeneratedMethodInvokerFactory().create(method);
+        final MethodInvoker reflective = MethodInvoker.reflective(method);
+        final Annotated instance = new Annotated();
+        final Object[] params = new Object[]{"benchmark", null};
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                programmaticConnection.onMessage("benchmark");
+            }
+            final long programmaticTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                annotatedConnection.onMessage("benchmark");
+            }
+            final long annotatedTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                generated.invoke(instance, params);
+            }
+            final long generatedTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                reflective.invoke(instance, params);
+            }
+            final long reflectiveTime = System.nanoTime() - start;
+
+            System.out.printf("round %d: programmatic %6.1f ns, annotated %6.1f ns, generated invoker %5.1f ns, reflective invoker %5.1f ns%n",
+                    round, (double) programmaticTime / count, (double) annotatedTime / count,
+                    (double) generatedTime / count, (double) reflectiveTime / count);
+        }
+    }
+
+    private static class Connection {
+
+        private final TyrusEndpointWrapper endpointWrapper;
+        private final TyrusWebSocket socket;
+
+        Connection(Endpoint endpoint, EndpointConfig config) throws Exception {
+            endpointWrapper = new TyrusEndpointWrapper(endpoint, config, ComponentProviderService.createClient(), null,
+                    "/benchmark", null, null, null);
+            socket = new TyrusWebSocket(new ProtocolHandler(false), endpointWrapper) {
+                @Override
+                public boolean isConnected() {
+                    return true;
+                }
+            };
+            endpoint.onOpen(endpointWrapper.createSessionForRemoteEndpoint(socket, null, null), config);
+        }
+
+        void onMessage(String message) {
+            endpointWrapper.onMessage(socket, message);
+        }
+    }
+
+    public static class ProgrammaticEndpoint extends Endpoint {
+
+        private int length;
+
+        @Override
+        public void onOpen(final Session session, EndpointConfig config) {
+            session.addMessageHandler(new MessageHandler.Whole<String>() {
+                @Override
+                public void onMessage(String message) {
+                    length += message.length();
+                }
+            });
+        }
+    }
+
+    @ClientEndpoint
+    public static class Annotated {
+
+        private int length;
+
+        @OnMessage
+        public void onMessage(String message, Session session) {
+            length += message.length();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.core.frame.PingFrame;
+import org.glassfish.tyrus.core.frame.TextFrame;
+import org.glassfish.tyrus.spi.CompletionHandler;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests batching of outgoing frames in {@link ProtocolHandler}.
+ */
+public class BatchingTest {
+
+    @Test
+    public void testFlushBatch() throws Exception {
+        final TestWriter writer = new TestWriter();
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        protocolHandler.setWriter(writer);
+        protocolHandler.setBatchingAllowed(true, null);
+
+        final List<Future<Frame>> futures = new ArrayList<Future<Frame>>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(protocolHandler.send("message " + i));
+        }
+
+        assertEquals(0, writer.getWriteCount());
+        assertFalse(futures.get(0).isDone());
+
+        protocolHandler.flushBatch();
+
+        // one gathering write with all frames.
+        assertEquals(1, writer.getWriteCount());
+        assertEquals(10, writer.getWrite(0).length);
+        for (Future<Frame> future : futures) {
+            assertTrue(future.isDone());
+        }
+
+        protocolHandler.flushBatch();
+        assertEquals(1, writer.getWriteCount());
+    }
+
+    @Test
+    public void testBatchSize() throws Exception {
+        final TestWriter writer = new TestWriter();
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        protocolHandler.setWriter(writer);
+        protocolHandler.setBatchSize(100);
+        protocolHandler.setBatchingAllowed(true, null);
+
+        // 2 bytes header + 48 bytes payload
+        for (int i = 0; i < 5; i++) {
+            protocolHandler.send(new byte[48]);
+        }
+
+        assertEquals(2, writer.getWriteCount());
+        assertEquals(2, writer.getWrite(0).length);
+        assertEquals(2, writer.getWrite(1).length);
+
+        // disallowing batching flushes the rest.
+        protocolHandler.setBatchingAllowed(false, null);
+        assertEquals(3, writer.getWriteCount());
+        assertEquals(1, writer.getWrite(2).length);
+
+        protocolHandler.send(new byte[48]);
+        assertEquals(4, writer.getWriteCount());
+    }
+
+    @Test
+    public void testControlFrameFlushesBatch() throws Exception {
+        final TestWriter writer = new TestWriter();
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        protocolHandler.setWriter(writer);
+        protocolHandler.setBatchingAllowed(true, null);
+
+        protocolHandler.send("first");
+        protocolHandler.send("second");
+        protocolHandler.send(new PingFrame(new byte[0]));
+
+        assertEquals(2, writer.getWriteCount());
+        assertEquals(2, writer.getWrite(0).length);
+        assertEquals(0x89, writer.getWrite(1)[0].get(0) & 0xFF);
+    }
+
+    @Test
+    public void testCloseFailsBatch() throws Exception {
+        final TestWriter writer = new TestWriter();
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        protocolHandler.setWriter(writer);
+        protocolHandler.setBatchingAllowed(true, null);
+
+        final Future<Frame> future = protocolHandler.send("first");
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        protocolHandler.send(new TextFrame("second", false, true), new CompletionHandler<Frame>() {
+            @Override
+            public void failed(Throwable throwable) {
+                failures.add(throwable);
+            }
+        }, false);
+
+        protocolHandler.doClose();
+
+        assertEquals(0, writer.getWriteCount());
+        assertTrue(writer.isClosed());
+        assertTrue(future.isDone());
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0) instanceof IOException);
+        assertFalse(protocolHandler.isBatchingAllowed());
+    }
+
+    @Test
+    public void testBasicSendReportsRejectWhileBatching() throws Exception {
+        final TestWriter writer = new TestWriter();
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        protocolHandler.setWriter(writer);
+        protocolHandler.setOutboundBufferLimit(10, OutboundOverflowPolicy.REJECT);
+        final TyrusSession session = TestWriter.createSession(TestWriter.createEndpointWrapper(), protocolHandler, true);
+        session.getBasicRemote().setBatchingAllowed(true);
+
+        // batched message does not block.
+        session.getBasicRemote().sendText("small");
+        assertEquals(0, writer.getWriteCount());
+
+        try {
+            session.getBasicRemote().sendText("message over the limit");
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+
+        try {
+            session.getBasicRemote().sendObject("message over the limit");
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+
+        session.getBasicRemote().flushBatch();
+        assertEquals(1, writer.getWriteCount());
+        assertEquals(1, writer.getWrite(0).length);
+    }
+}
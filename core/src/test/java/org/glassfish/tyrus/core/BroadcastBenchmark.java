@@ -0,0 +1,136 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Broadcast benchmark; not executed as a part of the build.
+ * <p/>
+ * Compares sequential broadcast on the calling thread with sharded broadcast ({@link Broadcaster#broadcast}) and
+ * fire-and-forget broadcast ({@link Broadcaster#broadcastAsync}) for 10k, 100k and 500k sessions. Writer completes
+ * writes immediately, so the results show the cost of broadcast dispatching only. Run with enough heap for 500k
+ * sessions, for example:
+ * <pre>
+ * java -Xmx3g -cp ... org.glassfish.tyrus.core.BroadcastBenchmark [sessions...]
+ * </pre>
+ */
+public class BroadcastBenchmark {
+
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        final int[] counts = args.length == 0 ? new int[]{10000, 100000, 500000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            counts[i] = Integer.parseInt(args[i]);
+        }
+
+        final int parallelism = Runtime.getRuntime().availableProcessors();
+        final ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+        final Broadcaster sequential = new Broadcaster(null, 1);
+        final Broadcaster sharded = new Broadcaster(executorService, parallelism);
+        final PreparedMessage message = new PreparedMessage("broadcast benchmark message");
+
+        System.out.println("processors: " + parallelism);
+        try {
+            for (int count : counts) {
+                List<TyrusSession> sessions = createSessions(count);
+
+                // warm-up
+                for (int i = 0; i < ROUNDS; i++) {
+                    sequential.broadcast(sessions, message);
+                    sharded.broadcast(sessions, message);
+                    sharded.broadcastAsync(sessions, message).await(1, TimeUnit.MINUTES);
+                }
+
+                long sequentialTime = 0;
+                long shardedTime = 0;
+                long asyncReturnTime = 0;
+                long asyncDoneTime = 0;
+                for (int i = 0; i < ROUNDS; i++) {
+                    long start = System.nanoTime();
+                    sequential.broadcast(sessions, message);
+                    sequentialTime += System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    sharded.broadcast(sessions, message);
+                    shardedTime += System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    final BroadcastResult result = sharded.broadcastAsync(sessions, message);
+                    asyncReturnTime += System.nanoTime() - start;
+                    result.await(1, TimeUnit.MINUTES);
+                    asyncDoneTime += System.nanoTime() - start;
+                    if (result.getSent() != count) {
+                        throw new IllegalStateException(result.toString());
+                    }
+                }
+
+                System.out.printf("%7d sessions: sequential %8.2f ms, sharded %8.2f ms, async returned %6.3f ms / done %8.2f ms%n",
+                        count, millis(sequentialTime), millis(shardedTime), millis(asyncReturnTime), millis(asyncDoneTime));
+
+                sessions = null;
+                System.gc();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6 / ROUNDS;
+    }
+
+    private static List<TyrusSession> createSessions(int count) throws Exception {
+        final TyrusEndpointWrapper endpointWrapper = TestWriter.createEndpointWrapper();
+        final TestWriter writer = new TestWriter(TestWriter.Mode.COMPLETE, false);
+
+        final List<TyrusSession> sessions = new ArrayList<TyrusSession>(count);
+        for (int i = 0; i < count; i++) {
+            sessions.add(TestWriter.createSession(endpointWrapper, writer));
+        }
+        return sessions;
+    }
+}
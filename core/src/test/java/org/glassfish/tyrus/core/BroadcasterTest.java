@@ -0,0 +1,230 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.core.frame.Frame;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link Broadcaster}.
+ */
+public class BroadcasterTest {
+
+    private static final int SESSIONS = Broadcaster.MIN_SHARD_SIZE * 3 + 7;
+
+    @Test
+    public void testBroadcast() throws Exception {
+        final ExecutorService executorService = Executors.newFixedThreadPool(3);
+        try {
+            final TestWriter writer = new TestWriter();
+            final List<TyrusSession> sessions = createSessions(writer);
+
+            final Map<Session, Future<?>> futures = new Broadcaster(executorService, 4).broadcast(sessions, new PreparedMessage("broadcast"));
+
+            assertEquals(SESSIONS, futures.size());
+            int failed = 0;
+            for (Future<?> future : futures.values()) {
+                try {
+                    future.get();
+                } catch (Exception e) {
+                    failed++;
+                }
+            }
+            // every 3rd session is disconnected, every 5th fails
+            assertEquals(SESSIONS - countFailed(), writer.getWriteCount());
+            assertEquals(countFailed(), failed);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testBroadcastSaturatedExecutor() throws Exception {
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            // occupy the only thread; shards waiting in the queue are processed by the calling thread.
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        // do nothing.
+                    }
+                }
+            });
+
+            final TestWriter writer = new TestWriter();
+            final Map<Session, Future<?>> futures = new Broadcaster(executorService, 4).broadcast(createSessions(writer), new PreparedMessage("broadcast"));
+
+            assertEquals(SESSIONS, futures.size());
+            assertEquals(SESSIONS - countFailed(), writer.getWriteCount());
+        } finally {
+            latch.countDown();
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testBroadcastRejected() throws Exception {
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        executorService.shutdown();
+
+        final TestWriter writer = new TestWriter();
+        final Map<Session, Future<?>> futures = new Broadcaster(executorService, 4).broadcast(createSessions(writer), new PreparedMessage("broadcast"));
+
+        assertEquals(SESSIONS, futures.size());
+        assertEquals(SESSIONS - countFailed(), writer.getWriteCount());
+    }
+
+    @Test
+    public void testBroadcastFailedShard() throws Exception {
+        final ExecutorService executorService = Executors.newFixedThreadPool(3);
+        try {
+            final List<TyrusSession> sessions = createSessions(new TestWriter());
+            // last session belongs to the last shard, which is not processed by the calling thread.
+            final TyrusSession broken = TestWriter.createSession(TestWriter.createEndpointWrapper(), new TyrusWebSocket(new ProtocolHandler(false), null) {
+                @Override
+                public boolean isConnected() {
+                    return true;
+                }
+
+                @Override
+                public Future<Frame> sendPrepared(PreparedMessage message) {
+                    throw new AssertionError("broken");
+                }
+            });
+            sessions.set(SESSIONS - 1, broken);
+
+            final Map<Session, Future<?>> futures = new Broadcaster(executorService, 4).broadcast(sessions, new PreparedMessage("broadcast"));
+
+            // all sessions of the failed shard are reported
+            assertEquals(SESSIONS, futures.size());
+            try {
+                futures.get(broken).get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof AssertionError);
+            }
+            try {
+                futures.get(sessions.get(SESSIONS - 2)).get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof AssertionError);
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testBroadcastAsync() throws Exception {
+        final ExecutorService executorService = Executors.newFixedThreadPool(3);
+        try {
+            final TestWriter writer = new TestWriter();
+            final List<TyrusSession> sessions = createSessions(writer);
+
+            final BroadcastResult result = new Broadcaster(executorService, 4).broadcastAsync(sessions, new PreparedMessage(ByteBuffer.wrap(new byte[]{1, 2, 3})));
+
+            assertTrue(result.await(10, TimeUnit.SECONDS));
+            assertEquals(SESSIONS, result.getSessions());
+            assertEquals(SESSIONS - countFailed(), result.getSent());
+            assertEquals(countFailed() - countSkipped(), result.getFailed());
+            assertEquals(countSkipped(), result.getSkipped());
+            assertEquals(result.getSent(), writer.getWriteCount());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testBroadcastAsyncWithoutExecutor() throws Exception {
+        final BroadcastResult result = new Broadcaster(null, 4).broadcastAsync(new ArrayList<TyrusSession>(), new PreparedMessage("broadcast"));
+
+        assertTrue(result.isDone());
+        assertEquals(0, result.getSessions());
+    }
+
+    private static int countSkipped() {
+        return (SESSIONS + 2) / 3;
+    }
+
+    private static int countFailed() {
+        int failed = 0;
+        for (int i = 0; i < SESSIONS; i++) {
+            if (i % 3 == 0 || i % 5 == 0) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    private static List<TyrusSession> createSessions(final TestWriter writer) throws Exception {
+        final TyrusEndpointWrapper endpointWrapper = TestWriter.createEndpointWrapper();
+        final TestWriter failing = new TestWriter(TestWriter.Mode.FAIL);
+
+        final List<TyrusSession> sessions = new ArrayList<TyrusSession>(SESSIONS);
+        for (int i = 0; i < SESSIONS; i++) {
+            final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+            protocolHandler.setWriter(i % 5 == 0 ? failing : writer);
+            sessions.add(TestWriter.createSession(endpointWrapper, protocolHandler, i % 3 != 0));
+        }
+        return sessions;
+    }
+}
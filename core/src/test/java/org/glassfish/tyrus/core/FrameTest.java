@@ -40,12 +40,22 @@
 
 package org.glassfish.tyrus.core;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
+import org.glassfish.tyrus.core.frame.BinaryFrame;
 import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.core.frame.TextFrame;
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Writer;
 
 import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -95,7 +105,203 @@ public class FrameTest {
 
     }
 
+    @Test
+    public void testPayloadBuffer() throws Exception {
+        final ByteBuffer buffer = ByteBuffer.wrap(new byte[]{'x', '0', '1', '2', 'y'});
+        buffer.position(1);
+        buffer.limit(4);
+
+        final Frame frame = new Frame.Builder().payloadData(buffer).build();
+        assertEquals(3, frame.getPayloadLength());
+        assertTrue(Arrays.equals(new byte[]{'0', '1', '2'}, frame.getPayloadData()));
+
+        // buffer is not consumed
+        assertEquals(1, buffer.position());
+        assertEquals(4, buffer.limit());
+
+        final ByteBuffer payload = frame.getPayloadBuffer();
+        assertEquals(3, payload.remaining());
+        assertEquals('0', payload.get());
+
+        // payload is shared, not copied.
+        buffer.put(1, (byte) '9');
+        assertEquals('9', frame.getPayloadBuffer().get());
+    }
+
     /**
      * TODO: test validation when added to Frame.
      */
+
+    @Test
+    public void testStreamedPayload() throws Exception {
+        final byte[] payload = new byte[1000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+
+        final ByteBuffer data = new ProtocolHandler(true).frame(
+                new Frame.Builder().fin(true).opcode((byte) 0x02).payloadData(payload).build());
+
+        final ProtocolHandler handler = new ProtocolHandler(false);
+        handler.setStreamingChunkSize(300);
+
+        final ByteBuffer received = ByteBuffer.allocate(payload.length);
+        final int end = data.limit();
+        int chunks = 0;
+
+        // data arrive in 150 byte pieces
+        data.limit(0);
+        while (data.limit() < end) {
+            data.limit(Math.min(end, data.limit() + 150));
+
+            Frame frame;
+            while ((frame = handler.unframe(data)) != null) {
+                assertTrue(frame.getPayloadLength() <= 300);
+                assertEquals(chunks == 0 ? 0x02 : 0x00, frame.getOpcode());
+                received.put(frame.getPayloadBuffer());
+                chunks++;
+                assertEquals(!received.hasRemaining(), frame.isFin());
+            }
+        }
+
+        assertEquals(4, chunks);
+        assertArrayEquals(payload, received.array());
+    }
+
+    @Test
+    public void testTextFramePayload() throws Exception {
+        final String text = "ascii \u00E9 \u20AC \uD83D\uDE00 \uD800 end";
+        final byte[] expected = text.getBytes("UTF-8");
+
+        assertEquals(expected.length, Utf8Utils.encodedLength(text));
+        assertArrayEquals(expected, Utf8Utils.encode(text));
+
+        // buffer without accessible array, encoded in chunks; surrogate pairs are kept together.
+        final StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 84; i++) {
+            longText.append('a');
+        }
+        // pair at the end of the first chunk (85 chars).
+        longText.append("\uD83D\uDE00");
+        for (int i = 0; i < 100; i++) {
+            longText.append(text);
+        }
+        final byte[] longExpected = longText.toString().getBytes("UTF-8");
+        final ByteBuffer direct = ByteBuffer.allocateDirect(longExpected.length + 1);
+        direct.put((byte) 0);
+        Utf8Utils.encode(longText.toString(), direct);
+        assertEquals(direct.capacity(), direct.position());
+        direct.position(1);
+        final byte[] encoded = new byte[longExpected.length];
+        direct.get(encoded);
+        assertArrayEquals(longExpected, encoded);
+
+        // payload encoded directly into (masked) frame
+        final ByteBuffer data = new ProtocolHandler(true).frame(new TextFrame(text, false, true));
+        final Frame frame = new ProtocolHandler(false).unframe(data);
+        assertEquals(expected.length, frame.getPayloadLength());
+        assertArrayEquals(expected, frame.getPayloadData());
+
+        final TextFrame textFrame = new TextFrame(text, false, true);
+        assertArrayEquals(expected, textFrame.getPayloadData());
+        assertArrayEquals(expected, Frame.builder(textFrame).build().getPayloadData());
+    }
+
+    @Test
+    public void testBinaryFrameBufferPayload() throws Exception {
+        final byte[] payload = new byte[2000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        final ByteBuffer direct = ByteBuffer.allocateDirect(payload.length);
+        direct.put(payload).flip();
+        final ByteBuffer data = direct.asReadOnlyBuffer();
+
+        final TestWriter writer = new TestWriter();
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        protocolHandler.setWriter(writer);
+
+        protocolHandler.send(data).get();
+        final List<ByteBuffer> written = writer.getBuffers();
+
+        // header and the caller's (direct) payload, not copied.
+        assertEquals(2, written.size());
+        assertTrue(written.get(1).isDirect());
+        assertEquals(data, written.get(1));
+        assertEquals(0, data.position());
+
+        // masked frame has to be copied.
+        final Frame frame = new ProtocolHandler(false).unframe(
+                new ProtocolHandler(true).frame(new BinaryFrame(data, false, true)));
+        assertArrayEquals(payload, frame.getPayloadData());
+        assertEquals(0, data.position());
+    }
+
+    @Test
+    public void testGatheringWriteThreshold() throws Exception {
+        final TestWriter writer = new TestWriter();
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        protocolHandler.setWriter(writer);
+
+        protocolHandler.send(new byte[1023]).get();
+        assertEquals(1, writer.getWrite(0).length);
+        assertEquals(4 + 1023, writer.getWrite(0)[0].remaining());
+
+        // header and payload are written separately.
+        protocolHandler.send(new byte[1024]).get();
+        assertEquals(2, writer.getWrite(1).length);
+        assertEquals(4, writer.getWrite(1)[0].remaining());
+        assertEquals(1024, writer.getWrite(1)[1].remaining());
+
+        // masked payload is always copied.
+        final TestWriter maskedWriter = new TestWriter();
+        final ProtocolHandler maskingProtocolHandler = new ProtocolHandler(true);
+        maskingProtocolHandler.setWriter(maskedWriter);
+
+        maskingProtocolHandler.send(new byte[1023]).get();
+        maskingProtocolHandler.send(new byte[1024]).get();
+        assertEquals(1, maskedWriter.getWrite(0).length);
+        assertEquals(1, maskedWriter.getWrite(1).length);
+        assertEquals(8 + 1024, maskedWriter.getWrite(1)[0].remaining());
+    }
+
+    @Test
+    public void testWriterDefaultGatheringWrite() throws Exception {
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+        final Writer writer = new Writer() {
+            @Override
+            public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+                written.add(buffer);
+                completionHandler.completed(buffer);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        final ByteBuffer header = ByteBuffer.wrap(new byte[]{1, 2});
+        final ByteBuffer payload = ByteBuffer.wrap(new byte[]{0, 3, 4, 5});
+        payload.position(1);
+        final ByteBuffer[] buffers = {header, payload};
+        final List<ByteBuffer[]> completed = new ArrayList<ByteBuffer[]>();
+
+        writer.write(buffers, new CompletionHandler<ByteBuffer[]>() {
+            @Override
+            public void completed(ByteBuffer[] result) {
+                completed.add(result);
+            }
+        });
+
+        // remaining data of all buffers copied into one and delegated.
+        assertEquals(1, written.size());
+        assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5}), written.get(0));
+        assertFalse(written.get(0) == header || written.get(0) == payload);
+
+        // caller's buffers are consumed, handler gets the original array.
+        assertFalse(header.hasRemaining());
+        assertFalse(payload.hasRemaining());
+        assertEquals(1, completed.size());
+        assertSame(buffers, completed.get(0));
+    }
 }
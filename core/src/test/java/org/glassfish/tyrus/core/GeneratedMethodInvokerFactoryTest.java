@@ -0,0 +1,172 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link GeneratedMethodInvokerFactory}.
+ */
+public class GeneratedMethodInvokerFactoryTest {
+
+    private final MethodInvokerFactory factory = new GeneratedMethodInvokerFactory();
+
+    @Test
+    public void testInvoke() throws Exception {
+        final Target target = new Target();
+
+        MethodInvoker invoker = create(Target.class.getMethod("primitives", int.class, long.class, boolean.class,
+                double.class, char.class, byte.class, short.class, float.class));
+        assertEquals("1 2 true 3.5 c 4 5 6.5",
+                invoker.invoke(target, new Object[]{1, 2L, true, 3.5, 'c', (byte) 4, (short) 5, 6.5f}));
+
+        invoker = create(Target.class.getMethod("sum", long.class, int[].class));
+        assertEquals(16L, invoker.invoke(target, new Object[]{10L, new int[]{1, 2, 3}}));
+
+        invoker = create(Target.class.getMethod("store", Object.class));
+        assertNull(invoker.invoke(target, new Object[]{"value"}));
+        assertEquals("value", target.stored);
+
+        invoker = create(Target.class.getMethod("echo", String[].class));
+        assertArrayEquals(new String[]{"a", "b"}, (String[]) invoker.invoke(null, new Object[]{new String[]{"a", "b"}}));
+
+        invoker = create(Callable.class.getMethod("call"));
+        assertEquals("called", invoker.invoke(target, new Object[0]));
+    }
+
+    @Test
+    public void testException() throws Exception {
+        final MethodInvoker invoker = create(Target.class.getMethod("fail"));
+        try {
+            invoker.invoke(new Target(), new Object[0]);
+            fail();
+        } catch (InvocationTargetException e) {
+            assertEquals(IOException.class, e.getCause().getClass());
+        }
+    }
+
+    @Test
+    public void testInvalidArguments() throws Exception {
+        // only exceptions thrown by the invoked method are wrapped in InvocationTargetException.
+        final MethodInvoker invoker = create(Target.class.getMethod("sum", long.class, int[].class));
+        try {
+            invoker.invoke(new Target(), new Object[]{10L, "not an array"});
+            fail();
+        } catch (ClassCastException e) {
+            // expected
+        }
+        try {
+            invoker.invoke(new Target(), new Object[]{null, new int[0]});
+            fail();
+        } catch (NullPointerException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNotAccessible() throws Exception {
+        final Method method = PackagePrivateTarget.class.getMethod("get");
+        assertNull(factory.create(method));
+
+        final MethodInvoker invoker = ComponentProviderService.createClient().getMethodInvoker(method);
+        assertSame(method, invoker.getMethod());
+        assertEquals("private", invoker.invoke(new PackagePrivateTarget(), new Object[0]));
+    }
+
+    private MethodInvoker create(Method method) {
+        final MethodInvoker invoker = factory.create(method);
+        assertNotNull(invoker);
+        assertSame(method, invoker.getMethod());
+        return invoker;
+    }
+
+    public static class Target implements Callable<String> {
+
+        private Object stored;
+
+        public String primitives(int i, long l, boolean z, double d, char c, byte b, short s, float f) {
+            return i + " " + l + " " + z + " " + d + " " + c + " " + b + " " + s + " " + f;
+        }
+
+        public long sum(long start, int[] values) {
+            long result = start;
+            for (int value : values) {
+                result += value;
+            }
+            return result;
+        }
+
+        public void store(Object value) {
+            stored = value;
+        }
+
+        public static String[] echo(String[] values) {
+            return values;
+        }
+
+        public void fail() throws IOException {
+            throw new IOException();
+        }
+
+        @Override
+        public String call() {
+            return "called";
+        }
+    }
+
+    static class PackagePrivateTarget {
+
+        public String get() {
+            return "private";
+        }
+    }
+}
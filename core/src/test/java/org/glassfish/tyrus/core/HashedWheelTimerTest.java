@@ -0,0 +1,218 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.glassfish.tyrus.core.frame.Frame;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link HashedWheelTimer} and send timeouts.
+ */
+public class HashedWheelTimerTest {
+
+    @Test
+    public void testExpireAndCancel() throws Exception {
+        final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+        final HashedWheelTimer timer = new HashedWheelTimer(executorService, 10, TimeUnit.MILLISECONDS, 8);
+
+        try {
+            final CountDownLatch latch = new CountDownLatch(1);
+            final AtomicInteger cancelledRuns = new AtomicInteger(0);
+
+            final long start = System.nanoTime();
+            // longer than one round of the wheel.
+            final HashedWheelTimer.Timeout expiring = timer.newTimeout(new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            }, 150, TimeUnit.MILLISECONDS);
+
+            final HashedWheelTimer.Timeout cancelled = timer.newTimeout(new Runnable() {
+                @Override
+                public void run() {
+                    cancelledRuns.incrementAndGet();
+                }
+            }, 50, TimeUnit.MILLISECONDS);
+            assertTrue(cancelled.cancel());
+            assertFalse(cancelled.cancel());
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+            assertTrue(expiring.isExpired());
+            assertFalse(expiring.cancel());
+            assertEquals(0, cancelledRuns.get());
+        } finally {
+            timer.stop();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testManyTimeouts() throws Exception {
+        final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+        final HashedWheelTimer timer = new HashedWheelTimer(executorService, 5, TimeUnit.MILLISECONDS, 16);
+
+        try {
+            final CountDownLatch latch = new CountDownLatch(500);
+            final Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            };
+
+            for (int i = 0; i < 1000; i++) {
+                final HashedWheelTimer.Timeout timeout = timer.newTimeout(task, i % 100, TimeUnit.MILLISECONDS);
+                if (i % 2 == 1) {
+                    timeout.cancel();
+                }
+            }
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } finally {
+            timer.stop();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSendTimeout() throws Exception {
+        final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+        final HashedWheelTimer timer = new HashedWheelTimer(executorService, 10, TimeUnit.MILLISECONDS, 8);
+
+        try {
+            final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+            // writes are never completed.
+            protocolHandler.setWriter(new TestWriter(TestWriter.Mode.PENDING));
+            protocolHandler.setSendTimer(timer);
+            final TyrusSession session = TestWriter.createSession(TestWriter.createEndpointWrapper(), protocolHandler, true);
+            session.getAsyncRemote().setSendTimeout(50);
+
+            final Future<Void> future = session.getAsyncRemote().sendText("message");
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof SocketTimeoutException);
+            }
+
+            // timeout applies to RemoteEndpoint.Async only.
+            final Future<Frame> notTimed = protocolHandler.send("message");
+            Thread.sleep(200);
+            assertFalse(notTimed.isDone());
+        } finally {
+            timer.stop();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBatchedSendTimeout() throws Exception {
+        final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+        final HashedWheelTimer timer = new HashedWheelTimer(executorService, 10, TimeUnit.MILLISECONDS, 8);
+
+        try {
+            final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+            protocolHandler.setWriter(new TestWriter(TestWriter.Mode.PENDING));
+            protocolHandler.setSendTimer(timer);
+            final TyrusSession session = TestWriter.createSession(TestWriter.createEndpointWrapper(), protocolHandler, true);
+            session.getAsyncRemote().setSendTimeout(50);
+            session.getAsyncRemote().setBatchingAllowed(true);
+
+            final Future<Void> future = session.getAsyncRemote().sendText("message");
+            // time spent in the batch does not count.
+            Thread.sleep(200);
+            assertFalse(future.isDone());
+
+            session.getAsyncRemote().flushBatch();
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof SocketTimeoutException);
+            }
+        } finally {
+            timer.stop();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTimedSendCopiesPayload() throws Exception {
+        final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+        final HashedWheelTimer timer = new HashedWheelTimer(executorService, 10, TimeUnit.MILLISECONDS, 8);
+
+        try {
+            final TestWriter writer = new TestWriter();
+            final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+            protocolHandler.setWriter(writer);
+            protocolHandler.setSendTimer(timer);
+            final TyrusSession session = TestWriter.createSession(TestWriter.createEndpointWrapper(), protocolHandler, true);
+
+            // payload is not copied, header and payload are written separately.
+            session.getAsyncRemote().sendBinary(ByteBuffer.allocate(2048)).get();
+            assertEquals(2, writer.getWrite(0).length);
+
+            session.getAsyncRemote().setSendTimeout(1000);
+            session.getAsyncRemote().sendBinary(ByteBuffer.allocate(2048)).get();
+            assertEquals(1, writer.getWrite(1).length);
+        } finally {
+            timer.stop();
+            executorService.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests growth, release and shrinking of {@link IncomingBuffer}.
+ */
+public class IncomingBufferTest {
+
+    @Test
+    public void testGeometricGrowth() {
+        final AtomicLong bufferedBytes = new AtomicLong();
+        final IncomingBuffer incomingBuffer = new IncomingBuffer(1024 * 1024, 2, new HeapBufferAllocator(), bufferedBytes);
+
+        ByteBuffer buffer = incomingBuffer.append(ByteBuffer.allocate(300));
+        assertEquals(512, buffer.capacity());
+        assertEquals(512, bufferedBytes.get());
+
+        buffer = incomingBuffer.append(ByteBuffer.allocate(300));
+        assertEquals(600, buffer.remaining());
+        assertEquals(1024, buffer.capacity());
+        assertEquals(1024, bufferedBytes.get());
+
+        buffer = incomingBuffer.append(ByteBuffer.allocate(1500));
+        assertEquals(2100, buffer.remaining());
+        assertEquals(2304, buffer.capacity());
+        assertEquals(2304, bufferedBytes.get());
+    }
+
+    @Test
+    public void testLinearGrowth() {
+        final IncomingBuffer incomingBuffer = new IncomingBuffer(1024 * 1024, 1, new HeapBufferAllocator(), null);
+
+        incomingBuffer.append(ByteBuffer.allocate(300));
+        assertEquals(768, incomingBuffer.append(ByteBuffer.allocate(300)).capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOverflow() {
+        final IncomingBuffer incomingBuffer = new IncomingBuffer(1000, 2, new HeapBufferAllocator(), null);
+
+        incomingBuffer.append(ByteBuffer.allocate(600));
+        incomingBuffer.append(ByteBuffer.allocate(600));
+    }
+
+    @Test
+    public void testReleaseWhenDrained() {
+        final AtomicLong bufferedBytes = new AtomicLong();
+        final IncomingBuffer incomingBuffer = new IncomingBuffer(1024 * 1024, 2, new HeapBufferAllocator(), bufferedBytes);
+
+        final ByteBuffer data = ByteBuffer.allocate(100);
+        data.position(60);
+        incomingBuffer.retain(data);
+        assertTrue(incomingBuffer.hasRemaining());
+        assertEquals(256, bufferedBytes.get());
+
+        final ByteBuffer buffer = incomingBuffer.append(ByteBuffer.allocate(10));
+        assertEquals(50, buffer.remaining());
+        buffer.position(buffer.limit());
+        incomingBuffer.retain(buffer);
+
+        assertFalse(incomingBuffer.hasRemaining());
+        assertEquals(0, bufferedBytes.get());
+    }
+
+    @Test
+    public void testShrink() {
+        final AtomicLong bufferedBytes = new AtomicLong();
+        final IncomingBuffer incomingBuffer = new IncomingBuffer(1024 * 1024, 2, new HeapBufferAllocator(), bufferedBytes);
+
+        final ByteBuffer buffer = incomingBuffer.append(ByteBuffer.allocate(100 * 1024));
+        buffer.position(buffer.limit() - 10);
+        incomingBuffer.retain(buffer);
+
+        assertEquals(256, bufferedBytes.get());
+        assertEquals(10, incomingBuffer.append(ByteBuffer.allocate(0)).remaining());
+
+        incomingBuffer.release();
+        assertEquals(0, bufferedBytes.get());
+    }
+}
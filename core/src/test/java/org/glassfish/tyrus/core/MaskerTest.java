@@ -0,0 +1,141 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Compares word-at-a-time masking with plain byte-by-byte implementation.
+ */
+public class MaskerTest {
+
+    private static final int MASK = 0x12345678;
+
+    @Test
+    public void testMaskArray() {
+        for (int length = 0; length < 67; length++) {
+            final byte[] data = randomBytes(length);
+            final byte[] target = new byte[length + 3];
+            System.arraycopy(data, 0, target, 3, length);
+
+            new Masker(MASK).unmask(ByteBuffer.wrap(target), 3, length);
+
+            final byte[] expected = new byte[length + 3];
+            System.arraycopy(referenceMask(data), 0, expected, 3, length);
+            assertArrayEquals(expected, target);
+        }
+    }
+
+    @Test
+    public void testUnmaskInPlace() {
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            for (int length = 0; length < 67; length++) {
+                final byte[] data = randomBytes(length);
+                final ByteBuffer buffer = ByteBuffer.allocateDirect(length + 5).order(order);
+                buffer.position(5);
+                buffer.put(data);
+
+                new Masker(MASK).unmask(buffer, 5, length);
+
+                final byte[] result = new byte[length];
+                buffer.position(5);
+                buffer.get(result);
+                assertArrayEquals(referenceMask(data), result);
+            }
+        }
+    }
+
+    @Test
+    public void testUnmaskSplit() {
+        final byte[] data = randomBytes(1024);
+        final ByteBuffer buffer = ByteBuffer.wrap(data.clone());
+
+        final Masker masker = new Masker(MASK);
+        int position = 0;
+        for (int chunk = 1; position < data.length; chunk += 7) {
+            final int length = Math.min(chunk, data.length - position);
+            masker.unmask(buffer, position, length);
+            position += length;
+        }
+
+        assertArrayEquals(referenceMask(data), buffer.array());
+    }
+
+    @Test
+    public void testUnmaskFromBuffer() {
+        final byte[] data = randomBytes(100);
+        final ByteBuffer buffer = ByteBuffer.wrap(data.clone());
+
+        final Masker masker = new Masker(buffer);
+        masker.unmask(2);
+        masker.readMask();
+
+        final byte[] expected = new byte[94];
+        System.arraycopy(data, 6, expected, 0, 94);
+
+        final byte[] mask = masker.getMask();
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] ^= mask[i % 4];
+        }
+
+        assertArrayEquals(expected, masker.unmask(94));
+    }
+
+    private static byte[] referenceMask(byte[] data) {
+        final byte[] mask = new Masker(MASK).getMask();
+        final byte[] result = new byte[data.length];
+        for (int i = 0; i < data.length; i++) {
+            result[i] = (byte) (data[i] ^ mask[i % 4]);
+        }
+        return result;
+    }
+
+    private static byte[] randomBytes(int length) {
+        final byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
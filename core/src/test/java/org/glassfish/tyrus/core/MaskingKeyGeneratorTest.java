@@ -0,0 +1,133 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.glassfish.tyrus.core.frame.Frame;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link MaskingKeyGenerator}.
+ */
+public class MaskingKeyGeneratorTest {
+
+    private static final int KEYS = 10000;
+
+    @Test
+    public void testKeysVary() {
+        final MaskingKeyGenerator generator = new MaskingKeyGenerator();
+        final Set<Integer> keys = new HashSet<Integer>();
+        for (int i = 0; i < KEYS; i++) {
+            final int key = generator.nextKey();
+            assertTrue(key != 0);
+            keys.add(key);
+        }
+        assertTrue(keys.size() > KEYS - 10);
+
+        // each generator is seeded separately
+        final MaskingKeyGenerator other = new MaskingKeyGenerator();
+        boolean same = true;
+        for (int i = 0; i < 4; i++) {
+            same &= generator.nextKey() == other.nextKey();
+        }
+        assertFalse(same);
+    }
+
+    @Test
+    public void testKeysFromRandomBlock() {
+        final int[] fills = new int[1];
+        final MaskingKeyGenerator generator = new MaskingKeyGenerator(new SecureRandom() {
+            @Override
+            public synchronized void nextBytes(byte[] bytes) {
+                fills[0]++;
+                final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                // zero key is skipped
+                buffer.putInt(0);
+                while (buffer.hasRemaining()) {
+                    buffer.putInt(fills[0] * 1000 + buffer.position());
+                }
+            }
+        });
+
+        final int keysPerBlock = MaskingKeyGenerator.BLOCK_SIZE / 4;
+        for (int i = 1; i < keysPerBlock; i++) {
+            assertEquals(1000 + i * 4, generator.nextKey());
+        }
+        assertEquals(1, fills[0]);
+
+        // block is refilled once used up
+        assertEquals(2004, generator.nextKey());
+        assertEquals(2, fills[0]);
+    }
+
+    @Test
+    public void testCustomGenerator() {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(true);
+        protocolHandler.setMaskingKeyGenerator(new MaskingKeyGenerator() {
+            @Override
+            int nextKey() {
+                return 0x0A0B0C0D;
+            }
+        });
+
+        ByteBuffer data = protocolHandler.frame(frame().build());
+        assertEquals(0x0A0B0C0D, data.getInt(2));
+
+        // key set explicitly on the frame is used instead of the generated one
+        data = protocolHandler.frame(frame().maskingKey(0x01020304).build());
+        assertEquals(0x01020304, data.getInt(2));
+
+        final Frame frame = new ProtocolHandler(false).unframe(data);
+        assertEquals("data", new String(frame.getPayloadData()));
+    }
+
+    private static Frame.Builder frame() {
+        return new Frame.Builder().fin(true).opcode((byte) 0x02).payloadData("data".getBytes());
+    }
+}
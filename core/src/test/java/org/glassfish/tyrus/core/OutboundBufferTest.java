@@ -0,0 +1,170 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.core.frame.Frame;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests outbound buffer accounting of {@link ProtocolHandler}.
+ */
+public class OutboundBufferTest {
+
+    @Test
+    public void testWatermarks() throws Exception {
+        final TestWriter writer = new TestWriter(TestWriter.Mode.PENDING);
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        protocolHandler.setWriter(writer);
+        protocolHandler.setOutboundWatermarks(100, 200);
+
+        final List<Boolean> changes = new ArrayList<Boolean>();
+        protocolHandler.setWritabilityListener(null, new WritabilityListener() {
+            @Override
+            public void onWritabilityChanged(Session session, boolean writable) {
+                changes.add(writable);
+            }
+        });
+
+        // 2 bytes header + 48 bytes payload
+        for (int i = 0; i < 3; i++) {
+            protocolHandler.send(new byte[48]);
+        }
+        assertEquals(150, protocolHandler.getBufferedAmount());
+        assertTrue(protocolHandler.isWritable());
+
+        protocolHandler.send(new byte[48]);
+        assertEquals(200, protocolHandler.getBufferedAmount());
+        assertFalse(protocolHandler.isWritable());
+
+        writer.complete();
+        assertEquals(150, protocolHandler.getBufferedAmount());
+        assertFalse(protocolHandler.isWritable());
+
+        writer.complete();
+        assertEquals(100, protocolHandler.getBufferedAmount());
+        assertTrue(protocolHandler.isWritable());
+
+        writer.complete();
+        writer.complete();
+        assertEquals(0, protocolHandler.getBufferedAmount());
+        assertEquals(2, changes.size());
+        assertFalse(changes.get(0));
+        assertTrue(changes.get(1));
+    }
+
+    @Test(timeout = 5000)
+    public void testEqualWatermarks() throws Exception {
+        final TestWriter writer = new TestWriter(TestWriter.Mode.PENDING);
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        protocolHandler.setWriter(writer);
+        protocolHandler.setOutboundWatermarks(100, 100);
+
+        final List<Boolean> changes = new ArrayList<Boolean>();
+        protocolHandler.setWritabilityListener(null, new WritabilityListener() {
+            @Override
+            public void onWritabilityChanged(Session session, boolean writable) {
+                changes.add(writable);
+            }
+        });
+
+        protocolHandler.send(new byte[48]);
+        protocolHandler.send(new byte[48]);
+        assertEquals(100, protocolHandler.getBufferedAmount());
+        assertFalse(protocolHandler.isWritable());
+        assertEquals(1, changes.size());
+
+        writer.complete();
+        assertEquals(50, protocolHandler.getBufferedAmount());
+        assertTrue(protocolHandler.isWritable());
+        assertEquals(2, changes.size());
+        assertFalse(changes.get(0));
+        assertTrue(changes.get(1));
+    }
+
+    @Test
+    public void testOverflowPolicyProperty() {
+        assertEquals(OutboundOverflowPolicy.DROP, OutboundOverflowPolicy.fromProperty(OutboundOverflowPolicy.DROP));
+        assertEquals(OutboundOverflowPolicy.DROP, OutboundOverflowPolicy.fromProperty(" drop"));
+        assertEquals(OutboundOverflowPolicy.REJECT, OutboundOverflowPolicy.fromProperty("unknown"));
+        assertEquals(OutboundOverflowPolicy.REJECT, OutboundOverflowPolicy.fromProperty(null));
+    }
+
+    @Test
+    public void testBufferLimit() throws Exception {
+        final TestWriter writer = new TestWriter(TestWriter.Mode.PENDING);
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        protocolHandler.setWriter(writer);
+        protocolHandler.setOutboundBufferLimit(100, OutboundOverflowPolicy.REJECT);
+
+        protocolHandler.send(new byte[48]);
+        final Future<Frame> rejected = protocolHandler.send(new byte[60]);
+        try {
+            rejected.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(50, protocolHandler.getBufferedAmount());
+
+        protocolHandler.setOutboundBufferLimit(100, OutboundOverflowPolicy.DROP);
+        final Future<Frame> dropped = protocolHandler.send(new byte[60]);
+        dropped.get();
+        assertEquals(1, writer.getPendingCount());
+
+        // fragments are always sent
+        protocolHandler.stream(false, new byte[60], 0, 60);
+        assertEquals(2, writer.getPendingCount());
+        assertEquals(112, protocolHandler.getBufferedAmount());
+    }
+}
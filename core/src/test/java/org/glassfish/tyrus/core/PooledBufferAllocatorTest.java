@@ -0,0 +1,112 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests size classes and reuse of buffers in {@link PooledBufferAllocator}.
+ */
+public class PooledBufferAllocatorTest {
+
+    @Test
+    public void testSizeClasses() {
+        final PooledBufferAllocator allocator = new PooledBufferAllocator();
+
+        assertBuffer(allocator.allocate(1), 1, 256);
+        assertBuffer(allocator.allocate(256), 256, 256);
+        assertBuffer(allocator.allocate(257), 257, 512);
+        assertBuffer(allocator.allocate(65536), 65536, 65536);
+        assertBuffer(allocator.allocate(65537), 65537, 65537);
+    }
+
+    @Test
+    public void testReuse() {
+        final PooledBufferAllocator allocator = new PooledBufferAllocator();
+
+        final ByteBuffer buffer = allocator.allocate(1000);
+        buffer.put((byte) 1);
+        allocator.release(buffer);
+
+        final ByteBuffer reused = allocator.allocate(600);
+        assertSame(buffer, reused);
+        assertBuffer(reused, 600, 1024);
+
+        // different size class
+        assertNotSame(buffer, allocator.allocate(100));
+    }
+
+    @Test
+    public void testForeignBufferIgnored() {
+        final PooledBufferAllocator allocator = new PooledBufferAllocator();
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(1024);
+        allocator.release(direct);
+        allocator.release(ByteBuffer.allocate(1000));
+        allocator.release(ByteBuffer.allocate(1024).asReadOnlyBuffer());
+
+        final ByteBuffer buffer = allocator.allocate(1024);
+        assertNotSame(direct, buffer);
+        assertTrue(!buffer.isDirect() && !buffer.isReadOnly());
+    }
+
+    @Test
+    public void testDirect() {
+        final PooledBufferAllocator allocator = new PooledBufferAllocator(true);
+
+        final ByteBuffer buffer = allocator.allocate(300);
+        assertTrue(buffer.isDirect());
+        allocator.release(buffer);
+        assertSame(buffer, allocator.allocate(512));
+    }
+
+    private static void assertBuffer(ByteBuffer buffer, int limit, int capacity) {
+        assertEquals(0, buffer.position());
+        assertEquals(limit, buffer.limit());
+        assertEquals(capacity, buffer.capacity());
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.websocket.Extension;
+
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.extension.ShareableOutgoingExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.core.frame.TextFrame;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests {@link PreparedMessage}.
+ */
+public class PreparedMessageTest {
+
+    private static final String TEXT = "prepared \u00E9";
+
+    @Test
+    public void testFramedData() throws Exception {
+        final PreparedMessage message = new PreparedMessage(TEXT);
+
+        final ByteBuffer expected = new ProtocolHandler(false).frame(new TextFrame(TEXT, false, true));
+        assertEquals(expected, message.getFramedData());
+
+        // masked frames share only the payload
+        final Frame frame = new ProtocolHandler(false).unframe(sendAndGet(new ProtocolHandler(true), message));
+        assertArrayEquals(TEXT.getBytes("UTF-8"), frame.getPayloadData());
+    }
+
+    @Test
+    public void testSharedFrame() throws Exception {
+        final PreparedMessage message = new PreparedMessage(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+
+        final ByteBuffer first = sendAndGet(new ProtocolHandler(false), message);
+        final ByteBuffer second = sendAndGet(new ProtocolHandler(false), message);
+        assertSame(first.array(), second.array());
+        assertEquals(message.getFramedData(), first);
+    }
+
+    @Test
+    public void testExtensions() throws Exception {
+        final PreparedMessage message = new PreparedMessage(TEXT);
+
+        final CountingExtension shareable = new ShareableExtension();
+        final ByteBuffer first = sendAndGet(createProtocolHandler(shareable), message);
+        final ByteBuffer second = sendAndGet(createProtocolHandler(shareable), message);
+        assertEquals(1, shareable.processed);
+        assertSame(first.array(), second.array());
+
+        final CountingExtension notShareable = new CountingExtension();
+        final ByteBuffer third = sendAndGet(createProtocolHandler(notShareable), message);
+        sendAndGet(createProtocolHandler(notShareable), message);
+        assertEquals(2, notShareable.processed);
+        assertEquals(first, third);
+    }
+
+    private static ProtocolHandler createProtocolHandler(Extension extension) {
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        protocolHandler.setExtensions(Collections.singletonList(extension));
+        protocolHandler.setExtensionContext(new ExtendedExtension.ExtensionContext() {
+            @Override
+            public Map<String, Object> getProperties() {
+                return properties;
+            }
+        });
+        return protocolHandler;
+    }
+
+    private static ByteBuffer sendAndGet(ProtocolHandler protocolHandler, PreparedMessage message) throws Exception {
+        final TestWriter writer = new TestWriter();
+        protocolHandler.setWriter(writer);
+
+        protocolHandler.send(message).get();
+        assertEquals(1, writer.getWriteCount());
+        return writer.getWrite(0)[0];
+    }
+
+    private static class CountingExtension implements ExtendedExtension {
+
+        private int processed = 0;
+
+        @Override
+        public Frame processIncoming(ExtensionContext context, Frame frame) {
+            return frame;
+        }
+
+        @Override
+        public Frame processOutgoing(ExtensionContext context, Frame frame) {
+            processed++;
+            return Frame.builder(frame).rsv2(true).build();
+        }
+
+        @Override
+        public List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void onHandshakeResponse(ExtensionContext context, List<Parameter> responseParameters) {
+        }
+
+        @Override
+        public void destroy(ExtensionContext context) {
+        }
+
+        @Override
+        public String getName() {
+            return "counting";
+        }
+
+        @Override
+        public List<Parameter> getParameters() {
+            return Collections.emptyList();
+        }
+    }
+
+    private static class ShareableExtension extends CountingExtension implements ShareableOutgoingExtension {
+
+        @Override
+        public Object getOutgoingKey(ExtensionContext context) {
+            return "key";
+        }
+    }
+}
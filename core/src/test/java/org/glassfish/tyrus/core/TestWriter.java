@@ -0,0 +1,303 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Writer;
+
+/**
+ * {@link Writer} shared by core tests, together with factory methods for sessions backed by it.
+ * <p/>
+ * Records written buffers and completes, fails or keeps pending each write, see {@link Mode}.
+ */
+class TestWriter extends Writer {
+
+    /**
+     * What happens with written data.
+     */
+    enum Mode {
+        /**
+         * Writes are completed immediately.
+         */
+        COMPLETE,
+        /**
+         * Writes are failed immediately with {@link IOException}.
+         */
+        FAIL,
+        /**
+         * Writes are completed by {@link TestWriter#complete()}.
+         */
+        PENDING
+    }
+
+    private final Mode mode;
+    private final boolean record;
+    private final List<ByteBuffer[]> writes = Collections.synchronizedList(new ArrayList<ByteBuffer[]>());
+    private final AtomicInteger writeCount = new AtomicInteger();
+    private final BlockingQueue<Runnable> pending = new LinkedBlockingQueue<Runnable>();
+    private volatile boolean closed = false;
+
+    /**
+     * Create writer which records written buffers and completes writes immediately.
+     */
+    TestWriter() {
+        this(Mode.COMPLETE, true);
+    }
+
+    /**
+     * Create writer which records written buffers.
+     *
+     * @param mode what happens with written data.
+     */
+    TestWriter(Mode mode) {
+        this(mode, true);
+    }
+
+    /**
+     * Create writer.
+     *
+     * @param mode   what happens with written data.
+     * @param record {@code false} when only number of writes should be recorded (benchmarks).
+     */
+    TestWriter(Mode mode, boolean record) {
+        this.mode = mode;
+        this.record = record;
+    }
+
+    @Override
+    public void write(final ByteBuffer buffer, final CompletionHandler<ByteBuffer> completionHandler) {
+        written(new ByteBuffer[]{buffer});
+        switch (mode) {
+            case COMPLETE:
+                completionHandler.completed(buffer);
+                break;
+            case FAIL:
+                completionHandler.failed(new IOException());
+                break;
+            default:
+                pending.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        completionHandler.completed(buffer);
+                    }
+                });
+        }
+    }
+
+    @Override
+    public void write(final ByteBuffer[] buffers, final CompletionHandler<ByteBuffer[]> completionHandler) {
+        written(buffers);
+        switch (mode) {
+            case COMPLETE:
+                completionHandler.completed(buffers);
+                break;
+            case FAIL:
+                completionHandler.failed(new IOException());
+                break;
+            default:
+                pending.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        completionHandler.completed(buffers);
+                    }
+                });
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+    }
+
+    private void written(ByteBuffer[] buffers) {
+        writeCount.incrementAndGet();
+        if (record) {
+            writes.add(buffers);
+        }
+    }
+
+    /**
+     * Complete the oldest pending write.
+     *
+     * @throws java.util.NoSuchElementException when there is no pending write.
+     */
+    void complete() {
+        pending.remove().run();
+    }
+
+    /**
+     * Complete the oldest pending write, waiting for it if necessary.
+     *
+     * @param timeout how long to wait.
+     * @param unit    unit of {@code timeout}.
+     * @return {@code true} when a write was completed, {@code false} when the timeout elapsed.
+     * @throws InterruptedException when interrupted while waiting.
+     */
+    boolean complete(long timeout, TimeUnit unit) throws InterruptedException {
+        final Runnable completion = pending.poll(timeout, unit);
+        if (completion == null) {
+            return false;
+        }
+        completion.run();
+        return true;
+    }
+
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    int getWriteCount() {
+        return writeCount.get();
+    }
+
+    /**
+     * Get buffers passed to the given write.
+     *
+     * @param index index of the write.
+     * @return written buffers; one buffer when written by {@link #write(ByteBuffer, CompletionHandler)}.
+     */
+    ByteBuffer[] getWrite(int index) {
+        return writes.get(index);
+    }
+
+    /**
+     * Get all written buffers in order.
+     *
+     * @return written buffers.
+     */
+    List<ByteBuffer> getBuffers() {
+        final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        synchronized (writes) {
+            for (ByteBuffer[] write : writes) {
+                Collections.addAll(buffers, write);
+            }
+        }
+        return buffers;
+    }
+
+    /**
+     * Get payload of an unmasked text frame with payload shorter than 126 bytes written as one buffer.
+     *
+     * @param index index of the write.
+     * @return text of the frame.
+     */
+    String getText(int index) {
+        final ByteBuffer buffer = writes.get(index)[0];
+        // skip 2 bytes of frame header
+        return new String(buffer.array(), buffer.arrayOffset() + buffer.position() + 2, buffer.remaining() - 2);
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Create endpoint wrapper of an endpoint which does nothing.
+     *
+     * @return endpoint wrapper.
+     * @throws Exception when the wrapper cannot be created.
+     */
+    static TyrusEndpointWrapper createEndpointWrapper() throws Exception {
+        return new TyrusEndpointWrapper(new Endpoint() {
+            @Override
+            public void onOpen(Session session, EndpointConfig config) {
+            }
+        }, null, ComponentProviderService.create(), null, null, null, null, null);
+    }
+
+    /**
+     * Create session with connected web socket writing to the given writer.
+     *
+     * @param endpointWrapper endpoint of the session.
+     * @param writer          writer of the session.
+     * @return new session.
+     */
+    static TyrusSession createSession(TyrusEndpointWrapper endpointWrapper, Writer writer) {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        protocolHandler.setWriter(writer);
+        return createSession(endpointWrapper, protocolHandler, true);
+    }
+
+    /**
+     * Create session with web socket using the given protocol handler.
+     *
+     * @param endpointWrapper endpoint of the session.
+     * @param protocolHandler protocol handler of the session web socket.
+     * @param connected       value returned by {@link TyrusWebSocket#isConnected()}.
+     * @return new session.
+     */
+    static TyrusSession createSession(TyrusEndpointWrapper endpointWrapper, ProtocolHandler protocolHandler,
+                                      final boolean connected) {
+        return createSession(endpointWrapper, new TyrusWebSocket(protocolHandler, null) {
+            @Override
+            public boolean isConnected() {
+                return connected;
+            }
+        });
+    }
+
+    /**
+     * Create session with the given web socket.
+     *
+     * @param endpointWrapper endpoint of the session.
+     * @param webSocket       web socket of the session.
+     * @return new session.
+     */
+    static TyrusSession createSession(TyrusEndpointWrapper endpointWrapper, TyrusWebSocket webSocket) {
+        return new TyrusSession(null, webSocket, endpointWrapper, null, null, false, null, null, null, null,
+                new HashMap<String, List<String>>(), null, null);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.Arrays;
+
+import javax.websocket.Encoder;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.core.coder.CoderAdapter;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@link TyrusEndpointWrapper}.
+ */
+public class TyrusEndpointWrapperTest {
+
+    @Test
+    public void testEncoderSelection() throws Exception {
+        final TyrusEndpointWrapper wrapper = createWrapper(AnyEncoder.class);
+        final TyrusSession session = TestWriter.createSession(wrapper, new TestWriter());
+
+        assertEquals("any", wrapper.doEncode(session, new Any()));
+        // subclass of declared type, resolved lazily
+        assertEquals("any", wrapper.doEncode(session, new Prefixed()));
+        assertEquals("any", wrapper.doEncode(session, new Prefixed()));
+        assertEquals("1", wrapper.doEncode(session, 1));
+    }
+
+    @Test
+    public void testEncoderSelectionOrder() throws Exception {
+        // first registered encoder accepting the type wins, even when a later one declares the exact type.
+        TyrusEndpointWrapper wrapper = createWrapper(AnyEncoder.class, PrefixedEncoder.class);
+        TyrusSession session = TestWriter.createSession(wrapper, new TestWriter());
+
+        assertEquals("any", wrapper.doEncode(session, new Prefixed()));
+        assertEquals("any", wrapper.doEncode(session, new Prefixed()));
+        assertEquals("any", wrapper.doEncode(session, new Any()));
+
+        wrapper = createWrapper(PrefixedEncoder.class, AnyEncoder.class);
+        session = TestWriter.createSession(wrapper, new TestWriter());
+
+        assertEquals("prefixed", wrapper.doEncode(session, new Prefixed()));
+        assertEquals("any", wrapper.doEncode(session, new Any()));
+        // subclass of both declared types, resolved lazily
+        assertEquals("prefixed", wrapper.doEncode(session, new PrefixedSubclass()));
+        assertEquals("prefixed", wrapper.doEncode(session, new PrefixedSubclass()));
+    }
+
+    private static TyrusEndpointWrapper createWrapper(Class<? extends Encoder>... encoders) throws Exception {
+        final ServerEndpointConfig config = ServerEndpointConfig.Builder.create(TestEndpoint.class, "/test")
+                .encoders(Arrays.asList(encoders)).build();
+        return new TyrusEndpointWrapper(TestEndpoint.class, config, ComponentProviderService.create(), null, null, null);
+    }
+
+    public static class TestEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+
+    public static class Any {
+    }
+
+    public static class Prefixed extends Any {
+    }
+
+    public static class PrefixedSubclass extends Prefixed {
+    }
+
+    public static class AnyEncoder extends CoderAdapter implements Encoder.Text<Any> {
+
+        @Override
+        public String encode(Any object) {
+            return "any";
+        }
+    }
+
+    public static class PrefixedEncoder extends CoderAdapter implements Encoder.Text<Prefixed> {
+
+        @Override
+        public String encode(Prefixed object) {
+            return "prefixed";
+        }
+    }
+}
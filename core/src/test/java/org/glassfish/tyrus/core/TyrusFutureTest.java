@@ -0,0 +1,122 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link TyrusFuture}.
+ */
+public class TyrusFutureTest {
+
+    @Test
+    public void testWaitingThreads() throws Exception {
+        final TyrusFuture<String> future = new TyrusFuture<String>();
+        final CountDownLatch started = new CountDownLatch(3);
+        final CountDownLatch finished = new CountDownLatch(3);
+
+        for (int i = 0; i < 3; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        if ("result".equals(future.get())) {
+                            finished.countDown();
+                        }
+                    } catch (Exception e) {
+                        // countdown not reached.
+                    }
+                }
+            }.start();
+        }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertFalse(future.isDone());
+
+        future.setResult("result");
+        future.setResult("ignored");
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertTrue(future.isDone());
+        assertEquals("result", future.get(1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        final TyrusFuture<String> future = new TyrusFuture<String>();
+        final Exception exception = new Exception();
+        future.setFailure(exception);
+        future.setResult("ignored");
+
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() == exception);
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        final TyrusFuture<String> future = new TyrusFuture<String>();
+
+        try {
+            future.get(20, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException e) {
+            // expected
+        }
+
+        future.setResult("result");
+        assertEquals("result", future.get(20, TimeUnit.MILLISECONDS));
+    }
+}
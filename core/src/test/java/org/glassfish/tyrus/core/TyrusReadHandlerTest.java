@@ -0,0 +1,187 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.websocket.Extension;
+
+import org.glassfish.tyrus.core.frame.TextFrame;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests parsing of incoming data in {@link TyrusWebSocketEngine.TyrusReadHandler}.
+ */
+public class TyrusReadHandlerTest {
+
+    private final List<String> messages = new ArrayList<String>();
+    private final AtomicLong bufferedBytes = new AtomicLong();
+
+    @Test
+    public void testSeveralFramesInOneRead() {
+        final TyrusWebSocketEngine.TyrusReadHandler readHandler = createReadHandler();
+
+        readHandler.handle(frames("first", "second", "third"));
+
+        assertEquals(Arrays.asList("first", "second", "third"), messages);
+        // parsed directly from passed buffer.
+        assertEquals(0, bufferedBytes.get());
+    }
+
+    @Test
+    public void testSplitFrame() {
+        final TyrusWebSocketEngine.TyrusReadHandler readHandler = createReadHandler();
+        final ByteBuffer data = frames("split in header", "split in payload");
+        final int firstLength = frames("split in header").remaining();
+
+        // split in the header of the first frame.
+        readHandler.handle(slice(data, 0, 1));
+        assertTrue(messages.isEmpty());
+        assertTrue(bufferedBytes.get() > 0);
+
+        // rest of the first frame and a part of the second frame payload.
+        readHandler.handle(slice(data, 1, firstLength + 8));
+        assertEquals(Collections.singletonList("split in header"), messages);
+
+        readHandler.handle(slice(data, firstLength + 8, data.limit()));
+        assertEquals(Arrays.asList("split in header", "split in payload"), messages);
+
+        // accumulator is drained and released, following read is parsed directly.
+        assertEquals(0, bufferedBytes.get());
+        final ByteBuffer next = frames("next");
+        final ByteBuffer original = copy(next);
+        readHandler.handle(next);
+        assertEquals(Arrays.asList("split in header", "split in payload", "next"), messages);
+        assertEquals(0, bufferedBytes.get());
+        // masked payload was unmasked in place.
+        next.position(0);
+        assertFalse(original.equals(next));
+    }
+
+    @Test
+    public void testReadOnlyBuffer() {
+        final TyrusWebSocketEngine.TyrusReadHandler readHandler = createReadHandler();
+        final ByteBuffer data = frames("first", "second");
+        final ByteBuffer original = copy(data);
+
+        readHandler.handle(data.asReadOnlyBuffer());
+
+        assertEquals(Arrays.asList("first", "second"), messages);
+        assertArrayEquals(original.array(), copy(data).array());
+        assertEquals(0, bufferedBytes.get());
+    }
+
+    @Test
+    public void testHandleAfterClose() {
+        final TyrusWebSocketEngine.TyrusReadHandler readHandler = createReadHandler();
+        final ByteBuffer data = frames("message");
+
+        readHandler.handle(slice(data, 0, 3));
+        assertTrue(bufferedBytes.get() > 0);
+
+        readHandler.close();
+        assertEquals(0, bufferedBytes.get());
+
+        // data are dropped, no buffer is allocated.
+        readHandler.handle(slice(data, 3, data.limit()));
+        readHandler.handle(frames("first", "second"));
+        readHandler.handle(slice(frames("incomplete"), 0, 3));
+        assertTrue(messages.isEmpty());
+        assertEquals(0, bufferedBytes.get());
+    }
+
+    private TyrusWebSocketEngine.TyrusReadHandler createReadHandler() {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        protocolHandler.setExtensions(Collections.<Extension>emptyList());
+        final TyrusWebSocket socket = new TyrusWebSocket(protocolHandler, null) {
+            @Override
+            public void onMessage(TextFrame frame) {
+                messages.add(frame.getTextPayload());
+            }
+        };
+        final IncomingBuffer incomingBuffer = new IncomingBuffer(1024 * 1024, 2, new HeapBufferAllocator(), bufferedBytes);
+        return new TyrusWebSocketEngine.TyrusReadHandler(protocolHandler, socket, null, incomingBuffer, null);
+    }
+
+    /**
+     * Serialize masked text frames (as sent by client) into one buffer.
+     */
+    private static ByteBuffer frames(String... texts) {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(true);
+        final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        int length = 0;
+        for (String text : texts) {
+            final ByteBuffer buffer = protocolHandler.frame(new TextFrame(text, false, true));
+            buffers.add(buffer);
+            length += buffer.remaining();
+        }
+
+        final ByteBuffer data = ByteBuffer.allocate(length);
+        for (ByteBuffer buffer : buffers) {
+            data.put(buffer);
+        }
+        data.flip();
+        return data;
+    }
+
+    private static ByteBuffer slice(ByteBuffer data, int from, int to) {
+        final ByteBuffer slice = data.duplicate();
+        slice.limit(to).position(from);
+        return slice.slice();
+    }
+
+    private static ByteBuffer copy(ByteBuffer data) {
+        final ByteBuffer copy = ByteBuffer.allocate(data.limit());
+        copy.put((ByteBuffer) data.duplicate().position(0));
+        copy.flip();
+        return copy;
+    }
+}
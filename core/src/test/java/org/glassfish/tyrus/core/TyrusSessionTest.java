@@ -43,10 +43,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import javax.websocket.Decoder;
 import javax.websocket.DeploymentException;
+import javax.websocket.Encoder;
 import javax.websocket.Endpoint;
 import javax.websocket.EndpointConfig;
 import javax.websocket.MessageHandler;
@@ -54,11 +65,17 @@ import javax.websocket.OnMessage;
 import javax.websocket.PongMessage;
 import javax.websocket.Session;
 import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.core.coder.CoderAdapter;
 
 import org.junit.Test;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -469,6 +486,364 @@ public class TyrusSessionTest {
         assertNotNull(session2.getUserProperties().get(test2));
     }
 
+    @Test
+    public void testSendConflated() {
+        final TestWriter writer = new TestWriter(TestWriter.Mode.PENDING);
+        final TyrusSession session = TestWriter.createSession(endpointWrapper, writer);
+        // any unwritten data make the session non-writable.
+        session.setOutboundWatermarks(0, 1);
+
+        session.sendConflated("a", "a1");
+        session.sendConflated("b", "b1");
+        session.sendConflated("a", "a2");
+        session.sendConflated("a", "a3");
+        assertEquals(1, writer.getWriteCount());
+        assertFalse(session.isWritable());
+
+        writer.complete();
+        assertEquals(2, writer.getWriteCount());
+
+        writer.complete();
+        assertEquals(3, writer.getWriteCount());
+
+        writer.complete();
+        assertTrue(session.isWritable());
+        assertEquals(0, session.getBufferedAmount());
+
+        assertEquals("a1", writer.getText(0));
+        assertEquals("b1", writer.getText(1));
+        assertEquals("a3", writer.getText(2));
+    }
+
+    @Test(timeout = 30000)
+    public void testSendConflatedConcurrentCompletion() throws Exception {
+        final TestWriter writer = new TestWriter(TestWriter.Mode.PENDING);
+        final TyrusSession session = TestWriter.createSession(endpointWrapper, writer);
+        session.setOutboundWatermarks(0, 1);
+
+        // completions (and so sending of pending conflated messages) run concurrently with sendConflated calls.
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final Thread completer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (!done.get() || writer.getPendingCount() > 0) {
+                        writer.complete(10, TimeUnit.MILLISECONDS);
+                    }
+                } catch (InterruptedException e) {
+                    // do nothing.
+                }
+            }
+        };
+        completer.start();
+
+        final int keys = 4;
+        final int messages = 2000;
+        for (int i = 0; i < messages; i++) {
+            session.sendConflated("k" + (i % keys), (i % keys) + ":" + i);
+        }
+        done.set(true);
+        completer.join();
+
+        assertTrue(session.isWritable());
+        assertEquals(0, session.getBufferedAmount());
+
+        // values of each key are written in order and the latest one is always written.
+        final int[] last = new int[keys];
+        Arrays.fill(last, -1);
+        for (int i = 0; i < writer.getWriteCount(); i++) {
+            final String message = writer.getText(i);
+            final int key = Integer.parseInt(message.substring(0, message.indexOf(':')));
+            final int value = Integer.parseInt(message.substring(message.indexOf(':') + 1));
+            assertTrue(value > last[key]);
+            last[key] = value;
+        }
+        for (int key = 0; key < keys; key++) {
+            assertEquals(messages - keys + key, last[key]);
+        }
+    }
+
+    @Test
+    public void testSendConflatedFailureLogged() {
+        final TestWriter writer = new TestWriter(TestWriter.Mode.FAIL);
+        final TyrusSession session = TestWriter.createSession(endpointWrapper, writer);
+
+        final List<LogRecord> records = new ArrayList<LogRecord>();
+        final Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final Logger logger = Logger.getLogger(TyrusSession.class.getName());
+        final Level level = logger.getLevel();
+        logger.addHandler(handler);
+        logger.setLevel(Level.FINE);
+        try {
+            session.sendConflated("a", "a1");
+            session.sendConflated("b", ByteBuffer.wrap(new byte[]{1}));
+        } finally {
+            logger.removeHandler(handler);
+            logger.setLevel(level);
+        }
+
+        assertEquals(2, writer.getWriteCount());
+        assertEquals(2, records.size());
+        for (LogRecord record : records) {
+            assertTrue(record.getThrown() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testPublish() throws IOException {
+        final TestWriter writer = new TestWriter();
+        final TyrusSession session1 = TestWriter.createSession(endpointWrapper, writer);
+        final TyrusSession session2 = TestWriter.createSession(endpointWrapper, writer);
+        final TyrusSession session3 = TestWriter.createSession(endpointWrapper, writer);
+
+        session1.subscribe("room");
+        session2.subscribe("room");
+        session3.subscribe("other");
+
+        BroadcastResult result = session3.publish("room", "a");
+        assertTrue(result.isDone());
+        assertEquals(2, result.getSent());
+        assertEquals(2, writer.getWriteCount());
+
+        session2.unsubscribe("room");
+        assertEquals(1, session3.publish("room", "b").getSent());
+        assertEquals(3, writer.getWriteCount());
+
+        session1.close();
+        assertTrue(session1.getSubscriptions().isEmpty());
+        assertEquals(0, session3.publish("room", "c").getSessions());
+        assertEquals(1, session2.publish("other", "d").getSent());
+    }
+
+    @Test
+    public void testDecoderDispatch() throws Exception {
+        final ServerEndpointConfig config = ServerEndpointConfig.Builder.create(EchoEndpoint.class, "/echo")
+                .decoders(Arrays.<Class<? extends Decoder>>asList(PrefixDecoder.class, AnyDecoder.class)).build();
+        final TyrusEndpointWrapper wrapper = new TyrusEndpointWrapper(EchoEndpoint.class, config, ComponentProviderService.create(), null, null, null);
+        final TyrusSession session = createSession(wrapper);
+
+        final List<Object> received = new ArrayList<Object>();
+        session.addMessageHandler(new MessageHandler.Whole<Any>() {
+            @Override
+            public void onMessage(Any message) {
+                received.add(message);
+            }
+        });
+
+        PrefixDecoder.willDecodeCalls = 0;
+        session.notifyMessageHandlers("prefix:a");
+        session.notifyMessageHandlers("b");
+        assertEquals(2, received.size());
+        assertTrue(received.get(0) instanceof Prefixed);
+        assertTrue(received.get(1) instanceof Any);
+        assertEquals(2, PrefixDecoder.willDecodeCalls);
+    }
+
+    @Test
+    public void testDispatchTableUpdate() throws Exception {
+        final TyrusSession session = createSession(endpointWrapper);
+        final List<Object> received = new ArrayList<Object>();
+
+        final MessageHandler.Whole<String> wholeText = new MessageHandler.Whole<String>() {
+            @Override
+            public void onMessage(String message) {
+                received.add("whole:" + message);
+            }
+        };
+        assertNull(session.getMessageHandler(String.class));
+        session.addMessageHandler(wholeText);
+        assertSame(wholeText, session.getMessageHandler(String.class));
+        session.notifyMessageHandlers("a");
+        session.removeMessageHandler(wholeText);
+        assertNull(session.getMessageHandler(String.class));
+
+        final MessageHandler.Partial<String> partialText = new MessageHandler.Partial<String>() {
+            @Override
+            public void onMessage(String message, boolean last) {
+                received.add("partial:" + message);
+            }
+        };
+        session.addMessageHandler(partialText);
+        session.notifyMessageHandlers("b", true);
+        // removed handler is not notified
+        session.notifyMessageHandlers("c");
+        session.removeMessageHandler(partialText);
+        session.notifyMessageHandlers("d", true);
+
+        final MessageHandler.Whole<PongMessage> pongHandler = new MessageHandler.Whole<PongMessage>() {
+            @Override
+            public void onMessage(PongMessage message) {
+                received.add(message);
+            }
+        };
+        final PongMessage pong = new PongMessage() {
+            @Override
+            public ByteBuffer getApplicationData() {
+                return ByteBuffer.allocate(0);
+            }
+        };
+        session.addMessageHandler(pongHandler);
+        session.notifyPongHandler(pong);
+        session.removeMessageHandler(pongHandler);
+        session.notifyPongHandler(pong);
+
+        assertEquals(Arrays.<Object>asList("whole:a", "partial:b", pong), received);
+    }
+
+    @Test
+    public void testDispatchTableHandlers() throws Exception {
+        final TyrusSession session = createSession(endpointWrapper);
+        final List<Object> received = new ArrayList<Object>();
+
+        final MessageHandler.Partial<String> partialText = new MessageHandler.Partial<String>() {
+            @Override
+            public void onMessage(String message, boolean last) {
+                received.add("partial:" + message);
+            }
+        };
+        final MessageHandler.Whole<ByteBuffer> wholeBinary = new MessageHandler.Whole<ByteBuffer>() {
+            @Override
+            public void onMessage(ByteBuffer message) {
+                received.add("whole:" + message.remaining());
+            }
+        };
+        final MessageHandler.Whole<PongMessage> pongHandler = new MessageHandler.Whole<PongMessage>() {
+            @Override
+            public void onMessage(PongMessage message) {
+            }
+        };
+        final MessageHandler.Partial<ByteBuffer> partialBinary = new MessageHandler.Partial<ByteBuffer>() {
+            @Override
+            public void onMessage(ByteBuffer message, boolean last) {
+                received.add("partial:" + message.remaining());
+            }
+        };
+
+        session.addMessageHandler(partialText);
+        session.addMessageHandler(wholeBinary);
+        session.addMessageHandler(pongHandler);
+        assertDispatchTable(session);
+
+        session.notifyMessageHandlers("a", true);
+        session.notifyMessageHandlers(ByteBuffer.allocate(1));
+
+        session.removeMessageHandler(wholeBinary);
+        session.addMessageHandler(partialBinary);
+        assertDispatchTable(session);
+
+        session.notifyMessageHandlers(ByteBuffer.allocate(2), true);
+        session.notifyMessageHandlers("b", true);
+
+        assertEquals(Arrays.<Object>asList("partial:a", "whole:1", "partial:2", "partial:b"), received);
+    }
+
+    /**
+     * Dispatch table contains all registered handlers, each with its type at the same index.
+     */
+    private static void assertDispatchTable(TyrusSession session) {
+        final MessageDispatchTable table = session.getDispatchTable();
+        assertEquals(session.getMessageHandlers(), new HashSet<MessageHandler>(Arrays.asList(table.getHandlers())));
+        assertEquals(table.getHandlers().length, table.getHandlerTypes().length);
+        for (int i = 0; i < table.getHandlers().length; i++) {
+            assertEquals(MessageHandlerManager.getHandlerType(table.getHandlers()[i]), table.getHandlerTypes()[i]);
+            if (table.getHandlers()[i] instanceof MessageHandler.Whole) {
+                assertSame(table.getHandlers()[i], session.getMessageHandler(table.getHandlerTypes()[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testCoderInstances() throws Exception {
+        final ServerEndpointConfig config = ServerEndpointConfig.Builder.create(EchoEndpoint.class, "/echo").build();
+        final TyrusEndpointWrapper wrapper = new TyrusEndpointWrapper(EchoEndpoint.class, config, ComponentProviderService.create(), null, null, null);
+        final ComponentProviderService componentProvider = ComponentProviderService.create();
+        final TyrusSession session1 = createSession(wrapper);
+        final TyrusSession session2 = createSession(wrapper);
+        final ErrorCollector collector = new ErrorCollector();
+
+        final CountingEncoder encoder1 = (CountingEncoder) componentProvider.getCoderInstance(CountingEncoder.class, session1, config, collector);
+        assertSame(encoder1, componentProvider.getCoderInstance(CountingEncoder.class, session1, config, collector));
+        assertEquals(1, encoder1.initialized);
+
+        final CountingEncoder encoder2 = (CountingEncoder) componentProvider.getCoderInstance(CountingEncoder.class, session2, config, collector);
+        assertNotSame(encoder1, encoder2);
+
+        componentProvider.removeSession(session1);
+        assertEquals(1, encoder1.destroyed);
+        assertEquals(0, encoder2.destroyed);
+        assertNotSame(encoder1, componentProvider.getCoderInstance(CountingEncoder.class, session1, config, collector));
+        assertTrue(collector.isEmpty());
+    }
+
+    public static class CountingEncoder implements Encoder.Text<Any> {
+
+        private int initialized;
+        private int destroyed;
+
+        @Override
+        public String encode(Any object) {
+            return "counting";
+        }
+
+        @Override
+        public void init(EndpointConfig config) {
+            initialized++;
+        }
+
+        @Override
+        public void destroy() {
+            destroyed++;
+        }
+    }
+
+    public static class Any {
+    }
+
+    public static class Prefixed extends Any {
+    }
+
+    public static class PrefixDecoder extends CoderAdapter implements Decoder.Text<Prefixed> {
+
+        private static int willDecodeCalls = 0;
+
+        @Override
+        public Prefixed decode(String s) {
+            return new Prefixed();
+        }
+
+        @Override
+        public boolean willDecode(String s) {
+            willDecodeCalls++;
+            return s.startsWith("prefix:");
+        }
+    }
+
+    public static class AnyDecoder extends CoderAdapter implements Decoder.Text<Any> {
+
+        @Override
+        public Any decode(String s) {
+            return new Any();
+        }
+
+        @Override
+        public boolean willDecode(String s) {
+            return true;
+        }
+    }
+
     private TyrusSession createSession(TyrusEndpointWrapper endpointWrapper) {
         return new TyrusSession(null, new TestRemoteEndpoint(), endpointWrapper, null, null, false, null, null, null, null, new HashMap<String, List<String>>(), null, null);
     }
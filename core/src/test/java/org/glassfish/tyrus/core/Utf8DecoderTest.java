@@ -0,0 +1,134 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link Utf8Decoder}.
+ */
+public class Utf8DecoderTest {
+
+    private static final String TEXT = "ascii \u00E9\u00E8 \u20AC\u4E2D\u6587 \uD83D\uDE00\uD834\uDD1E end";
+
+    @Test
+    public void testAscii() {
+        final ByteBuffer data = ByteBuffer.wrap("Hello world".getBytes(new StrictUtf8()));
+        assertEquals("Hello world", new Utf8Decoder().decode(data, true));
+        assertEquals(0, data.remaining());
+    }
+
+    @Test
+    public void testEveryBoundary() {
+        final byte[] bytes = TEXT.getBytes(new StrictUtf8());
+        final Utf8Decoder decoder = new Utf8Decoder();
+
+        for (int i = 0; i <= bytes.length; i++) {
+            final String first = decoder.decode(ByteBuffer.wrap(bytes, 0, i), false);
+            final String second = decoder.decode(ByteBuffer.wrap(bytes, i, bytes.length - i), true);
+            assertEquals(TEXT, first + second);
+        }
+    }
+
+    @Test
+    public void testByteByByte() {
+        final byte[] bytes = TEXT.getBytes(new StrictUtf8());
+        final Utf8Decoder decoder = new Utf8Decoder();
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < bytes.length; i++) {
+            sb.append(decoder.decode(ByteBuffer.wrap(bytes, i, 1), i == bytes.length - 1));
+        }
+        assertEquals(TEXT, sb.toString());
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        final byte[] bytes = TEXT.getBytes(new StrictUtf8());
+        final ByteBuffer data = ByteBuffer.allocateDirect(bytes.length);
+        data.put(bytes).flip();
+        assertEquals(TEXT, new Utf8Decoder().decode(data, true));
+    }
+
+    @Test
+    public void testInvalid() {
+        assertInvalid(0x80);                    // unexpected continuation byte
+        assertInvalid(0xC0, 0xAF);              // overlong
+        assertInvalid(0xE0, 0x80, 0xAF);        // overlong
+        assertInvalid(0xF0, 0x80, 0x80, 0xAF);  // overlong
+        assertInvalid(0xED, 0xA0, 0x80);        // surrogate
+        assertInvalid(0xF4, 0x90, 0x80, 0x80);  // above U+10FFFF
+        assertInvalid(0xF5, 0x80, 0x80, 0x80);
+        assertInvalid(0xFF);
+        assertInvalid(0xE2, 0x82);              // incomplete final character
+        assertInvalid(0xCE, 0x41);
+    }
+
+    @Test
+    public void testResetAfterError() {
+        final Utf8Decoder decoder = new Utf8Decoder();
+        try {
+            decoder.decode(ByteBuffer.wrap(new byte[]{(byte) 0xE2, (byte) 0x82}), true);
+            fail();
+        } catch (Utf8DecodingException e) {
+            // expected
+        }
+        assertEquals("ok", decoder.decode(ByteBuffer.wrap(new byte[]{'o', 'k'}), true));
+    }
+
+    private static void assertInvalid(int... values) {
+        final byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+
+        try {
+            new Utf8Decoder().decode(ByteBuffer.wrap(bytes), true);
+            fail();
+        } catch (Utf8DecodingException e) {
+            // expected
+        }
+    }
+}
@@ -51,7 +51,8 @@ import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
 
-import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.TyrusExtension;
+import org.glassfish.tyrus.core.extension.ShareableOutgoingExtension;
 import org.glassfish.tyrus.core.frame.Frame;
 
 /**
@@ -61,14 +62,32 @@ import org.glassfish.tyrus.core.frame.Frame;
  * http://tools.ietf.org/html/draft-ietf-hybi-permessage-compression-15
  * <p/>
  * <p/>
+ * Context takeover can be disabled for messages sent by this endpoint (see
+ * {@link #PerMessageDeflateExtension(boolean)}); server also disables it when the client requests
+ * {@value #SERVER_NO_CONTEXT_TAKEOVER}. Each message is then compressed independently of previous messages, so the
+ * compressed frame is the same for all connections and a broadcasted message is compressed only once (see
+ * {@link ShareableOutgoingExtension}).
+ * <p/>
  * <pre>TODO:
- * - parameters (window sizes, context takeovers).
+ * - parameters (window sizes).
  * - context (some utility methods to get the typed params - T getParam(Class<T>))
  * </pre>
  *
  * @author Pavel Bucek (pavel.bucek at oracle.com)
  */
-public class PerMessageDeflateExtension implements ExtendedExtension {
+public class PerMessageDeflateExtension implements ShareableOutgoingExtension {
+
+    /**
+     * Parameter sent by server (or requested by client) when server does not use context takeover.
+     */
+    public static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+
+    /**
+     * Parameter sent by client (or required by server) when client does not use context takeover.
+     */
+    public static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+
+    private static final int COMPRESSION_LEVEL = 9;
 
     private static final Pool<byte[]> BYTE_ARRAY_POOL = new Pool<byte[]>() {
         @Override
@@ -77,14 +96,44 @@ public class PerMessageDeflateExtension implements ExtendedExtension {
         }
     };
 
+    // deflaters used for whole messages sent without context takeover; not bound to any connection.
+    private static final Pool<Deflater> DEFLATER_POOL = new Pool<Deflater>() {
+        @Override
+        Deflater create() {
+            return new Deflater(COMPRESSION_LEVEL, true);
+        }
+    };
+
     private static final String INFLATER = PerMessageDeflateExtension.class.getName() + ".INFLATER";
     private static final String DEFLATER = PerMessageDeflateExtension.class.getName() + ".DEFLATER";
+    private static final String NO_CONTEXT_TAKEOVER = PerMessageDeflateExtension.class.getName() + ".NO_CONTEXT_TAKEOVER";
+    private static final String OUTGOING_KEY = "no_context_takeover; level=" + COMPRESSION_LEVEL;
 
     private static final Logger LOGGER = Logger.getLogger(PerMessageDeflateExtension.class.getName());
     private static final boolean DEBUG = LOGGER.isLoggable(Level.FINE);
 
     private static final byte[] TAIL = {0x00, 0x00, (byte) 0xff, (byte) 0xff};
 
+    private final boolean noContextTakeover;
+
+    /**
+     * Create extension which uses context takeover unless the other side requires otherwise.
+     */
+    public PerMessageDeflateExtension() {
+        this(false);
+    }
+
+    /**
+     * Create extension.
+     *
+     * @param noContextTakeover {@code true} when messages sent by this endpoint should be compressed without context
+     *                          takeover. Compression ratio of similar messages is lower, but messages broadcasted to
+     *                          many connections are compressed only once.
+     */
+    public PerMessageDeflateExtension(boolean noContextTakeover) {
+        this.noContextTakeover = noContextTakeover;
+    }
+
     @Override
     public Frame processIncoming(ExtensionContext context, Frame frame) {
         final Inflater decompresser = (Inflater) context.getProperties().get(INFLATER);
@@ -156,79 +205,125 @@ public class PerMessageDeflateExtension implements ExtendedExtension {
 
     @Override
     public Frame processOutgoing(ExtensionContext context, Frame frame) {
-        final Deflater compresser = (Deflater) context.getProperties().get(DEFLATER);
-
         if (DEBUG) {
             LOGGER.fine("Outgoing frame: " + frame);
         }
 
-        if (!frame.isControlFrame()) {
-
-            List<PartialResultWithLength<byte[]>> wholeResult = new ArrayList<PartialResultWithLength<byte[]>>();
-            int wholeResultLength = 0;
+        if (frame.isControlFrame()) {
+            return frame;
+        }
 
-            // Compress the bytes
-            final int payloadLength = (int) frame.getPayloadLength();
-            compresser.setInput(frame.getPayloadData(), 0, payloadLength);
-
-            int compressedDataLength;
-            do {
-                byte[] output = BYTE_ARRAY_POOL.take();
-                compressedDataLength = compresser.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
-
-                if (compressedDataLength > 0) {
-                    wholeResult.add(new PartialResultWithLength<byte[]>(compressedDataLength, output));
-                    wholeResultLength += compressedDataLength;
-                } else {
-                    BYTE_ARRAY_POOL.recycle(output);
-                }
-            } while (compressedDataLength > 0);
+        if (!isNoContextTakeover(context)) {
+            return compress((Deflater) context.getProperties().get(DEFLATER), frame);
+        }
 
-            byte[] completeResult = new byte[wholeResultLength];
-            wholeResultLength = 0;
-            for (PartialResultWithLength<byte[]> partialResult : wholeResult) {
-                int tmp = partialResult.getLength();
-                final byte[] result = partialResult.getResult();
-                System.arraycopy(result, 0, completeResult, wholeResultLength, tmp);
-                BYTE_ARRAY_POOL.recycle(result);
-                wholeResultLength += tmp;
+        if (frame.isFin() && frame.getOpcode() != 0x00) {
+            // whole message - connection state is not used, see getOutgoingKey.
+            final Deflater compresser = DEFLATER_POOL.take();
+            try {
+                return compress(compresser, frame);
+            } finally {
+                compresser.reset();
+                DEFLATER_POOL.recycle(compresser);
             }
+        }
+
+        final Deflater compresser = (Deflater) context.getProperties().get(DEFLATER);
+        final Frame result = compress(compresser, frame);
+        if (frame.isFin()) {
+            compresser.reset();
+        }
+        return result;
+    }
+
+    @Override
+    public Object getOutgoingKey(ExtensionContext context) {
+        return isNoContextTakeover(context) ? OUTGOING_KEY : null;
+    }
+
+    private Frame compress(Deflater compresser, Frame frame) {
+        List<PartialResultWithLength<byte[]>> wholeResult = new ArrayList<PartialResultWithLength<byte[]>>();
+        int wholeResultLength = 0;
+
+        // Compress the bytes
+        final int payloadLength = (int) frame.getPayloadLength();
+        compresser.setInput(frame.getPayloadData(), 0, payloadLength);
 
-            boolean strip = false;
-            if (completeResult[completeResult.length - 4] == TAIL[0] &&
-                    completeResult[completeResult.length - 3] == TAIL[1] &&
-                    completeResult[completeResult.length - 2] == TAIL[2] &&
-                    completeResult[completeResult.length - 1] == TAIL[3]
-                    ) {
-                strip = true;
+        int compressedDataLength;
+        do {
+            byte[] output = BYTE_ARRAY_POOL.take();
+            compressedDataLength = compresser.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+
+            if (compressedDataLength > 0) {
+                wholeResult.add(new PartialResultWithLength<byte[]>(compressedDataLength, output));
+                wholeResultLength += compressedDataLength;
+            } else {
+                BYTE_ARRAY_POOL.recycle(output);
             }
+        } while (compressedDataLength > 0);
+
+        byte[] completeResult = new byte[wholeResultLength];
+        wholeResultLength = 0;
+        for (PartialResultWithLength<byte[]> partialResult : wholeResult) {
+            int tmp = partialResult.getLength();
+            final byte[] result = partialResult.getResult();
+            System.arraycopy(result, 0, completeResult, wholeResultLength, tmp);
+            BYTE_ARRAY_POOL.recycle(result);
+            wholeResultLength += tmp;
+        }
 
-            return Frame.builder(frame).payloadData(completeResult).payloadLength(strip ? completeResult.length - 4 : completeResult.length).rsv1(true).build();
-        } else {
-            return frame;
+        boolean strip = false;
+        if (completeResult[completeResult.length - 4] == TAIL[0] &&
+                completeResult[completeResult.length - 3] == TAIL[1] &&
+                completeResult[completeResult.length - 2] == TAIL[2] &&
+                completeResult[completeResult.length - 1] == TAIL[3]
+                ) {
+            strip = true;
+        }
+
+        return Frame.builder(frame).payloadData(completeResult).payloadLength(strip ? completeResult.length - 4 : completeResult.length).rsv1(true).build();
+    }
+
+    private static boolean isNoContextTakeover(ExtensionContext context) {
+        return Boolean.TRUE.equals(context.getProperties().get(NO_CONTEXT_TAKEOVER));
+    }
+
+    private static boolean containsParameter(List<Parameter> parameters, String name) {
+        if (parameters != null) {
+            for (Parameter parameter : parameters) {
+                if (name.equals(parameter.getName())) {
+                    return true;
+                }
+            }
         }
+        return false;
     }
 
-    private void init(ExtensionContext context) {
+    private void init(ExtensionContext context, boolean noContextTakeover) {
         // TODO: configurable compression level
-        Deflater compresser = new Deflater(9, true);
+        Deflater compresser = new Deflater(COMPRESSION_LEVEL, true);
         Inflater decompresser = new Inflater(true);
 
         compresser.setStrategy(Deflater.DEFAULT_STRATEGY);
 
         context.getProperties().put(INFLATER, decompresser);
         context.getProperties().put(DEFLATER, compresser);
+        context.getProperties().put(NO_CONTEXT_TAKEOVER, noContextTakeover);
     }
 
     @Override
     public List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters) {
-        init(context);
+        final boolean serverNoContextTakeover = noContextTakeover || containsParameter(requestedParameters, SERVER_NO_CONTEXT_TAKEOVER);
+        init(context, serverNoContextTakeover);
+        if (serverNoContextTakeover) {
+            return Collections.<Parameter>singletonList(new TyrusExtension.TyrusParameter(SERVER_NO_CONTEXT_TAKEOVER, null));
+        }
         return Collections.<Parameter>emptyList();
     }
 
     @Override
     public void onHandshakeResponse(ExtensionContext context, List<Parameter> responseParameters) {
-        init(context);
+        init(context, noContextTakeover || containsParameter(responseParameters, CLIENT_NO_CONTEXT_TAKEOVER));
     }
 
     @Override
@@ -255,6 +350,9 @@ public class PerMessageDeflateExtension implements ExtendedExtension {
 
     @Override
     public List<Parameter> getParameters() {
+        if (noContextTakeover) {
+            return Collections.<Parameter>singletonList(new TyrusExtension.TyrusParameter(CLIENT_NO_CONTEXT_TAKEOVER, null));
+        }
         return Collections.<Parameter>emptyList();
     }
 
@@ -48,6 +48,24 @@ package org.glassfish.tyrus.ext.extension.deflate;
  * @author Pavel Bucek (pavel.bucek at oracle.com)
  */
 public class XWebkitDeflateExtension extends PerMessageDeflateExtension {
+
+    /**
+     * Create extension which uses context takeover unless the other side requires otherwise.
+     */
+    public XWebkitDeflateExtension() {
+        super();
+    }
+
+    /**
+     * Create extension.
+     *
+     * @param noContextTakeover {@code true} when messages sent by this endpoint should be compressed without context
+     *                          takeover.
+     */
+    public XWebkitDeflateExtension(boolean noContextTakeover) {
+        super(noContextTakeover);
+    }
+
     @Override
     public String getName() {
         return "x-webkit-deflate-frame";
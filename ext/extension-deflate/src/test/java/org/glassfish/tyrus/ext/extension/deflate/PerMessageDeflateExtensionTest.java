@@ -46,6 +46,7 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -63,11 +64,18 @@ import javax.websocket.Session;
 import javax.websocket.server.ServerEndpointConfig;
 
 import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.core.TyrusExtension;
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.frame.Frame;
 import org.glassfish.tyrus.server.Server;
 import org.glassfish.tyrus.server.TyrusServerConfiguration;
 import org.glassfish.tyrus.test.tools.TestContainer;
 
 import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -164,6 +172,47 @@ public class PerMessageDeflateExtensionTest extends TestContainer {
 
     }
 
+    @Test
+    public void testNoContextTakeover() {
+        final PerMessageDeflateExtension extension = new PerMessageDeflateExtension();
+        final Extension.Parameter requested = new TyrusExtension.TyrusParameter(PerMessageDeflateExtension.SERVER_NO_CONTEXT_TAKEOVER, null);
+
+        final ExtendedExtension.ExtensionContext first = createContext();
+        final List<Extension.Parameter> response = extension.onExtensionNegotiation(first, Collections.singletonList(requested));
+        assertEquals(PerMessageDeflateExtension.SERVER_NO_CONTEXT_TAKEOVER, response.get(0).getName());
+
+        final ExtendedExtension.ExtensionContext second = createContext();
+        extension.onExtensionNegotiation(second, Collections.singletonList(requested));
+        assertNotNull(extension.getOutgoingKey(first));
+        assertEquals(extension.getOutgoingKey(first), extension.getOutgoingKey(second));
+
+        final ExtendedExtension.ExtensionContext takeover = createContext();
+        extension.onExtensionNegotiation(takeover, Collections.<Extension.Parameter>emptyList());
+        assertNull(extension.getOutgoingKey(takeover));
+
+        // each message is compressed independently, so the frames are the same for all connections.
+        final byte[] payload = "Always pass on what you have learned.".getBytes(Charset.forName("UTF-8"));
+        final Frame frame = Frame.builder().fin(true).opcode((byte) 0x02).payloadData(payload).build();
+        final Frame compressed = extension.processOutgoing(first, frame);
+        assertArrayEquals(compressed.getPayloadData(), extension.processOutgoing(first, frame).getPayloadData());
+        assertArrayEquals(compressed.getPayloadData(), extension.processOutgoing(second, frame).getPayloadData());
+
+        final ExtendedExtension.ExtensionContext client = createContext();
+        extension.onHandshakeResponse(client, response);
+        assertArrayEquals(payload, extension.processIncoming(client, compressed).getPayloadData());
+        assertArrayEquals(payload, extension.processIncoming(client, compressed).getPayloadData());
+    }
+
+    private static ExtendedExtension.ExtensionContext createContext() {
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        return new ExtendedExtension.ExtensionContext() {
+            @Override
+            public Map<String, Object> getProperties() {
+                return properties;
+            }
+        };
+    }
+
     public static class LoggingClientEndpointConfigurator extends ClientEndpointConfig.Configurator {
         @Override
         public void beforeRequest(Map<String, List<String>> headers) {
@@ -49,6 +49,7 @@ import javax.websocket.server.ServerEndpointConfig;
 
 import org.glassfish.tyrus.core.ComponentProviderService;
 import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.extension.ShareableOutgoingExtension;
 import org.glassfish.tyrus.core.frame.Frame;
 
 /**
@@ -91,7 +92,8 @@ public class TyrusServerEndpointConfigurator extends ServerEndpointConfig.Config
                     if (name != null && name.equals(requestedExtension.getName())) {
                         if (extension instanceof ExtendedExtension) {
                             final ExtendedExtension extendedExtension = (ExtendedExtension) extension;
-                            result.add(new ExtendedExtension() {
+                            // wrapper is shareable only when the wrapped extension returns a key.
+                            result.add(new ShareableOutgoingExtension() {
                                 @Override
                                 public Frame processIncoming(ExtensionContext context, Frame frame) {
                                     return extendedExtension.processIncoming(context, frame);
@@ -102,6 +104,12 @@ public class TyrusServerEndpointConfigurator extends ServerEndpointConfig.Config
                                     return extendedExtension.processOutgoing(context, frame);
                                 }
 
+                                @Override
+                                public Object getOutgoingKey(ExtensionContext context) {
+                                    return extendedExtension instanceof ShareableOutgoingExtension
+                                            ? ((ShareableOutgoingExtension) extendedExtension).getOutgoingKey(context) : null;
+                                }
+
                                 /**
                                  * TODO.
                                  *
@@ -0,0 +1,79 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.spi;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocator of buffers used by tyrus runtime and transports for incoming and outgoing data.
+ * <p/>
+ * Buffers obtained from {@link #allocate(int)} should be returned using {@link #release(ByteBuffer)} when they are not
+ * used anymore, so pooling implementations can reuse them. Buffer must not be accessed after it was released. Not
+ * releasing a buffer is not an error - it will be garbage collected.
+ * <p/>
+ * Implementations must be thread safe.
+ *
+ * @see org.glassfish.tyrus.spi.ClientContainer#BUFFER_ALLOCATOR
+ */
+public abstract class BufferAllocator {
+
+    /**
+     * Allocate buffer.
+     * <p/>
+     * Returned buffer has position set to {@code 0} and limit set to {@code size}. Its capacity might be bigger than
+     * requested size.
+     *
+     * @param size requested size of the buffer.
+     * @return allocated buffer.
+     */
+    public abstract ByteBuffer allocate(int size);
+
+    /**
+     * Return buffer obtained from {@link #allocate(int)} to this allocator.
+     * <p/>
+     * Default implementation does nothing.
+     *
+     * @param buffer buffer to be released.
+     */
+    public void release(ByteBuffer buffer) {
+        // do nothing.
+    }
+}
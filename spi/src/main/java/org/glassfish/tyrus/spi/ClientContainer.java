@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2013-2014 Oracle and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -59,6 +59,88 @@ public interface ClientContainer {
      */
     public static final String INCOMING_BUFFER_SIZE = "org.glassfish.tyrus.incomingBufferSize";
 
+    /**
+     * Property name for streaming chunk size - payload of incoming frames bigger than this value is delivered in
+     * chunks as it arrives, instead of being buffered until the whole frame is received. Disabled by default.
+     *
+     * Can be set in properties map (see {@link #openClientSocket(String, javax.websocket.ClientEndpointConfig, java.util.Map, ClientEngine)}).
+     */
+    public static final String STREAMING_CHUNK_SIZE = "org.glassfish.tyrus.streamingChunkSize";
+
+    /**
+     * Property name for {@link BufferAllocator} instance used for incoming data and outgoing frames. Heap buffers
+     * are allocated for every request by default.
+     *
+     * Can be set in properties map (see {@link #openClientSocket(String, javax.websocket.ClientEndpointConfig, java.util.Map, ClientEngine)}).
+     */
+    public static final String BUFFER_ALLOCATOR = "org.glassfish.tyrus.bufferAllocator";
+
+    /**
+     * Property name for growth factor of buffer for incomplete incoming frames - when the buffer needs to grow, its
+     * capacity is multiplied by this factor. Value {@code 1} means that the buffer grows only to the required size.
+     *
+     * Can be set in properties map (see {@link #openClientSocket(String, javax.websocket.ClientEndpointConfig, java.util.Map, ClientEngine)}).
+     */
+    public static final String INCOMING_BUFFER_GROWTH_FACTOR = "org.glassfish.tyrus.incomingBufferGrowthFactor";
+
+    /**
+     * Property name for size of outgoing batch - when batching is allowed, batched frames are written as soon as their
+     * size reaches this value. Value is expected to be {@link Integer}.
+     *
+     * Can be set in properties map (see {@link #openClientSocket(String, javax.websocket.ClientEndpointConfig, java.util.Map, ClientEngine)}).
+     */
+    public static final String BATCH_SIZE = "org.glassfish.tyrus.batchSize";
+
+    /**
+     * Property name for linger time of outgoing batch - when batching is allowed, batched frames are written at latest
+     * after this time (in milliseconds). Value is expected to be {@link Integer}, {@code 0} disables automatic flush.
+     *
+     * Can be set in properties map (see {@link #openClientSocket(String, javax.websocket.ClientEndpointConfig, java.util.Map, ClientEngine)}).
+     */
+    public static final String BATCH_LINGER = "org.glassfish.tyrus.batchLinger";
+
+    /**
+     * Property name for closing session on send timeout - when set to {@code true}, session is closed when some send
+     * is not completed within send timeout. Value is expected to be {@link Boolean}, default value is {@code false}.
+     *
+     * Can be set in properties map (see {@link #openClientSocket(String, javax.websocket.ClientEndpointConfig, java.util.Map, ClientEngine)}).
+     */
+    public static final String CLOSE_ON_SEND_TIMEOUT = "org.glassfish.tyrus.closeOnSendTimeout";
+
+    /**
+     * Property name for high watermark of session outbound buffer - session becomes non-writable when amount of its
+     * sent and not yet written data reaches this value. Value is expected to be {@link Integer}, {@code 0} disables
+     * writability changes.
+     *
+     * Can be set in properties map (see {@link #openClientSocket(String, javax.websocket.ClientEndpointConfig, java.util.Map, ClientEngine)}).
+     */
+    public static final String OUTBOUND_HIGH_WATERMARK = "org.glassfish.tyrus.outboundHighWatermark";
+
+    /**
+     * Property name for low watermark of session outbound buffer - non-writable session becomes writable again when
+     * amount of its sent and not yet written data drops to this value. Value is expected to be {@link Integer}.
+     *
+     * Can be set in properties map (see {@link #openClientSocket(String, javax.websocket.ClientEndpointConfig, java.util.Map, ClientEngine)}).
+     */
+    public static final String OUTBOUND_LOW_WATERMARK = "org.glassfish.tyrus.outboundLowWatermark";
+
+    /**
+     * Property name for limit of session outbound buffer - whole messages which would make amount of sent and not yet
+     * written data exceed this value are rejected or dropped, see {@link #OUTBOUND_OVERFLOW_POLICY}. Value is
+     * expected to be {@link Integer}.
+     *
+     * Can be set in properties map (see {@link #openClientSocket(String, javax.websocket.ClientEndpointConfig, java.util.Map, ClientEngine)}).
+     */
+    public static final String OUTBOUND_BUFFER_LIMIT = "org.glassfish.tyrus.outboundBufferLimit";
+
+    /**
+     * Property name for policy applied to messages exceeding {@link #OUTBOUND_BUFFER_LIMIT} - {@code "REJECT"}
+     * (default; send fails) or {@code "DROP"} (message is discarded). Value is expected to be {@link String}.
+     *
+     * Can be set in properties map (see {@link #openClientSocket(String, javax.websocket.ClientEndpointConfig, java.util.Map, ClientEngine)}).
+     */
+    public static final String OUTBOUND_OVERFLOW_POLICY = "org.glassfish.tyrus.outboundOverflowPolicy";
+
     /**
      * Open client socket - connect to endpoint specified with {@code url} parameter.
      * <p/>